@@ -0,0 +1,72 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-chat")
+public class AiChatProperties {
+
+    private ModelCache modelCache = new ModelCache();
+    private Journal journal = new Journal();
+    private PromptCache promptCache = new PromptCache();
+    private History history = new History();
+    private Context context = new Context();
+    private HotCache hotCache = new HotCache();
+
+    @Data
+    public static class ModelCache {
+        private int maxSize = 64;
+        private Duration idleTimeout = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class Journal {
+        private int capacity = 10000;
+        private int batchSize = 200;
+        private Duration flushInterval = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class PromptCache {
+        private boolean enabled = true;
+        /**
+         * Smallest estimated prefix (tools, system, history) worth a breakpoint. Anthropic
+         * ignores cache_control on shorter prefixes: 1024 tokens for Sonnet/Opus, 2048 for Haiku.
+         */
+        private int minPrefixTokens = 1024;
+    }
+
+    @Data
+    public static class History {
+        private int defaultPageSize = 50;
+        private int maxPageSize = 200;
+    }
+
+    @Data
+    public static class Context {
+        private boolean enabled = true;
+        /** Estimated tokens of summary plus recent messages sent with each turn. */
+        private int tokenBudget = 2000;
+        /** Messages read from the database when a session is not cached yet. */
+        private int loadMessages = 40;
+        private int summaryMaxTokens = 300;
+        private int summaryThreads = 2;
+        private int maxSessions = 1000;
+        private Duration idleTimeout = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class HotCache {
+        private boolean enabled = true;
+        private int messagesPerSession = 50;
+        private Duration idleTimeout = Duration.ofMinutes(5);
+        /** Estimated size of all cached message content. */
+        private DataSize maxMemory = DataSize.ofMegabytes(32);
+    }
+}
@@ -0,0 +1,29 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "auto-switch")
+public class AutoSwitchProperties {
+
+    /** Evaluate opted-in users' policies against provider health. */
+    private boolean enabled = true;
+    /** Consecutive evaluations the current provider must breach before failing over. */
+    private int breachRounds = 3;
+    /** Consecutive evaluations a better-ranked provider must stay healthy before switching back. */
+    private int recoverRounds = 5;
+    /**
+     * A provider counts as healthy only within this fraction of the policy thresholds, so a
+     * provider hovering at the limit does not bounce between breaching and healthy.
+     */
+    private double recoveryRatio = 0.8;
+    /** Minimum time between two automatic switches of the same user. */
+    private Duration minDwell = Duration.ofMinutes(10);
+    /** Probes plus errors in the window below which a provider's health is not judged. */
+    private int minSamples = 5;
+}
@@ -0,0 +1,30 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "benchmark")
+public class BenchmarkProperties {
+
+    /** Concurrency levels run in order when the request does not give any. */
+    private List<Integer> levels = new ArrayList<>(List.of(1, 4, 16));
+    private int maxConcurrency = 64;
+    /** Requests per level when not given; raised to twice the concurrency if lower. */
+    private int requestsPerLevel = 16;
+    private int maxRequestsPerLevel = 256;
+    private int maxTokens = 128;
+    private int maxMaxTokens = 1024;
+    /** Benchmark runs in progress at once, across all users. */
+    private int maxRunningRuns = 2;
+    /** Higher levels are skipped once a level fails at least this share of its requests. */
+    private double abortErrorRate = 0.5;
+    /** How far back the comparison looks for each provider's latest run. */
+    private Duration compareWindow = Duration.ofDays(30);
+}
@@ -0,0 +1,15 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "content-compression")
+public class ContentCompressionProperties {
+
+    /** Compress rows written before compression existed, one chunk per run. */
+    private boolean recompressEnabled = true;
+    private int chunkSize = 500;
+}
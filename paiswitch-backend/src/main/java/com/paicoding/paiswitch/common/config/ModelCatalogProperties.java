@@ -0,0 +1,22 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "model-catalog")
+public class ModelCatalogProperties {
+
+    /** Refresh provider model lists in the background. */
+    private boolean refreshEnabled = true;
+    /** Age after which a model list is revalidated upstream. */
+    private Duration ttl = Duration.ofHours(6);
+    /** Delay before trying again after a failed or impossible refresh. */
+    private Duration retryInterval = Duration.ofMinutes(30);
+    /** One JSON file per provider; survives restarts. Empty disables the disk cache. */
+    private String cacheDir = System.getProperty("user.home") + "/.paiswitch/model-catalog";
+}
@@ -0,0 +1,21 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "openrouter")
+public class OpenRouterProperties {
+
+    private RoutingCache routingCache = new RoutingCache();
+
+    @Data
+    public static class RoutingCache {
+        private Duration ttl = Duration.ofHours(6);
+        private int maxSize = 1000;
+    }
+}
@@ -0,0 +1,26 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys for background calls to providers (health probes, model lists), which no user
+ * triggers and therefore must not be billed to an arbitrary user.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "probe-keys")
+public class ProbeKeyProperties {
+
+    /** Operator-paid key per provider code, used first. */
+    private Map<String, String> apiKeys = new HashMap<>();
+    /**
+     * Otherwise use the key of a user who enabled an auto-switch policy naming the provider;
+     * that policy needs the probes, so enabling it is the user's consent.
+     */
+    private boolean useAutoSwitchUserKeys = true;
+}
@@ -0,0 +1,24 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "provider-health")
+public class ProviderHealthProperties {
+
+    /** Probe active providers that have a probe key (see {@link ProbeKeyProperties}) in the background. */
+    private boolean probeEnabled = true;
+    private Duration probeInterval = Duration.ofSeconds(60);
+    /** Random extra delay per probe, so providers are not probed in lockstep. */
+    private Duration probeJitter = Duration.ofSeconds(15);
+    /** Latencies and errors older than this no longer count. */
+    private Duration window = Duration.ofMinutes(15);
+    private int windowSlices = 15;
+    /** Error rate at or above which a provider is reported DOWN; any errors make it DEGRADED. */
+    private double downErrorRate = 0.5;
+}
@@ -0,0 +1,62 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "provider-wire")
+public class ProviderWireProperties {
+
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration requestTimeout = Duration.ofSeconds(45);
+    /** Per-provider request timeout overrides, keyed by provider code. */
+    private Map<String, Duration> timeouts = new HashMap<>();
+    private Capture capture = new Capture();
+    private TestAll testAll = new TestAll();
+    private StreamTest streamTest = new StreamTest();
+
+    public Duration timeoutFor(String providerCode) {
+        if (providerCode == null) {
+            return requestTimeout;
+        }
+        return timeouts.getOrDefault(providerCode.toLowerCase(), requestTimeout);
+    }
+
+    @Data
+    public static class Capture {
+        private boolean enabled = true;
+        /** Share of successful exchanges kept; failures are always kept. */
+        private double sampleRate = 0.05;
+        /** Exchanges kept per provider. */
+        private int bufferSize = 50;
+        private int maxBodyChars = 4000;
+        /** Users allowed to read captured exchanges. */
+        private List<String> adminUsernames = new ArrayList<>(List.of("admin"));
+    }
+
+    @Data
+    public static class TestAll {
+        /** Connection tests in flight at once. */
+        private int parallelism = 4;
+        /** Whole run; providers still pending then are reported as timed out. */
+        private Duration deadline = Duration.ofSeconds(20);
+    }
+
+    @Data
+    public static class StreamTest {
+        /** Approximate prompt size when the request does not give one. */
+        private int promptTokens = 256;
+        private int maxPromptTokens = 32000;
+        /** Output budget; enough tokens to measure a generation rate. */
+        private int maxTokens = 256;
+        private int maxMaxTokens = 4096;
+    }
+}
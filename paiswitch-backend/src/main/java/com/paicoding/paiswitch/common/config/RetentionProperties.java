@@ -0,0 +1,43 @@
+package com.paicoding.paiswitch.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Retention of the month-partitioned ai_conversation and switch_history tables. Whole months
+ * older than the retention are dropped; 0 keeps everything.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "retention")
+public class RetentionProperties {
+
+    /** Pre-create and drop monthly partitions; only acts on a partitioned MySQL schema. */
+    private boolean maintenanceEnabled = true;
+    private int conversationMonths = 0;
+    private int switchHistoryMonths = 0;
+    /** Monthly partitions kept ready ahead of the current month. */
+    private int precreateMonths = 3;
+
+    public LocalDateTime conversationSince() {
+        return since(conversationMonths);
+    }
+
+    public LocalDateTime switchHistorySince() {
+        return since(switchHistoryMonths);
+    }
+
+    /**
+     * Start of the oldest month still retained: rows before it live in dropped partitions.
+     */
+    public static LocalDateTime since(int months) {
+        if (months <= 0) {
+            return LocalDateTime.of(1970, 1, 1, 0, 0);
+        }
+        return LocalDate.now().withDayOfMonth(1).minusMonths(months).atStartOfDay();
+    }
+}
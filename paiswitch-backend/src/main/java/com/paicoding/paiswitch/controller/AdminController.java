@@ -0,0 +1,63 @@
+package com.paicoding.paiswitch.controller;
+
+import com.paicoding.paiswitch.common.config.ProviderWireProperties;
+import com.paicoding.paiswitch.common.exception.BusinessException;
+import com.paicoding.paiswitch.common.response.ApiResponse;
+import com.paicoding.paiswitch.common.response.ResponseCode;
+import com.paicoding.paiswitch.common.security.JwtTokenProvider;
+import com.paicoding.paiswitch.domain.dto.ExchangeDto;
+import com.paicoding.paiswitch.service.ai.ChatModelCache;
+import com.paicoding.paiswitch.service.wire.ExchangeCapture;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Tag(name = "Admin", description = "Operational APIs, restricted to configured admin users")
+@RestController
+@RequestMapping("/api/v1/admin")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+public class AdminController {
+
+    private final ExchangeCapture exchangeCapture;
+    private final ChatModelCache chatModelCache;
+    private final ProviderWireProperties providerWireProperties;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @Operation(summary = "Get recent upstream exchanges",
+               description = "Sampled provider requests and responses, most recent first; user message content is redacted")
+    @GetMapping("/exchanges")
+    public ApiResponse<List<ExchangeDto.Exchange>> getExchanges(
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(required = false) String providerCode) {
+        requireAdmin(authorization);
+        return ApiResponse.success(exchangeCapture.recent(providerCode));
+    }
+
+    @Operation(summary = "Clear captured upstream exchanges")
+    @DeleteMapping("/exchanges")
+    public ApiResponse<Void> clearExchanges(@RequestHeader("Authorization") String authorization) {
+        requireAdmin(authorization);
+        exchangeCapture.clear();
+        return ApiResponse.success("Exchanges cleared", null);
+    }
+
+    @Operation(summary = "Get chat model cache statistics")
+    @GetMapping("/model-cache/stats")
+    public ApiResponse<ChatModelCache.Stats> getModelCacheStats(@RequestHeader("Authorization") String authorization) {
+        requireAdmin(authorization);
+        return ApiResponse.success(chatModelCache.stats());
+    }
+
+    private void requireAdmin(String authorization) {
+        String token = authorization.replace("Bearer ", "");
+        String username = jwtTokenProvider.getUsernameFromToken(token);
+        if (!providerWireProperties.getCapture().getAdminUsernames().contains(username)) {
+            throw new BusinessException(ResponseCode.FORBIDDEN);
+        }
+    }
+}
@@ -3,13 +3,21 @@ package com.paicoding.paiswitch.controller;
 import com.paicoding.paiswitch.common.response.ApiResponse;
 import com.paicoding.paiswitch.common.security.JwtTokenProvider;
 import com.paicoding.paiswitch.domain.dto.SwitchDto;
+import com.paicoding.paiswitch.domain.dto.UsageDto;
 import com.paicoding.paiswitch.service.ai.AiChatService;
+import com.paicoding.paiswitch.service.ai.TokenUsageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Tag(name = "AI Interaction", description = "AI natural language interaction APIs")
 @RestController
@@ -19,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 public class AiController {
 
     private final AiChatService aiChatService;
+    private final TokenUsageService tokenUsageService;
     private final JwtTokenProvider jwtTokenProvider;
 
     @Operation(summary = "Natural language model switching",
@@ -40,6 +49,26 @@ public class AiController {
         return ApiResponse.success(aiChatService.processNaturalLanguage(userId, request));
     }
 
+    @Operation(summary = "Natural language model switching (streaming)",
+               description = "Server-Sent Events: session, delta, switch, done, error")
+    @PostMapping(value = "/switch-by-nl/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter switchByNaturalLanguageStream(
+            @RequestHeader("Authorization") String authorization,
+            @Valid @RequestBody SwitchDto.NaturalLanguageRequest request) {
+        Long userId = extractUserId(authorization);
+        return aiChatService.streamNaturalLanguage(userId, request);
+    }
+
+    @Operation(summary = "Chat with AI assistant (streaming)",
+               description = "Server-Sent Events: session, delta, switch, done, error")
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(
+            @RequestHeader("Authorization") String authorization,
+            @Valid @RequestBody SwitchDto.NaturalLanguageRequest request) {
+        Long userId = extractUserId(authorization);
+        return aiChatService.streamNaturalLanguage(userId, request);
+    }
+
     @Operation(summary = "Get latest AI conversation")
     @GetMapping("/conversations/latest")
     public ApiResponse<SwitchDto.ConversationHistoryResponse> getLatestConversation(
@@ -48,13 +77,39 @@ public class AiController {
         return ApiResponse.success(aiChatService.getLatestConversation(userId));
     }
 
-    @Operation(summary = "Get AI conversation by session ID")
+    @Operation(summary = "List AI conversation sessions",
+               description = "Most recently active first, with title, message count and last provider")
+    @GetMapping("/sessions")
+    public ApiResponse<List<SwitchDto.SessionSummary>> listSessions(
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(required = false) Integer limit) {
+        Long userId = extractUserId(authorization);
+        return ApiResponse.success(aiChatService.listSessions(userId, limit));
+    }
+
+    @Operation(summary = "Get AI conversation by session ID",
+               description = "Newest page first; pass nextCursor as 'before' to load older messages")
     @GetMapping("/conversations/{sessionId}")
     public ApiResponse<SwitchDto.ConversationHistoryResponse> getConversationBySessionId(
             @RequestHeader("Authorization") String authorization,
-            @PathVariable String sessionId) {
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit) {
+        Long userId = extractUserId(authorization);
+        return ApiResponse.success(aiChatService.getConversationHistory(userId, sessionId, before, limit));
+    }
+
+    @Operation(summary = "Get token usage",
+               description = "Hourly token usage per provider and model; defaults to the last 7 days")
+    @GetMapping("/usage")
+    public ApiResponse<UsageDto.UsageSummary> getUsage(
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         Long userId = extractUserId(authorization);
-        return ApiResponse.success(aiChatService.getConversationHistory(userId, sessionId));
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(7);
+        return ApiResponse.success(tokenUsageService.getUsage(userId, start, end));
     }
 
     private Long extractUserId(String authorization) {
@@ -3,17 +3,23 @@ package com.paicoding.paiswitch.controller;
 import com.paicoding.paiswitch.common.response.ApiResponse;
 import com.paicoding.paiswitch.common.security.JwtTokenProvider;
 import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.service.ModelCatalogService;
 import com.paicoding.paiswitch.service.ProviderService;
+import com.paicoding.paiswitch.service.benchmark.ProviderBenchmarkService;
+import com.paicoding.paiswitch.service.health.ProviderHealthMonitor;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "Model Providers", description = "AI model provider management APIs")
 @RestController
@@ -23,6 +29,9 @@ public class ProviderController {
 
     private final ProviderService providerService;
     private final JwtTokenProvider jwtTokenProvider;
+    private final ProviderHealthMonitor healthMonitor;
+    private final ProviderBenchmarkService benchmarkService;
+    private final ModelCatalogService modelCatalogService;
 
     @Operation(summary = "Get all active providers (public)")
     @GetMapping
@@ -39,12 +48,28 @@ public class ProviderController {
         return ApiResponse.success(providerService.getProvidersForUser(userId));
     }
 
+    @Operation(summary = "Get rolling health of active providers",
+               description = "Latency percentiles and error rate from background probes; never calls upstream")
+    @GetMapping("/health")
+    @SecurityRequirement(name = "bearerAuth")
+    public ApiResponse<List<ProviderDto.HealthInfo>> getProviderHealth() {
+        return ApiResponse.success(healthMonitor.health());
+    }
+
     @Operation(summary = "Get provider by code")
     @GetMapping("/{code}")
     public ApiResponse<ProviderDto.ProviderInfo> getProvider(@PathVariable String code) {
         return ApiResponse.success(providerService.getProviderByCode(code));
     }
 
+    @Operation(summary = "Get the models a provider offers",
+               description = "Cached upstream model list, refreshed in the background; PENDING until first fetched")
+    @GetMapping("/{code}/models")
+    @SecurityRequirement(name = "bearerAuth")
+    public ApiResponse<ProviderDto.ModelCatalog> getProviderModels(@PathVariable String code) {
+        return ApiResponse.success(modelCatalogService.getCatalog(code));
+    }
+
     @Operation(summary = "Create custom provider")
     @PostMapping("/custom")
     @SecurityRequirement(name = "bearerAuth")
@@ -91,6 +116,61 @@ public class ProviderController {
         return ApiResponse.success(providerService.testProviderConnection(userId, code, request));
     }
 
+    @Operation(summary = "Test all providers the user has an API key for",
+               description = "Concurrent, with a global deadline; ranked by latency, failures last")
+    @PostMapping("/test-all")
+    @SecurityRequirement(name = "bearerAuth")
+    public CompletableFuture<ApiResponse<List<ProviderDto.BulkTestResult>>> testAllProviders(
+            @RequestHeader("Authorization") String authorization) {
+        Long userId = extractUserId(authorization);
+        return providerService.testAllProviders(userId, result -> {}).thenApply(ApiResponse::success);
+    }
+
+    @Operation(summary = "Test all providers the user has an API key for (streaming)",
+               description = "Server-Sent Events: result (one per provider as it finishes), done (ranked list), error")
+    @PostMapping(value = "/test-all/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @SecurityRequirement(name = "bearerAuth")
+    public SseEmitter testAllProvidersStream(@RequestHeader("Authorization") String authorization) {
+        Long userId = extractUserId(authorization);
+        return providerService.streamTestAllProviders(userId);
+    }
+
+    @Operation(summary = "Start a throughput benchmark of a provider",
+               description = "Runs a fixed prompt set at stepped concurrency levels in the background; poll the returned run")
+    @PostMapping("/{code}/benchmark")
+    @SecurityRequirement(name = "bearerAuth")
+    public ApiResponse<ProviderDto.BenchmarkRun> startBenchmark(
+            @RequestHeader("Authorization") String authorization,
+            @PathVariable String code,
+            @RequestBody(required = false) ProviderDto.BenchmarkRequest request) {
+        Long userId = extractUserId(authorization);
+        if (request == null) {
+            request = new ProviderDto.BenchmarkRequest();
+        }
+        return ApiResponse.success(benchmarkService.start(userId, code, request));
+    }
+
+    @Operation(summary = "Get a benchmark run", description = "Levels appear as they finish; running is false once done")
+    @GetMapping("/benchmarks/{runId}")
+    @SecurityRequirement(name = "bearerAuth")
+    public ApiResponse<ProviderDto.BenchmarkRun> getBenchmark(
+            @RequestHeader("Authorization") String authorization,
+            @PathVariable String runId) {
+        Long userId = extractUserId(authorization);
+        return ApiResponse.success(benchmarkService.getRun(userId, runId));
+    }
+
+    @Operation(summary = "Compare benchmarks across providers and models",
+               description = "The user's latest run per provider and model, optionally limited to the given provider codes")
+    @GetMapping("/benchmarks")
+    @SecurityRequirement(name = "bearerAuth")
+    public ApiResponse<List<ProviderDto.BenchmarkRun>> compareBenchmarks(
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(required = false) List<String> providers) {
+        Long userId = extractUserId(authorization);
+        return ApiResponse.success(benchmarkService.compare(userId, providers));
+    }
+
     private Long extractUserId(String authorization) {
         String token = authorization.replace("Bearer ", "");
         return jwtTokenProvider.getUserIdFromToken(token);
@@ -3,6 +3,7 @@ package com.paicoding.paiswitch.controller;
 import com.paicoding.paiswitch.common.response.ApiResponse;
 import com.paicoding.paiswitch.common.security.JwtTokenProvider;
 import com.paicoding.paiswitch.domain.dto.SwitchDto;
+import com.paicoding.paiswitch.service.AutoSwitchService;
 import com.paicoding.paiswitch.service.SwitchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -19,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 public class SwitchController {
 
     private final SwitchService switchService;
+    private final AutoSwitchService autoSwitchService;
     private final JwtTokenProvider jwtTokenProvider;
 
     @Operation(summary = "Switch to a specific provider")
@@ -30,6 +32,25 @@ public class SwitchController {
         return ApiResponse.success(switchService.switchToProvider(userId, request));
     }
 
+    @Operation(summary = "Get latency failover policy",
+               description = "Defaults with enabled=false when the user has not set one")
+    @GetMapping("/switch/auto-policy")
+    public ApiResponse<SwitchDto.AutoSwitchPolicyInfo> getAutoSwitchPolicy(
+            @RequestHeader("Authorization") String authorization) {
+        Long userId = extractUserId(authorization);
+        return ApiResponse.success(autoSwitchService.getPolicy(userId));
+    }
+
+    @Operation(summary = "Set latency failover policy",
+               description = "Fails over from the preferred provider when its p95 or error rate breaches the limits, and back once it recovers")
+    @PutMapping("/switch/auto-policy")
+    public ApiResponse<SwitchDto.AutoSwitchPolicyInfo> updateAutoSwitchPolicy(
+            @RequestHeader("Authorization") String authorization,
+            @Valid @RequestBody SwitchDto.AutoSwitchPolicyRequest request) {
+        Long userId = extractUserId(authorization);
+        return ApiResponse.success(autoSwitchService.updatePolicy(userId, request));
+    }
+
     private Long extractUserId(String authorization) {
         String token = authorization.replace("Bearer ", "");
         return jwtTokenProvider.getUserIdFromToken(token);
@@ -0,0 +1,99 @@
+package com.paicoding.paiswitch.domain.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Storage format for large text columns. Text of at least {@link #MIN_LENGTH} characters is
+ * stored as {@code \u0001D:} followed by Base64 of its DEFLATE-compressed UTF-8 bytes, when
+ * that is smaller than the UTF-8 text itself. Everything else is stored as is, so rows written
+ * before compression existed still read unchanged; the rare text that itself starts with the
+ * {@code \u0001} marker is stored with a {@code \u0001R:} prefix.
+ */
+public final class TextCompression {
+
+    public static final int MIN_LENGTH = 1024;
+
+    private static final char MARKER = '\u0001';
+    private static final String DEFLATE_PREFIX = MARKER + "D:";
+    private static final String RAW_PREFIX = MARKER + "R:";
+
+    private TextCompression() {
+    }
+
+    public static String encode(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        if (text.length() >= MIN_LENGTH) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            String compressed = DEFLATE_PREFIX + Base64.getEncoder().encodeToString(deflate(utf8));
+            if (compressed.length() < utf8.length) {
+                return compressed;
+            }
+        }
+        return text.charAt(0) == MARKER ? RAW_PREFIX + text : text;
+    }
+
+    public static String decode(String stored) {
+        if (stored == null || stored.isEmpty() || stored.charAt(0) != MARKER) {
+            return stored;
+        }
+        if (stored.startsWith(DEFLATE_PREFIX)) {
+            byte[] compressed = Base64.getDecoder().decode(stored.substring(DEFLATE_PREFIX.length()));
+            return new String(inflate(compressed), StandardCharsets.UTF_8);
+        }
+        if (stored.startsWith(RAW_PREFIX)) {
+            return stored.substring(RAW_PREFIX.length());
+        }
+        return stored;
+    }
+
+    /**
+     * True for values written in the prefixed format, which must not be encoded again.
+     */
+    public static boolean isEncoded(String stored) {
+        return stored != null && (stored.startsWith(DEFLATE_PREFIX) || stored.startsWith(RAW_PREFIX));
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
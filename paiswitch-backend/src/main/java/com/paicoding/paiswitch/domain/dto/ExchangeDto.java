@@ -0,0 +1,28 @@
+package com.paicoding.paiswitch.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+public class ExchangeDto {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Exchange {
+        private Long sequence;
+        private LocalDateTime timestamp;
+        private String providerCode;
+        private String url;
+        private String apiKey;
+        private Integer status;
+        private Long latencyMs;
+        private String requestBody;
+        private String responseBody;
+        private String error;
+    }
+}
@@ -1,5 +1,8 @@
 package com.paicoding.paiswitch.domain.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.paicoding.paiswitch.domain.enums.HealthStatus;
+import com.paicoding.paiswitch.domain.enums.ModelCatalogStatus;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
@@ -8,6 +11,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class ProviderDto {
 
@@ -27,6 +31,7 @@ public class ProviderDto {
         private Boolean isActive;
         private Integer sortOrder;
         private String iconUrl;
+        private String aliases;
         private Boolean hasApiKey;
         private LocalDateTime createdAt;
     }
@@ -58,6 +63,9 @@ public class ProviderDto {
         private String modelNameSmall;
 
         private String iconUrl;
+
+        @Size(max = 500, message = "Aliases must be at most 500 characters")
+        private String aliases;
     }
 
     @Data
@@ -72,6 +80,9 @@ public class ProviderDto {
         private String modelNameSmall;
         private Boolean isActive;
         private String iconUrl;
+
+        @Size(max = 500, message = "Aliases must be at most 500 characters")
+        private String aliases;
     }
 
     @Data
@@ -92,6 +103,11 @@ public class ProviderDto {
         private String baseUrl;
         private String modelName;
         private String apiKey;
+        /** Stream the reply and report connection, first-token and generation timings. */
+        private Boolean stream;
+        /** Approximate prompt size for the streaming test. */
+        private Integer promptTokens;
+        private Integer maxTokens;
     }
 
     @Data
@@ -103,5 +119,140 @@ public class ProviderDto {
         private String message;
         private String modelName;
         private Long responseTimeMs;
+        /** Failed because of the provider (transport error, 429, 5xx), not the key or request. */
+        @JsonIgnore
+        private boolean providerFault;
+
+        // Streaming test only. DNS, TCP connect and TLS handshake are timed on a fresh socket;
+        // DNS may be answered from the JVM's resolver cache.
+        private Long dnsMs;
+        private Long connectMs;
+        private Long tlsMs;
+        /** From sending the request until the response headers arrive. */
+        private Long ttfbMs;
+        /** From sending the request until the first text token arrives. */
+        private Long ttftMs;
+        private Long promptTokens;
+        private Long outputTokens;
+        /** Output tokens after the first one, over the time from first to last token. */
+        private Double tokensPerSecond;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BulkTestResult {
+        private String providerCode;
+        private String providerName;
+        private boolean success;
+        private String message;
+        private String modelName;
+        private Long responseTimeMs;
+    }
+
+    /**
+     * Rolling health of a provider from background probes and connection tests. Latencies
+     * are null until a successful sample exists; {@code stale} marks a summary restored from
+     * the database that has not been refreshed since startup.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class HealthInfo {
+        private String providerCode;
+        private String providerName;
+        private HealthStatus status;
+        private Long p50Ms;
+        private Long p95Ms;
+        private Long p99Ms;
+        private long sampleCount;
+        private long errorCount;
+        private double errorRate;
+        private LocalDateTime lastProbeAt;
+        private LocalDateTime lastSuccessAt;
+        private String lastError;
+        private boolean stale;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BenchmarkRequest {
+        /** Concurrency levels, run in the given order; defaults to 1, 4, 16. */
+        private List<Integer> levels;
+        private Integer requestsPerLevel;
+        /** Defaults to the provider's configured model. */
+        private String modelName;
+        private Integer maxTokens;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BenchmarkLevel {
+        private Integer concurrency;
+        private Integer requestCount;
+        private Integer successCount;
+        private Integer rateLimitedCount;
+        private Integer serverErrorCount;
+        private Integer otherErrorCount;
+        private Long p50Ms;
+        private Long p90Ms;
+        private Long p99Ms;
+        private Long maxMs;
+        private Long outputTokens;
+        private Long durationMs;
+        /** Output tokens of all requests of the level over its wall time. */
+        private Double tokensPerSecond;
+        private Double requestsPerSecond;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BenchmarkRun {
+        private String runId;
+        private String providerCode;
+        private String providerName;
+        private String modelName;
+        /** Levels still to come while true. */
+        private boolean running;
+        private LocalDateTime startedAt;
+        private List<BenchmarkLevel> levels;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ModelCatalog {
+        private String providerCode;
+        private ModelCatalogStatus status;
+        private List<ModelInfo> models;
+        /** Whether the provider's configured models are listed; null while the list is empty. */
+        private Boolean modelNameListed;
+        private Boolean modelNameSmallListed;
+        /** When the list last changed upstream or was first fetched. */
+        private LocalDateTime fetchedAt;
+        /** When the list was last confirmed, including 304 revalidations. */
+        private LocalDateTime checkedAt;
+        /** Not revalidated within the TTL. */
+        private boolean stale;
+        private String error;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ModelInfo {
+        private String id;
+        private String displayName;
+        private Long contextLength;
     }
 }
@@ -1,6 +1,10 @@
 package com.paicoding.paiswitch.domain.dto;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -74,5 +78,55 @@ public class SwitchDto {
     public static class ConversationHistoryResponse {
         private String sessionId;
         private List<ConversationMessage> messages;
+        /** Pass as {@code before} to load the next older page; null when there is none. */
+        private String nextCursor;
+        private Boolean hasMore;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SessionSummary {
+        private String sessionId;
+        private String title;
+        private LocalDateTime lastMessageAt;
+        private Integer messageCount;
+        private String lastProvider;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AutoSwitchPolicyRequest {
+        @NotNull(message = "Enabled is required")
+        private Boolean enabled;
+
+        @NotBlank(message = "Preferred provider is required")
+        private String preferredProvider;
+
+        /** Tried in order while the preferred provider breaches the thresholds. */
+        private List<String> fallbackProviders;
+
+        @Positive(message = "Max p95 must be positive")
+        private Long maxP95Ms;
+
+        @DecimalMin(value = "0.0", message = "Max error rate must be between 0 and 1")
+        @DecimalMax(value = "1.0", message = "Max error rate must be between 0 and 1")
+        private Double maxErrorRate;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AutoSwitchPolicyInfo {
+        private Boolean enabled;
+        private String preferredProvider;
+        private List<String> fallbackProviders;
+        private Long maxP95Ms;
+        private Double maxErrorRate;
+        private LocalDateTime updatedAt;
     }
 }
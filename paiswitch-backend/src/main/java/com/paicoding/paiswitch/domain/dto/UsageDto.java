@@ -0,0 +1,40 @@
+package com.paicoding.paiswitch.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class UsageDto {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class UsageBucket {
+        private LocalDateTime bucketStart;
+        private String providerCode;
+        private String model;
+        private Long requestCount;
+        private Long promptTokens;
+        private Long completionTokens;
+        private Long totalTokens;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class UsageSummary {
+        private LocalDateTime from;
+        private LocalDateTime to;
+        private Long requestCount;
+        private Long promptTokens;
+        private Long completionTokens;
+        private Long totalTokens;
+        private List<UsageBucket> buckets;
+    }
+}
@@ -1,5 +1,6 @@
 package com.paicoding.paiswitch.domain.entity;
 
+import com.paicoding.paiswitch.domain.converter.CompressedTextConverter;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -7,7 +8,9 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "ai_conversation")
+@Table(name = "ai_conversation", indexes = {
+        @Index(name = "idx_user_session_created", columnList = "user_id, session_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,6 +31,7 @@ public class AiConversation {
     @Column(nullable = false, length = 20)
     private String role;
 
+    @Convert(converter = CompressedTextConverter.class)
     @Column(nullable = false, columnDefinition = "text")
     private String content;
 
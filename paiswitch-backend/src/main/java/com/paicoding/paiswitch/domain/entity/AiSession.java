@@ -0,0 +1,46 @@
+package com.paicoding.paiswitch.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ai_session", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_session", columnNames = {"user_id", "session_id"})
+}, indexes = {
+        @Index(name = "idx_user_last_message", columnList = "user_id, last_message_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AiSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "session_id", nullable = false, length = 100)
+    private String sessionId;
+
+    @Column(length = 100)
+    private String title;
+
+    /** First message of the session; lower created_at bound when reading its messages. */
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "message_count", nullable = false)
+    @Builder.Default
+    private Integer messageCount = 0;
+
+    @Column(name = "last_provider", length = 50)
+    private String lastProvider;
+}
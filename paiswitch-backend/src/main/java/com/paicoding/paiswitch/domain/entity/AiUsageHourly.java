@@ -0,0 +1,50 @@
+package com.paicoding.paiswitch.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ai_usage_hourly", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_usage_bucket", columnNames = {"user_id", "bucket_start", "provider_code", "model"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AiUsageHourly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "provider_code", nullable = false, length = 50)
+    private String providerCode;
+
+    @Column(nullable = false, length = 100)
+    private String model;
+
+    @Column(name = "request_count", nullable = false)
+    @Builder.Default
+    private Long requestCount = 0L;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    @Builder.Default
+    private Long promptTokens = 0L;
+
+    @Column(name = "completion_tokens", nullable = false)
+    @Builder.Default
+    private Long completionTokens = 0L;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,55 @@
+package com.paicoding.paiswitch.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "auto_switch_policy", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user", columnNames = {"user_id"})
+}, indexes = {
+        @Index(name = "idx_enabled", columnList = "enabled")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AutoSwitchPolicy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean enabled = false;
+
+    @Column(name = "preferred_provider", nullable = false, length = 50)
+    private String preferredProvider;
+
+    /** Comma-separated provider codes, tried in order when the preferred provider breaches. */
+    @Column(name = "fallback_providers", length = 500)
+    private String fallbackProviders;
+
+    @Column(name = "max_p95_ms", nullable = false)
+    @Builder.Default
+    private Long maxP95Ms = 8000L;
+
+    @Column(name = "max_error_rate", nullable = false)
+    @Builder.Default
+    private Double maxErrorRate = 0.2;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -52,6 +52,12 @@ public class ModelProvider {
     @Column(name = "icon_url", length = 500)
     private String iconUrl;
 
+    /**
+     * Extra names the quick switch recognizes, comma separated.
+     */
+    @Column(length = 500)
+    private String aliases;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
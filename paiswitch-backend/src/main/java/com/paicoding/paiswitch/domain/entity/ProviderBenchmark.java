@@ -0,0 +1,90 @@
+package com.paicoding.paiswitch.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "provider_benchmark", indexes = {
+        @Index(name = "idx_run", columnList = "run_id"),
+        @Index(name = "idx_provider_model_created", columnList = "provider_code, model_name, created_at"),
+        @Index(name = "idx_user_created", columnList = "user_id, created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProviderBenchmark {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false, length = 36)
+    private String runId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "provider_code", nullable = false, length = 50)
+    private String providerCode;
+
+    @Column(name = "model_name", nullable = false, length = 100)
+    private String modelName;
+
+    @Column(nullable = false)
+    private Integer concurrency;
+
+    @Column(name = "request_count", nullable = false)
+    private Integer requestCount;
+
+    @Column(name = "success_count", nullable = false)
+    private Integer successCount;
+
+    /** HTTP 429 responses. */
+    @Column(name = "rate_limited_count", nullable = false)
+    @Builder.Default
+    private Integer rateLimitedCount = 0;
+
+    /** HTTP 5xx responses. */
+    @Column(name = "server_error_count", nullable = false)
+    @Builder.Default
+    private Integer serverErrorCount = 0;
+
+    /** Other non-2xx responses and transport failures. */
+    @Column(name = "other_error_count", nullable = false)
+    @Builder.Default
+    private Integer otherErrorCount = 0;
+
+    @Column(name = "p50_ms")
+    private Long p50Ms;
+
+    @Column(name = "p90_ms")
+    private Long p90Ms;
+
+    @Column(name = "p99_ms")
+    private Long p99Ms;
+
+    @Column(name = "max_ms")
+    private Long maxMs;
+
+    @Column(name = "output_tokens", nullable = false)
+    @Builder.Default
+    private Long outputTokens = 0L;
+
+    /** Wall time of the whole level, from the first request sent to the last answer. */
+    @Column(name = "duration_ms", nullable = false)
+    private Long durationMs;
+
+    @Column(name = "tokens_per_second")
+    private Double tokensPerSecond;
+
+    @Column(name = "requests_per_second")
+    private Double requestsPerSecond;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,50 @@
+package com.paicoding.paiswitch.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "provider_health")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProviderHealth {
+
+    @Id
+    @Column(name = "provider_code", length = 50)
+    private String providerCode;
+
+    @Column(name = "sample_count", nullable = false)
+    @Builder.Default
+    private Long sampleCount = 0L;
+
+    @Column(name = "error_count", nullable = false)
+    @Builder.Default
+    private Long errorCount = 0L;
+
+    @Column(name = "p50_ms")
+    private Long p50Ms;
+
+    @Column(name = "p95_ms")
+    private Long p95Ms;
+
+    @Column(name = "p99_ms")
+    private Long p99Ms;
+
+    @Column(name = "last_probe_at")
+    private LocalDateTime lastProbeAt;
+
+    @Column(name = "last_success_at")
+    private LocalDateTime lastSuccessAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,11 +1,15 @@
 package com.paicoding.paiswitch.domain.entity;
 
+import com.paicoding.paiswitch.domain.converter.CompressedTextConverter;
 import com.paicoding.paiswitch.domain.enums.SwitchType;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Entity
 @Table(name = "switch_history")
@@ -36,6 +40,7 @@ public class SwitchHistory {
     @Builder.Default
     private SwitchType switchType = SwitchType.MANUAL;
 
+    @Convert(converter = CompressedTextConverter.class)
     @Column(name = "ai_prompt", columnDefinition = "text")
     private String aiPrompt;
 
@@ -49,6 +54,11 @@ public class SwitchHistory {
     @Column(name = "client_info")
     private String clientInfo;
 
+    /** Provider health and thresholds that triggered an {@link SwitchType#AUTO_LATENCY} switch. */
+    @Column(name = "trigger_metrics", columnDefinition = "json")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private Map<String, Object> triggerMetrics;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
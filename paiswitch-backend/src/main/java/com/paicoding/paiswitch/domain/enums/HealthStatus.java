@@ -0,0 +1,8 @@
+package com.paicoding.paiswitch.domain.enums;
+
+public enum HealthStatus {
+    UP,
+    DEGRADED,
+    DOWN,
+    UNKNOWN
+}
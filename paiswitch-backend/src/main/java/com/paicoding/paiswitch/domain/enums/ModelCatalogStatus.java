@@ -0,0 +1,13 @@
+package com.paicoding.paiswitch.domain.enums;
+
+public enum ModelCatalogStatus {
+    /** Not fetched yet; a background refresh has been requested. */
+    PENDING,
+    OK,
+    /** The provider has no model list endpoint. */
+    UNSUPPORTED,
+    /** No valid API key is stored for the provider. */
+    NO_KEY,
+    /** The last refresh failed; models from an earlier refresh are kept. */
+    ERROR
+}
@@ -2,5 +2,6 @@ package com.paicoding.paiswitch.domain.enums;
 
 public enum SwitchType {
     MANUAL,
-    AI_NATURAL_LANGUAGE
+    AI_NATURAL_LANGUAGE,
+    AUTO_LATENCY
 }
@@ -0,0 +1,6 @@
+package com.paicoding.paiswitch.domain.event;
+
+/**
+ * Published after a user's API key for a provider is set, replaced or deleted.
+ */
+public record ApiKeyChangedEvent(Long userId, String providerCode) {}
@@ -0,0 +1,7 @@
+package com.paicoding.paiswitch.domain.event;
+
+/**
+ * Published whenever a provider row is created or its code, name, model or aliases change.
+ * Listeners holding derived in-memory views of the catalog rebuild on it.
+ */
+public record ProviderCatalogChangedEvent(String providerCode) {}
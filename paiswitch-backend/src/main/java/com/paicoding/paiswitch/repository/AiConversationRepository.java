@@ -1,20 +1,48 @@
 package com.paicoding.paiswitch.repository;
 
 import com.paicoding.paiswitch.domain.entity.AiConversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface AiConversationRepository extends JpaRepository<AiConversation, Long> {
 
-    List<AiConversation> findBySessionIdOrderByCreatedAtAsc(String sessionId);
+    /**
+     * Newest messages of a session first; the first page of a keyset scan. {@code from} is the
+     * earliest possible created_at of the session, so only the partitions it spans are read.
+     */
+    @Query("""
+            SELECT c FROM AiConversation c
+            WHERE c.user.id = :userId AND c.sessionId = :sessionId
+              AND c.createdAt >= :from
+            ORDER BY c.createdAt DESC, c.id DESC
+            """)
+    List<AiConversation> findNewestPage(@Param("userId") Long userId,
+                                        @Param("sessionId") String sessionId,
+                                        @Param("from") LocalDateTime from,
+                                        Pageable pageable);
 
-    List<AiConversation> findByUserIdOrderByCreatedAtDesc(Long userId);
-
-    List<AiConversation> findByUserIdAndSessionIdOrderByCreatedAtAsc(Long userId, String sessionId);
-
-    Optional<AiConversation> findFirstByUserIdOrderByCreatedAtDesc(Long userId);
+    /**
+     * Messages strictly older than the (createdAt, id) cursor, newest first. The plain range on
+     * created_at next to the keyset condition is what lets MySQL prune partitions.
+     */
+    @Query("""
+            SELECT c FROM AiConversation c
+            WHERE c.user.id = :userId AND c.sessionId = :sessionId
+              AND c.createdAt >= :from AND c.createdAt <= :createdAt
+              AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id))
+            ORDER BY c.createdAt DESC, c.id DESC
+            """)
+    List<AiConversation> findPageBefore(@Param("userId") Long userId,
+                                        @Param("sessionId") String sessionId,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
 }
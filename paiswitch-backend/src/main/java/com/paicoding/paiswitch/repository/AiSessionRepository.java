@@ -0,0 +1,22 @@
+package com.paicoding.paiswitch.repository;
+
+import com.paicoding.paiswitch.domain.entity.AiSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AiSessionRepository extends JpaRepository<AiSession, Long> {
+
+    Optional<AiSession> findFirstByUserIdOrderByLastMessageAtDesc(Long userId);
+
+    Optional<AiSession> findByUserIdAndSessionId(Long userId, String sessionId);
+
+    List<AiSession> findByUserIdAndSessionIdIn(Long userId, Collection<String> sessionIds);
+
+    List<AiSession> findByUserIdOrderByLastMessageAtDesc(Long userId, Pageable pageable);
+}
@@ -0,0 +1,15 @@
+package com.paicoding.paiswitch.repository;
+
+import com.paicoding.paiswitch.domain.entity.AiUsageHourly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AiUsageHourlyRepository extends JpaRepository<AiUsageHourly, Long> {
+
+    List<AiUsageHourly> findByUserIdAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStartAsc(
+            Long userId, LocalDateTime from, LocalDateTime to);
+}
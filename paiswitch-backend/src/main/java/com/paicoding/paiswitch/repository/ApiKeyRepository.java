@@ -2,6 +2,8 @@ package com.paicoding.paiswitch.repository;
 
 import com.paicoding.paiswitch.domain.entity.ApiKey;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,5 +20,7 @@ public interface ApiKeyRepository extends JpaRepository<ApiKey, Long> {
 
     void deleteByUserIdAndProviderId(Long userId, Long providerId);
 
-    boolean existsByUserIdAndProviderId(Long userId, Long providerId);
+    /** Ids of the providers the user has a key for; reads only the api_key rows, no joins. */
+    @Query("SELECT k.provider.id FROM ApiKey k WHERE k.user.id = :userId")
+    List<Long> findProviderIdsByUserId(@Param("userId") Long userId);
 }
@@ -0,0 +1,16 @@
+package com.paicoding.paiswitch.repository;
+
+import com.paicoding.paiswitch.domain.entity.AutoSwitchPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AutoSwitchPolicyRepository extends JpaRepository<AutoSwitchPolicy, Long> {
+
+    Optional<AutoSwitchPolicy> findByUserId(Long userId);
+
+    List<AutoSwitchPolicy> findByEnabledTrue();
+}
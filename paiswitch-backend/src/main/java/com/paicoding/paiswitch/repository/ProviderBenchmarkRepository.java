@@ -0,0 +1,16 @@
+package com.paicoding.paiswitch.repository;
+
+import com.paicoding.paiswitch.domain.entity.ProviderBenchmark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProviderBenchmarkRepository extends JpaRepository<ProviderBenchmark, Long> {
+
+    List<ProviderBenchmark> findByRunIdAndUserIdOrderByConcurrency(String runId, Long userId);
+
+    List<ProviderBenchmark> findByUserIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(Long userId, LocalDateTime since);
+}
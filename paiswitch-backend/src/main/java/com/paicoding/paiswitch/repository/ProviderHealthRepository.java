@@ -0,0 +1,9 @@
+package com.paicoding.paiswitch.repository;
+
+import com.paicoding.paiswitch.domain.entity.ProviderHealth;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProviderHealthRepository extends JpaRepository<ProviderHealth, String> {
+}
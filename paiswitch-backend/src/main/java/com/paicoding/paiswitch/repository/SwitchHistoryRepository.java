@@ -6,12 +6,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface SwitchHistoryRepository extends JpaRepository<SwitchHistory, Long> {
 
-    List<SwitchHistory> findByUserIdOrderByCreatedAtDesc(Long userId);
+    /** Bounded by {@code since} so only retained monthly partitions are scanned. */
+    List<SwitchHistory> findByUserIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(Long userId, LocalDateTime since);
 
-    Page<SwitchHistory> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
+    Page<SwitchHistory> findByUserIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(Long userId, LocalDateTime since,
+                                                                                     Pageable pageable);
 }
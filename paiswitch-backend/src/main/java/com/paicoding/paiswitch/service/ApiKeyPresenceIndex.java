@@ -0,0 +1,70 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.domain.event.ApiKeyChangedEvent;
+import com.paicoding.paiswitch.repository.ApiKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Which providers each user has an API key for, as a bitset of provider ids. A user's set is
+ * read with one projection query on first use and dropped after every committed
+ * {@link ApiKeyChangedEvent}, so listing providers for a user costs one query at most,
+ * however many providers there are.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ApiKeyPresenceIndex {
+
+    private static final int MAX_USERS = 10000;
+
+    private final ApiKeyRepository apiKeyRepository;
+
+    /** Access-ordered, so the head is always the least recently used user. */
+    private final LinkedHashMap<Long, BitSet> keyedProviders = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BitSet> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+    /** Bumped on every invalidation, so a load that raced with one is not cached. */
+    private long generation;
+
+    public IntPredicate keyedProviders(Long userId) {
+        long loadGeneration;
+        synchronized (keyedProviders) {
+            BitSet cached = keyedProviders.get(userId);
+            if (cached != null) {
+                return cached::get;
+            }
+            loadGeneration = generation;
+        }
+
+        BitSet providerIds = new BitSet();
+        for (Long providerId : apiKeyRepository.findProviderIdsByUserId(userId)) {
+            providerIds.set(Math.toIntExact(providerId));
+        }
+        synchronized (keyedProviders) {
+            if (generation == loadGeneration) {
+                keyedProviders.put(userId, providerIds);
+            }
+        }
+        return providerIds::get;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onApiKeyChanged(ApiKeyChangedEvent event) {
+        synchronized (keyedProviders) {
+            generation++;
+            keyedProviders.remove(event.userId());
+        }
+        log.debug("Invalidated key presence for user {}", event.userId());
+    }
+}
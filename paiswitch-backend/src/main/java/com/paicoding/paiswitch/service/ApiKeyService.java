@@ -6,11 +6,13 @@ import com.paicoding.paiswitch.domain.dto.ApiKeyDto;
 import com.paicoding.paiswitch.domain.entity.ApiKey;
 import com.paicoding.paiswitch.domain.entity.ModelProvider;
 import com.paicoding.paiswitch.domain.entity.User;
+import com.paicoding.paiswitch.domain.event.ApiKeyChangedEvent;
 import com.paicoding.paiswitch.repository.ApiKeyRepository;
 import com.paicoding.paiswitch.repository.ModelProviderRepository;
 import com.paicoding.paiswitch.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,13 +29,15 @@ public class ApiKeyService {
     private final UserRepository userRepository;
     private final ModelProviderRepository providerRepository;
     private final EncryptionService encryptionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProviderRegistry providerRegistry;
 
     @Transactional
     public ApiKeyDto.KeyInfo setApiKey(Long userId, ApiKeyDto.SetKeyRequest request) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new BusinessException(ResponseCode.USER_NOT_FOUND));
 
-        ModelProvider provider = providerRepository.findByCode(request.getProviderCode())
+        ModelProvider provider = providerRegistry.findByCode(request.getProviderCode())
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
 
         String encryptedKey = encryptionService.encrypt(request.getApiKey());
@@ -42,7 +46,7 @@ public class ApiKeyService {
         ApiKey apiKey = apiKeyRepository.findByUserIdAndProviderId(userId, provider.getId())
                 .orElse(ApiKey.builder()
                         .user(user)
-                        .provider(provider)
+                        .provider(providerRepository.getReferenceById(provider.getId()))
                         .build());
 
         apiKey.setEncryptedKey(encryptedKey);
@@ -50,6 +54,7 @@ public class ApiKeyService {
         apiKey.setIsValid(true);
 
         apiKey = apiKeyRepository.save(apiKey);
+        eventPublisher.publishEvent(new ApiKeyChangedEvent(userId, provider.getCode()));
         log.info("Set API key for provider: {} and user: {}", provider.getCode(), userId);
 
         return mapToKeyInfo(apiKey);
@@ -84,10 +89,11 @@ public class ApiKeyService {
 
     @Transactional
     public void deleteApiKey(Long userId, String providerCode) {
-        ModelProvider provider = providerRepository.findByCode(providerCode)
+        ModelProvider provider = providerRegistry.findByCode(providerCode)
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
 
         apiKeyRepository.deleteByUserIdAndProviderId(userId, provider.getId());
+        eventPublisher.publishEvent(new ApiKeyChangedEvent(userId, providerCode));
         log.info("Deleted API key for provider: {} and user: {}", providerCode, userId);
     }
 
@@ -0,0 +1,124 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.AutoSwitchProperties;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Hysteresis for latency failover, kept free of I/O. A breach has to persist for
+ * {@code breach-rounds} evaluations before the user is moved, a better-ranked provider has to
+ * stay healthy for {@code recover-rounds} before the user is moved back, "healthy" is stricter
+ * than "not breaching" by {@code recovery-ratio}, and two switches are at least
+ * {@code min-dwell} apart. Providers without enough fresh samples are neither judged
+ * breaching nor chosen as a target.
+ * <p>
+ * A decision only changes the state once the caller reports it carried the switch out through
+ * {@link #switched}; a failed switch is retried on the next evaluation, without a dwell.
+ */
+final class AutoSwitchEvaluator {
+
+    static final String FAILOVER = "FAILOVER";
+    static final String RECOVER = "RECOVER";
+
+    private final AutoSwitchProperties properties;
+
+    AutoSwitchEvaluator(AutoSwitchProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param ranked  provider codes of the policy, preferred first
+     * @param usable  whether the user can be switched to a provider (active, has a key)
+     */
+    Optional<Decision> evaluate(State state, String current, List<String> ranked, Predicate<String> usable,
+                                Map<String, ProviderDto.HealthInfo> health, Thresholds thresholds, long nowMillis) {
+        if (!current.equals(state.provider)) {
+            state.provider = current;
+            state.breaches = 0;
+            state.recovered = 0;
+        }
+        int currentRank = ranked.indexOf(current);
+        if (currentRank < 0) {
+            // Switched off the policy's providers by hand; leave the user alone.
+            return Optional.empty();
+        }
+        boolean dwelling = state.lastSwitchAt != 0 && nowMillis - state.lastSwitchAt < properties.getMinDwell().toMillis();
+
+        if (breaching(health.get(current), thresholds)) {
+            state.recovered = 0;
+            state.breaches++;
+            if (state.breaches < properties.getBreachRounds() || dwelling) {
+                return Optional.empty();
+            }
+            for (String code : ranked) {
+                if (!code.equals(current) && usable.test(code) && healthy(health.get(code), thresholds)) {
+                    return Optional.of(new Decision(code, FAILOVER, state.breaches));
+                }
+            }
+            return Optional.empty();
+        }
+        state.breaches = 0;
+
+        for (int i = 0; i < currentRank; i++) {
+            String code = ranked.get(i);
+            if (usable.test(code) && healthy(health.get(code), thresholds)) {
+                state.recovered++;
+                if (state.recovered < properties.getRecoverRounds() || dwelling) {
+                    return Optional.empty();
+                }
+                return Optional.of(new Decision(code, RECOVER, state.recovered));
+            }
+        }
+        state.recovered = 0;
+        return Optional.empty();
+    }
+
+    boolean breaching(ProviderDto.HealthInfo health, Thresholds thresholds) {
+        if (!judged(health)) {
+            return false;
+        }
+        return health.getErrorRate() > thresholds.maxErrorRate()
+                || (health.getP95Ms() != null && health.getP95Ms() > thresholds.maxP95Ms());
+    }
+
+    boolean healthy(ProviderDto.HealthInfo health, Thresholds thresholds) {
+        if (!judged(health) || health.getP95Ms() == null) {
+            return false;
+        }
+        double ratio = properties.getRecoveryRatio();
+        return health.getErrorRate() <= thresholds.maxErrorRate() * ratio
+                && health.getP95Ms() <= thresholds.maxP95Ms() * ratio;
+    }
+
+    private boolean judged(ProviderDto.HealthInfo health) {
+        return health != null && !health.isStale()
+                && health.getSampleCount() + health.getErrorCount() >= properties.getMinSamples();
+    }
+
+    /** Records that the user was moved as decided; starts the dwell period. */
+    void switched(State state, Decision decision, long nowMillis) {
+        state.provider = decision.target();
+        state.breaches = 0;
+        state.recovered = 0;
+        state.lastSwitchAt = nowMillis;
+    }
+
+    record Thresholds(long maxP95Ms, double maxErrorRate) {}
+
+    /**
+     * @param rounds consecutive evaluations that led to the switch
+     */
+    record Decision(String target, String reason, int rounds) {}
+
+    /** Per-user counters, carried between evaluations. */
+    static final class State {
+        private String provider;
+        private int breaches;
+        private int recovered;
+        private long lastSwitchAt;
+    }
+}
@@ -0,0 +1,233 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.AutoSwitchProperties;
+import com.paicoding.paiswitch.common.exception.BusinessException;
+import com.paicoding.paiswitch.common.response.ResponseCode;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.domain.dto.SwitchDto;
+import com.paicoding.paiswitch.domain.entity.AutoSwitchPolicy;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.entity.UserConfig;
+import com.paicoding.paiswitch.domain.enums.SwitchType;
+import com.paicoding.paiswitch.repository.AutoSwitchPolicyRepository;
+import com.paicoding.paiswitch.repository.UserConfigRepository;
+import com.paicoding.paiswitch.service.health.ProviderHealthMonitor;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Per-user latency failover. Users who opted in name a preferred provider, an ordered list
+ * of fallbacks and the p95 latency and error rate they tolerate; every evaluation compares
+ * the user's current provider against the live figures of {@link ProviderHealthMonitor} and
+ * switches through {@link SwitchService} as {@link SwitchType#AUTO_LATENCY}, recording the
+ * figures that triggered it. See {@link AutoSwitchEvaluator} for the hysteresis.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AutoSwitchService {
+
+    private static final String CLIENT_INFO = "auto-switch";
+
+    private final AutoSwitchProperties properties;
+    private final AutoSwitchPolicyRepository policyRepository;
+    private final UserConfigRepository configRepository;
+    private final ProviderRegistry providerRegistry;
+    private final ApiKeyPresenceIndex apiKeyPresenceIndex;
+    private final ProviderHealthMonitor healthMonitor;
+    private final SwitchService switchService;
+
+    private final Map<Long, AutoSwitchEvaluator.State> states = new ConcurrentHashMap<>();
+    private AutoSwitchEvaluator evaluator;
+
+    @PostConstruct
+    public void init() {
+        evaluator = new AutoSwitchEvaluator(properties);
+    }
+
+    public SwitchDto.AutoSwitchPolicyInfo getPolicy(Long userId) {
+        return policyRepository.findByUserId(userId)
+                .map(this::toInfo)
+                .orElseGet(() -> toInfo(AutoSwitchPolicy.builder()
+                        .preferredProvider(currentProvider(userId).map(ModelProvider::getCode).orElse(null))
+                        .build()));
+    }
+
+    @Transactional
+    public SwitchDto.AutoSwitchPolicyInfo updatePolicy(Long userId, SwitchDto.AutoSwitchPolicyRequest request) {
+        String preferred = requireActive(request.getPreferredProvider());
+        Set<String> fallbacks = new LinkedHashSet<>();
+        if (request.getFallbackProviders() != null) {
+            for (String code : request.getFallbackProviders()) {
+                String fallback = requireActive(code);
+                if (!fallback.equals(preferred)) {
+                    fallbacks.add(fallback);
+                }
+            }
+        }
+
+        AutoSwitchPolicy policy = policyRepository.findByUserId(userId)
+                .orElseGet(() -> AutoSwitchPolicy.builder().userId(userId).build());
+        policy.setEnabled(request.getEnabled());
+        policy.setPreferredProvider(preferred);
+        policy.setFallbackProviders(fallbacks.isEmpty() ? null : String.join(",", fallbacks));
+        if (request.getMaxP95Ms() != null) {
+            policy.setMaxP95Ms(request.getMaxP95Ms());
+        }
+        if (request.getMaxErrorRate() != null) {
+            policy.setMaxErrorRate(request.getMaxErrorRate());
+        }
+        policy = policyRepository.save(policy);
+        states.remove(userId);
+
+        log.info("Updated auto-switch policy for user {}: enabled={}, providers={}", userId, policy.getEnabled(),
+                ranked(policy));
+        return toInfo(policy);
+    }
+
+    @Scheduled(initialDelayString = "${auto-switch.initial-delay-ms:60000}",
+               fixedDelayString = "${auto-switch.evaluate-interval-ms:30000}")
+    public void evaluatePolicies() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<AutoSwitchPolicy> policies = policyRepository.findByEnabledTrue();
+        Set<Long> userIds = new LinkedHashSet<>();
+        policies.forEach(policy -> userIds.add(policy.getUserId()));
+        states.keySet().retainAll(userIds);
+        if (policies.isEmpty()) {
+            return;
+        }
+
+        Map<String, ProviderDto.HealthInfo> health = new HashMap<>();
+        healthMonitor.health().forEach(info -> health.put(info.getProviderCode(), info));
+        long now = System.currentTimeMillis();
+        for (AutoSwitchPolicy policy : policies) {
+            try {
+                evaluate(policy, health, now);
+            } catch (Exception e) {
+                log.warn("Failed to evaluate auto-switch policy of user {}: {}", policy.getUserId(), e.getMessage());
+            }
+        }
+    }
+
+    private void evaluate(AutoSwitchPolicy policy, Map<String, ProviderDto.HealthInfo> health, long now) {
+        Long userId = policy.getUserId();
+        Optional<ModelProvider> current = currentProvider(userId);
+        if (current.isEmpty()) {
+            return;
+        }
+        IntPredicate keyed = apiKeyPresenceIndex.keyedProviders(userId);
+        Predicate<String> usable = code -> providerRegistry.findByCode(code)
+                .filter(provider -> Boolean.TRUE.equals(provider.getIsActive()))
+                .filter(provider -> keyed.test(Math.toIntExact(provider.getId())))
+                .isPresent();
+        AutoSwitchEvaluator.Thresholds thresholds =
+                new AutoSwitchEvaluator.Thresholds(policy.getMaxP95Ms(), policy.getMaxErrorRate());
+        String from = current.get().getCode();
+
+        Optional<AutoSwitchEvaluator.Decision> decision = evaluator.evaluate(
+                states.computeIfAbsent(userId, id -> new AutoSwitchEvaluator.State()),
+                from, ranked(policy), usable, health, thresholds, now);
+        if (decision.isEmpty()) {
+            return;
+        }
+
+        String to = decision.get().target();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("reason", decision.get().reason());
+        metrics.put("consecutiveRounds", decision.get().rounds());
+        metrics.put("maxP95Ms", policy.getMaxP95Ms());
+        metrics.put("maxErrorRate", policy.getMaxErrorRate());
+        metrics.put("recoveryRatio", properties.getRecoveryRatio());
+        metrics.put("from", snapshot(from, health.get(from)));
+        metrics.put("to", snapshot(to, health.get(to)));
+
+        SwitchDto.SwitchResult result = switchService.switchToProvider(userId, to, SwitchType.AUTO_LATENCY,
+                null, CLIENT_INFO, metrics);
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            log.warn("Auto-switch of user {} from {} to {} ({}) failed, retrying next round: {}", userId, from, to,
+                    decision.get().reason(), result.getMessage());
+            return;
+        }
+        evaluator.switched(states.computeIfAbsent(userId, id -> new AutoSwitchEvaluator.State()), decision.get(), now);
+        log.info("Auto-switched user {} from {} to {} ({}): {}", userId, from, to, decision.get().reason(),
+                result.getMessage());
+    }
+
+    private Optional<ModelProvider> currentProvider(Long userId) {
+        return configRepository.findByUserId(userId)
+                .map(UserConfig::getCurrentProvider)
+                .flatMap(provider -> providerRegistry.findById(provider.getId()));
+    }
+
+    private String requireActive(String code) {
+        if (code == null || code.isBlank()) {
+            throw new BusinessException(ResponseCode.BAD_REQUEST, "Provider code is required");
+        }
+        ModelProvider provider = providerRegistry.findByCode(code.trim())
+                .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND, "Provider not found: " + code));
+        if (!Boolean.TRUE.equals(provider.getIsActive())) {
+            throw new BusinessException(ResponseCode.PROVIDER_INACTIVE, "Provider is inactive: " + code);
+        }
+        return provider.getCode();
+    }
+
+    private SwitchDto.AutoSwitchPolicyInfo toInfo(AutoSwitchPolicy policy) {
+        List<String> ranked = ranked(policy);
+        return SwitchDto.AutoSwitchPolicyInfo.builder()
+                .enabled(policy.getEnabled())
+                .preferredProvider(policy.getPreferredProvider())
+                .fallbackProviders(ranked.subList(1, ranked.size()))
+                .maxP95Ms(policy.getMaxP95Ms())
+                .maxErrorRate(policy.getMaxErrorRate())
+                .updatedAt(policy.getUpdatedAt())
+                .build();
+    }
+
+    /** Preferred provider first, then the fallbacks in order. */
+    private static List<String> ranked(AutoSwitchPolicy policy) {
+        List<String> ranked = new ArrayList<>();
+        ranked.add(policy.getPreferredProvider());
+        if (policy.getFallbackProviders() != null) {
+            for (String code : policy.getFallbackProviders().split(",")) {
+                String trimmed = code.trim();
+                if (!trimmed.isEmpty() && !ranked.contains(trimmed)) {
+                    ranked.add(trimmed);
+                }
+            }
+        }
+        return ranked;
+    }
+
+    private static Map<String, Object> snapshot(String providerCode, ProviderDto.HealthInfo health) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("provider", providerCode);
+        if (health != null) {
+            snapshot.put("p50Ms", health.getP50Ms());
+            snapshot.put("p95Ms", health.getP95Ms());
+            snapshot.put("p99Ms", health.getP99Ms());
+            snapshot.put("errorRate", health.getErrorRate());
+            snapshot.put("sampleCount", health.getSampleCount());
+            snapshot.put("errorCount", health.getErrorCount());
+            snapshot.put("status", health.getStatus());
+        }
+        return snapshot;
+    }
+}
@@ -3,7 +3,6 @@ package com.paicoding.paiswitch.service;
 import com.paicoding.paiswitch.common.exception.BusinessException;
 import com.paicoding.paiswitch.common.response.ResponseCode;
 import com.paicoding.paiswitch.domain.dto.ConfigDto;
-import com.paicoding.paiswitch.domain.dto.ProviderDto;
 import com.paicoding.paiswitch.domain.entity.ConfigBackup;
 import com.paicoding.paiswitch.domain.entity.ModelProvider;
 import com.paicoding.paiswitch.domain.entity.User;
@@ -33,6 +32,7 @@ public class ConfigService {
     private final UserRepository userRepository;
     private final ModelProviderRepository providerRepository;
     private final ConfigBackupRepository backupRepository;
+    private final ProviderRegistry providerRegistry;
 
     @Transactional(readOnly = true)
     public ConfigDto.ConfigInfo getUserConfig(Long userId) {
@@ -47,12 +47,12 @@ public class ConfigService {
         UserConfig config = configRepository.findByUserId(userId)
                 .orElseThrow(() -> new BusinessException(ResponseCode.CONFIG_NOT_FOUND));
 
-        ModelProvider provider = providerRepository.findById(request.getProviderId())
+        ModelProvider provider = providerRegistry.findById(request.getProviderId())
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
 
         createBackup(userId, config, BackupType.AUTO_BEFORE_SWITCH, "Auto backup before config update");
 
-        config.setCurrentProvider(provider);
+        config.setCurrentProvider(providerRepository.getReferenceById(provider.getId()));
         if (request.getApiTimeout() != null) {
             config.setApiTimeout(request.getApiTimeout());
         }
@@ -124,10 +124,10 @@ public class ConfigService {
         @SuppressWarnings("unchecked")
         Map<String, Object> extraConfig = (Map<String, Object>) content.get("extraConfig");
 
-        ModelProvider provider = providerRepository.findById(providerId)
+        ModelProvider provider = providerRegistry.findById(providerId)
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
 
-        config.setCurrentProvider(provider);
+        config.setCurrentProvider(providerRepository.getReferenceById(provider.getId()));
         config.setApiTimeout(apiTimeout);
         if (extraConfig != null) {
             config.setExtraConfig(extraConfig);
@@ -143,7 +143,7 @@ public class ConfigService {
         return ConfigDto.ConfigInfo.builder()
                 .id(config.getId())
                 .userId(config.getUser().getId())
-                .currentProvider(mapToProviderInfo(config.getCurrentProvider()))
+                .currentProvider(providerRegistry.info(config.getCurrentProvider()))
                 .apiTimeout(config.getApiTimeout())
                 .extraConfig(config.getExtraConfig())
                 .updatedAt(config.getUpdatedAt())
@@ -162,21 +162,4 @@ public class ConfigService {
                 .createdAt(backup.getCreatedAt())
                 .build();
     }
-
-    private ProviderDto.ProviderInfo mapToProviderInfo(ModelProvider provider) {
-        return ProviderDto.ProviderInfo.builder()
-                .id(provider.getId())
-                .code(provider.getCode())
-                .name(provider.getName())
-                .description(provider.getDescription())
-                .baseUrl(provider.getBaseUrl())
-                .modelName(provider.getModelName())
-                .modelNameSmall(provider.getModelNameSmall())
-                .isBuiltin(provider.getIsBuiltin())
-                .isActive(provider.getIsActive())
-                .sortOrder(provider.getSortOrder())
-                .iconUrl(provider.getIconUrl())
-                .createdAt(provider.getCreatedAt())
-                .build();
-    }
 }
@@ -0,0 +1,101 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.ContentCompressionProperties;
+import com.paicoding.paiswitch.domain.converter.TextCompression;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites text stored before {@link TextCompression} was introduced, walking each table by
+ * primary key one chunk per run so it never holds long locks or large result sets. Only rows
+ * at or above the compression threshold are fetched with their text. Progress is kept in
+ * memory; after a restart the walk starts over and skips rows that are already encoded.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContentRecompressionJob {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentCompressionProperties properties;
+
+    private final List<Target> targets = List.of(
+            new Target("ai_conversation", "content"),
+            new Target("switch_history", "ai_prompt"));
+
+    @Scheduled(initialDelayString = "${content-compression.recompress-initial-delay-ms:60000}",
+               fixedDelayString = "${content-compression.recompress-interval-ms:5000}")
+    public void recompressNextChunk() {
+        if (!properties.isRecompressEnabled()) {
+            return;
+        }
+        for (Target target : targets) {
+            if (!target.done) {
+                try {
+                    recompress(target);
+                } catch (Exception e) {
+                    log.warn("Recompression of {}.{} failed after id {}, retrying next run: {}",
+                            target.table, target.column, target.lastId, e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void recompress(Target target) {
+        int chunkSize = Math.max(1, properties.getChunkSize());
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, CASE WHEN CHAR_LENGTH(" + target.column + ") >= ? THEN " + target.column + " END AS body"
+                        + " FROM " + target.table + " WHERE id > ? ORDER BY id LIMIT ?",
+                TextCompression.MIN_LENGTH, target.lastId, chunkSize);
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            target.lastId = Math.max(target.lastId, id);
+            String text = (String) row.get("body");
+            if (text == null || TextCompression.isEncoded(text)) {
+                continue;
+            }
+            String encoded = TextCompression.encode(text);
+            if (!encoded.equals(text)) {
+                updates.add(new Object[]{encoded, id});
+                target.bytesBefore += text.getBytes(StandardCharsets.UTF_8).length;
+                target.bytesAfter += encoded.length();
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE " + target.table + " SET " + target.column + " = ? WHERE id = ?", updates);
+            target.rewritten += updates.size();
+        }
+
+        if (rows.size() < chunkSize) {
+            target.done = true;
+            log.info("Recompressed {} rows of {}.{}: {} -> {} bytes",
+                    target.rewritten, target.table, target.column, target.bytesBefore, target.bytesAfter);
+        }
+    }
+
+    private static final class Target {
+        private final String table;
+        private final String column;
+        private long lastId;
+        private boolean done;
+        private long rewritten;
+        private long bytesBefore;
+        private long bytesAfter;
+
+        private Target(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.paicoding.paiswitch.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.event.ProviderCatalogChangedEvent;
 import com.paicoding.paiswitch.repository.ModelProviderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +26,7 @@ public class LocalConfigService {
     private static final String CONFIG_PATH = System.getProperty("user.home") + "/.claude/settings.json";
 
     private final ModelProviderRepository providerRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private static final Map<String, String> BASE_URL_TO_PROVIDER = Map.of(
             "api.anthropic.com", "claude",
             "api.deepseek.com", "deepseek",
@@ -68,6 +71,7 @@ public class LocalConfigService {
 
             if (updated) {
                 providerRepository.save(provider);
+                eventPublisher.publishEvent(new ProviderCatalogChangedEvent(providerCode));
                 log.info("Synced local config to database for provider: {}, model: {}", providerCode, localConfig.model());
             } else {
                 log.info("Local config already in sync with database for provider: {}", providerCode);
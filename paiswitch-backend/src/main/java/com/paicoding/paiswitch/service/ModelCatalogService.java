@@ -0,0 +1,301 @@
+package com.paicoding.paiswitch.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paicoding.paiswitch.common.config.ModelCatalogProperties;
+import com.paicoding.paiswitch.common.exception.BusinessException;
+import com.paicoding.paiswitch.common.response.ResponseCode;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.enums.ModelCatalogStatus;
+import com.paicoding.paiswitch.domain.event.ApiKeyChangedEvent;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Model lists of the providers, as reported by their {@code /models} endpoints (Anthropic
+ * {@code /v1/models}, OpenRouter {@code /models}). Reads are served from memory only: a list
+ * that is missing is reported as {@link ModelCatalogStatus#PENDING} and fetched in the
+ * background. Lists are revalidated after the TTL with If-None-Match / If-Modified-Since
+ * where the upstream sent an ETag or Last-Modified, and kept in one JSON file per provider
+ * so a restart starts warm. A failed refresh keeps serving the previous list.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelCatalogService {
+
+    private static final int MAX_ERROR_LENGTH = 300;
+
+    private final ModelCatalogProperties properties;
+    private final ProviderRegistry providerRegistry;
+    private final ProbeKeyResolver probeKeyResolver;
+    private final ProviderWireClient providerWireClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> nextCheckAt = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDisk() {
+        Path dir = cacheDir();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : files) {
+                try {
+                    Entry entry = objectMapper.readValue(file.toFile(), Entry.class);
+                    if (entry.providerCode() == null || entry.status() == null || entry.models() == null) {
+                        continue;
+                    }
+                    entries.put(entry.providerCode(), entry);
+                    nextCheckAt.put(entry.providerCode(), entry.checkedAt() + recheckDelay(entry.status()));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable model catalog file {}: {}", file, e.getMessage());
+                }
+            }
+            log.info("Loaded model catalogs of {} providers from {}", entries.size(), dir);
+        } catch (IOException e) {
+            log.warn("Failed to read model catalog cache {}: {}", dir, e.getMessage());
+        }
+    }
+
+    public ProviderDto.ModelCatalog getCatalog(String code) {
+        ModelProvider provider = providerRegistry.findByCode(code)
+                .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
+        Entry entry = entries.get(provider.getCode());
+        if (entry == null || !Objects.equals(entry.baseUrl(), provider.getBaseUrl())) {
+            if (properties.isRefreshEnabled() && provider.getBaseUrl() != null) {
+                refresh(provider);
+            }
+            return ProviderDto.ModelCatalog.builder()
+                    .providerCode(provider.getCode())
+                    .status(ModelCatalogStatus.PENDING)
+                    .models(List.of())
+                    .build();
+        }
+        return toCatalog(provider, entry);
+    }
+
+    @Scheduled(initialDelayString = "${model-catalog.refresh-initial-delay-ms:20000}",
+               fixedDelayString = "${model-catalog.refresh-tick-ms:60000}")
+    public void refreshDue() {
+        if (!properties.isRefreshEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (ModelProvider provider : providerRegistry.activeProviders()) {
+            if (provider.getBaseUrl() == null || provider.getBaseUrl().isBlank()) {
+                continue;
+            }
+            Entry entry = entries.get(provider.getCode());
+            boolean due = entry == null || !Objects.equals(entry.baseUrl(), provider.getBaseUrl())
+                    || now >= nextCheckAt.getOrDefault(provider.getCode(), 0L);
+            if (due) {
+                refresh(provider);
+            }
+        }
+    }
+
+    /** A new key may make a provider's list readable; retry without waiting for the interval. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onApiKeyChanged(ApiKeyChangedEvent event) {
+        Entry entry = event.providerCode() == null ? null : entries.get(event.providerCode());
+        if (entry != null && entry.status() != ModelCatalogStatus.OK) {
+            nextCheckAt.put(entry.providerCode(), 0L);
+        }
+    }
+
+    private void refresh(ModelProvider provider) {
+        String code = provider.getCode();
+        if (!inFlight.add(code)) {
+            return;
+        }
+        Entry cached = entries.get(code);
+        Entry previous = cached != null && Objects.equals(cached.baseUrl(), provider.getBaseUrl()) ? cached : null;
+        try {
+            String apiKey = probeKeyResolver.keyFor(provider).orElse(null);
+            // OpenRouter lists its models without authentication.
+            if (apiKey == null && !ProviderWireClient.isOpenRouter(code, provider.getBaseUrl())) {
+                store(failed(provider, previous, ModelCatalogStatus.NO_KEY, null));
+                inFlight.remove(code);
+                return;
+            }
+            providerWireClient.listModels(code, provider.getBaseUrl(), apiKey,
+                            previous != null ? previous.etag() : null, previous != null ? previous.lastModified() : null)
+                    .whenComplete((response, error) -> {
+                        try {
+                            store(next(provider, previous, response, error));
+                        } catch (Exception e) {
+                            log.warn("Failed to update model catalog of {}: {}", code, e.getMessage());
+                        } finally {
+                            inFlight.remove(code);
+                        }
+                    });
+        } catch (Exception e) {
+            inFlight.remove(code);
+            store(failed(provider, previous, ModelCatalogStatus.ERROR, e.getMessage()));
+        }
+    }
+
+    private Entry next(ModelProvider provider, Entry previous, HttpResponse<String> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return failed(provider, previous, ModelCatalogStatus.ERROR, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        }
+        long now = System.currentTimeMillis();
+        int status = response.statusCode();
+        if (status == 304 && previous != null) {
+            return new Entry(previous.providerCode(), previous.baseUrl(), ModelCatalogStatus.OK, previous.models(),
+                    previous.etag(), previous.lastModified(), previous.fetchedAt(), now, null);
+        }
+        if (status >= 200 && status < 300) {
+            List<Model> models = parseModels(response.body());
+            long fetchedAt = previous != null && previous.models().equals(models) ? previous.fetchedAt() : now;
+            return new Entry(provider.getCode(), provider.getBaseUrl(), ModelCatalogStatus.OK, models,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null), fetchedAt, now, null);
+        }
+        if (status == 404 || status == 405) {
+            return new Entry(provider.getCode(), provider.getBaseUrl(), ModelCatalogStatus.UNSUPPORTED, List.of(),
+                    null, null, 0, now, null);
+        }
+        String message = status == 401 || status == 403
+                ? "API Key 无效"
+                : "HTTP " + status + ": " + providerWireClient.extractErrorMessage(response.body());
+        return failed(provider, previous, ModelCatalogStatus.ERROR, message);
+    }
+
+    /** Keeps the previous list, if any, with the new status. */
+    private Entry failed(ModelProvider provider, Entry previous, ModelCatalogStatus status, String error) {
+        String message = error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+        long now = System.currentTimeMillis();
+        if (previous == null) {
+            return new Entry(provider.getCode(), provider.getBaseUrl(), status, List.of(), null, null, 0, now, message);
+        }
+        return new Entry(previous.providerCode(), previous.baseUrl(), status, previous.models(), previous.etag(),
+                previous.lastModified(), previous.fetchedAt(), now, message);
+    }
+
+    private void store(Entry entry) {
+        Entry previous = entries.put(entry.providerCode(), entry);
+        nextCheckAt.put(entry.providerCode(), entry.checkedAt() + recheckDelay(entry.status()));
+        if (previous == null || previous.status() != entry.status() || !previous.models().equals(entry.models())) {
+            log.info("Model catalog of {}: {} ({} models)", entry.providerCode(), entry.status(), entry.models().size());
+        }
+        writeToDisk(entry);
+    }
+
+    private List<Model> parseModels(String body) {
+        List<Model> models = new ArrayList<>();
+        try {
+            for (JsonNode node : objectMapper.readTree(body).path("data")) {
+                String id = node.path("id").asText(null);
+                if (id == null || id.isBlank()) {
+                    continue;
+                }
+                String displayName = node.path("display_name").asText(node.path("name").asText(null));
+                JsonNode contextLength = node.path("context_length");
+                models.add(new Model(id, displayName, contextLength.isNumber() ? contextLength.asLong() : null));
+            }
+        } catch (IOException e) {
+            log.warn("Unparsable model list: {}", e.getMessage());
+        }
+        return List.copyOf(models);
+    }
+
+    private void writeToDisk(Entry entry) {
+        Path dir = cacheDir();
+        if (dir == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+            Path target = dir.resolve(entry.providerCode().replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+            Path temp = Files.createTempFile(dir, "catalog", ".tmp");
+            objectMapper.writeValue(temp.toFile(), entry);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write model catalog of {}: {}", entry.providerCode(), e.getMessage());
+        }
+    }
+
+    private Path cacheDir() {
+        String dir = properties.getCacheDir();
+        return dir == null || dir.isBlank() ? null : Paths.get(dir);
+    }
+
+    private long recheckDelay(ModelCatalogStatus status) {
+        return (status == ModelCatalogStatus.OK ? properties.getTtl() : properties.getRetryInterval()).toMillis();
+    }
+
+    private ProviderDto.ModelCatalog toCatalog(ModelProvider provider, Entry entry) {
+        List<ProviderDto.ModelInfo> models = entry.models().stream()
+                .map(model -> ProviderDto.ModelInfo.builder()
+                        .id(model.id())
+                        .displayName(model.displayName())
+                        .contextLength(model.contextLength())
+                        .build())
+                .toList();
+        return ProviderDto.ModelCatalog.builder()
+                .providerCode(provider.getCode())
+                .status(entry.status())
+                .models(models)
+                .modelNameListed(listed(entry, provider.getModelName()))
+                .modelNameSmallListed(listed(entry, provider.getModelNameSmall()))
+                .fetchedAt(toDateTime(entry.fetchedAt()))
+                .checkedAt(toDateTime(entry.checkedAt()))
+                .stale(System.currentTimeMillis() - entry.checkedAt() > properties.getTtl().toMillis())
+                .error(entry.error())
+                .build();
+    }
+
+    private static Boolean listed(Entry entry, String modelName) {
+        if (entry.models().isEmpty() || modelName == null || modelName.isBlank()) {
+            return null;
+        }
+        return entry.models().stream().anyMatch(model -> model.id().equals(modelName));
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return epochMillis <= 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    record Model(String id, String displayName, Long contextLength) {}
+
+    /**
+     * Cached list of one provider, also the on-disk format.
+     *
+     * @param baseUrl   base URL the list was read from; a changed URL means a new list
+     * @param fetchedAt when the list was first seen in its current form, 0 if never
+     * @param checkedAt last refresh attempt
+     */
+    record Entry(String providerCode, String baseUrl, ModelCatalogStatus status, List<Model> models, String etag,
+                 String lastModified, long fetchedAt, long checkedAt, String error) {}
+}
@@ -0,0 +1,81 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.OpenRouterProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, per OpenRouter model, the provider order learned from a 404 "No allowed providers
+ * are available" response, so the next request routes correctly on the first attempt instead
+ * of paying the failed round trip again. Shared by chat and connection tests.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OpenRouterRoutingCache {
+
+    private final OpenRouterProperties properties;
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Provider order for the first attempt: the learned order while it is fresh, otherwise
+     * the vendor prefix of the model name ("anthropic/claude-sonnet-4" -> [anthropic]).
+     */
+    public List<String> providerOrder(String modelName) {
+        if (modelName == null || modelName.isBlank()) {
+            return List.of();
+        }
+        String key = modelName.trim();
+        Route route = routes.get(key);
+        if (route != null) {
+            if (route.expiresAtNanos() - System.nanoTime() > 0) {
+                return route.providerOrder();
+            }
+            routes.remove(key, route);
+        }
+        return vendorHint(key);
+    }
+
+    public void learn(String modelName, List<String> availableProviders) {
+        if (modelName == null || modelName.isBlank() || availableProviders == null || availableProviders.isEmpty()) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + properties.getRoutingCache().getTtl().toNanos();
+        routes.put(modelName.trim(), new Route(List.copyOf(availableProviders), expiresAt));
+        trim();
+        log.info("Learned OpenRouter provider order for model {}: {}", modelName, availableProviders);
+    }
+
+    private void trim() {
+        int maxSize = properties.getRoutingCache().getMaxSize();
+        if (routes.size() <= maxSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        routes.values().removeIf(route -> route.expiresAtNanos() - now <= 0);
+        Iterator<String> iterator = routes.keySet().iterator();
+        while (routes.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private List<String> vendorHint(String modelName) {
+        int slashIndex = modelName.indexOf('/');
+        if (slashIndex <= 0) {
+            return List.of();
+        }
+        String vendor = modelName.substring(0, slashIndex).trim().toLowerCase(Locale.ROOT);
+        return vendor.isEmpty() ? List.of() : List.of(vendor);
+    }
+
+    private record Route(List<String> providerOrder, long expiresAtNanos) {}
+}
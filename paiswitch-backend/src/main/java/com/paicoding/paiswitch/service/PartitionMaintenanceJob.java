@@ -0,0 +1,136 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.RetentionProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the monthly RANGE partitions of ai_conversation and switch_history in shape: splits
+ * the next months off the catch-all {@code p_max} partition before rows arrive in them, and
+ * drops whole months that fall out of the configured retention instead of deleting rows.
+ * Runs at startup and daily; does nothing unless the database is MySQL and the table is
+ * partitioned, so H2 and unmigrated schemas are left alone.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionMaintenanceJob {
+
+    private static final String MAX_PARTITION = "p_max";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${retention.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        if (!properties.isMaintenanceEnabled() || !isMySql()) {
+            return;
+        }
+        maintain("ai_conversation", properties::conversationSince);
+        maintain("switch_history", properties::switchHistorySince);
+    }
+
+    private void maintain(String table, Supplier<LocalDateTime> since) {
+        try {
+            List<Partition> partitions = partitions(table);
+            if (partitions.isEmpty()) {
+                return;
+            }
+            precreate(table, partitions);
+            dropExpired(table, partitions, since.get());
+        } catch (Exception e) {
+            log.warn("Partition maintenance of {} failed, retrying next run: {}", table, e.getMessage());
+        }
+    }
+
+    private void precreate(String table, List<Partition> partitions) {
+        LocalDateTime last = partitions.stream()
+                .map(Partition::upperBound)
+                .filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo)
+                .orElse(null);
+        if (last == null || partitions.stream().noneMatch(partition -> MAX_PARTITION.equals(partition.name()))) {
+            return;
+        }
+        LocalDateTime target = LocalDate.now().withDayOfMonth(1).plusMonths(properties.getPrecreateMonths() + 1L)
+                .atStartOfDay();
+        List<String> added = new ArrayList<>();
+        while (last.isBefore(target)) {
+            LocalDateTime next = last.plusMonths(1);
+            added.add("PARTITION " + PARTITION_NAME.format(last) + " VALUES LESS THAN (UNIX_TIMESTAMP('"
+                    + BOUND.format(next) + "'))");
+            last = next;
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        added.add("PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE");
+        jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + MAX_PARTITION
+                + " INTO (" + String.join(", ", added) + ")");
+        log.info("Added {} monthly partitions to {} up to {}", added.size() - 1, table, last);
+    }
+
+    private void dropExpired(String table, List<Partition> partitions, LocalDateTime since) {
+        List<String> expired = partitions.stream()
+                .filter(partition -> partition.upperBound() != null && !partition.upperBound().isAfter(since))
+                .map(Partition::name)
+                .toList();
+        if (expired.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + String.join(", ", expired));
+        if ("ai_conversation".equals(table)) {
+            // Sessions whose messages were all dropped with the partitions.
+            jdbcTemplate.update("DELETE FROM ai_session WHERE last_message_at < ?", Timestamp.valueOf(since));
+        }
+        log.info("Dropped partitions {} of {} older than {}", expired, table, since);
+    }
+
+    /**
+     * Partitions in order; the upper bound is converted back to a datetime in the session time
+     * zone, the same one UNIX_TIMESTAMP(created_at) is evaluated in. Empty when not partitioned.
+     */
+    private List<Partition> partitions(String table) {
+        return jdbcTemplate.query("""
+                SELECT PARTITION_NAME AS name,
+                       CASE WHEN PARTITION_DESCRIPTION = 'MAXVALUE' THEN NULL
+                            ELSE FROM_UNIXTIME(PARTITION_DESCRIPTION) END AS upper_bound
+                FROM information_schema.PARTITIONS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL
+                ORDER BY PARTITION_ORDINAL_POSITION
+                """, (rs, rowNum) -> {
+            Timestamp upperBound = rs.getTimestamp("upper_bound");
+            return new Partition(rs.getString("name"), upperBound == null ? null : upperBound.toLocalDateTime());
+        }, table);
+    }
+
+    private boolean isMySql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "MySQL".equalsIgnoreCase(product);
+    }
+
+    private record Partition(String name, LocalDateTime upperBound) {}
+}
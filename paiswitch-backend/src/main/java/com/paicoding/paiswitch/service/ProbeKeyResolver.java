@@ -0,0 +1,56 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.ProbeKeyProperties;
+import com.paicoding.paiswitch.domain.entity.ApiKey;
+import com.paicoding.paiswitch.domain.entity.AutoSwitchPolicy;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.repository.ApiKeyRepository;
+import com.paicoding.paiswitch.repository.AutoSwitchPolicyRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+
+/**
+ * Picks the key for a background call to a provider: the operator's configured key, or else
+ * the most recently used valid key of a user who opted in through an enabled auto-switch
+ * policy that names the provider. Keys of other users are never used.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProbeKeyResolver {
+
+    private final ProbeKeyProperties properties;
+    private final AutoSwitchPolicyRepository policyRepository;
+    private final ApiKeyRepository apiKeyRepository;
+    private final EncryptionService encryptionService;
+
+    public Optional<String> keyFor(ModelProvider provider) {
+        String configured = properties.getApiKeys().get(provider.getCode());
+        if (configured != null && !configured.isBlank()) {
+            return Optional.of(configured.trim());
+        }
+        if (!properties.isUseAutoSwitchUserKeys()) {
+            return Optional.empty();
+        }
+        return policyRepository.findByEnabledTrue().stream()
+                .filter(policy -> names(policy, provider.getCode()))
+                .map(policy -> apiKeyRepository.findByUserIdAndProviderId(policy.getUserId(), provider.getId()))
+                .flatMap(Optional::stream)
+                .filter(key -> Boolean.TRUE.equals(key.getIsValid()))
+                .max(Comparator.comparing(ApiKey::getLastUsedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())))
+                .map(key -> encryptionService.decrypt(key.getEncryptedKey()));
+    }
+
+    private static boolean names(AutoSwitchPolicy policy, String providerCode) {
+        if (providerCode.equals(policy.getPreferredProvider())) {
+            return true;
+        }
+        return policy.getFallbackProviders() != null && Arrays.stream(policy.getFallbackProviders().split(","))
+                .map(String::trim)
+                .anyMatch(providerCode::equals);
+    }
+}
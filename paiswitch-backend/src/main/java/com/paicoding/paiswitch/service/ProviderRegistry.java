@@ -0,0 +1,179 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.event.ProviderCatalogChangedEvent;
+import com.paicoding.paiswitch.repository.ModelProviderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory copy of the model_provider table. Reads go to an immutable snapshot, indexed by
+ * code and id and holding ready-made {@link ProviderDto.ProviderInfo}s, that is replaced as a
+ * whole after every committed {@link ProviderCatalogChangedEvent}; readers never lock and never
+ * see a half-built catalog.
+ * <p>
+ * The providers handed out are detached copies shared by all readers and must not be
+ * modified. Writes load the managed row from {@link ModelProviderRepository}; associations
+ * take {@link ModelProviderRepository#getReferenceById}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderRegistry {
+
+    private final ModelProviderRepository providerRepository;
+
+    private volatile Snapshot snapshot;
+
+    public Optional<ModelProvider> findByCode(String code) {
+        return Optional.ofNullable(snapshot().byCode().get(code)).map(Entry::provider);
+    }
+
+    public Optional<ModelProvider> findById(Long id) {
+        return Optional.ofNullable(snapshot().byId().get(id)).map(Entry::provider);
+    }
+
+    /** Active providers in sort order. */
+    public List<ModelProvider> activeProviders() {
+        return snapshot().active().stream().map(Entry::provider).toList();
+    }
+
+    /** Active providers in sort order, as DTOs. */
+    public List<ProviderDto.ProviderInfo> activeProviderInfos() {
+        return snapshot().activeInfos();
+    }
+
+    /**
+     * Active providers in sort order, as DTOs with {@code hasApiKey} filled in from the given
+     * provider ids; both variants are prebuilt, so nothing is allocated per provider.
+     */
+    public List<ProviderDto.ProviderInfo> activeProviderInfos(IntPredicate hasApiKey) {
+        List<Entry> active = snapshot().active();
+        List<ProviderDto.ProviderInfo> infos = new ArrayList<>(active.size());
+        for (Entry entry : active) {
+            infos.add(hasApiKey.test(Math.toIntExact(entry.provider().getId())) ? entry.withKey() : entry.withoutKey());
+        }
+        return infos;
+    }
+
+    /**
+     * The prebuilt DTO of a provider, looked up by id so a lazy proxy is never initialized.
+     */
+    public ProviderDto.ProviderInfo info(ModelProvider provider) {
+        Entry entry = snapshot().byId().get(provider.getId());
+        return entry != null ? entry.info() : toInfo(provider);
+    }
+
+    public long version() {
+        return snapshot().version();
+    }
+
+    /**
+     * Runs before other catalog listeners, so views derived from the registry rebuild from the
+     * new snapshot.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onProviderCatalogChanged(ProviderCatalogChangedEvent event) {
+        reload();
+    }
+
+    public synchronized void reload() {
+        long version = snapshot == null ? 1 : snapshot.version() + 1;
+        List<ModelProvider> providers = providerRepository.findAll(Sort.by("sortOrder", "id"));
+
+        Map<String, Entry> byCode = new HashMap<>();
+        Map<Long, Entry> byId = new HashMap<>();
+        List<Entry> active = new ArrayList<>();
+        for (ModelProvider row : providers) {
+            ModelProvider provider = copyOf(row);
+            Entry entry = new Entry(provider, toInfo(provider), withApiKey(provider, true), withApiKey(provider, false));
+            byCode.put(provider.getCode(), entry);
+            byId.put(provider.getId(), entry);
+            if (Boolean.TRUE.equals(provider.getIsActive())) {
+                active.add(entry);
+            }
+        }
+        snapshot = new Snapshot(version, Map.copyOf(byCode), Map.copyOf(byId), List.copyOf(active),
+                active.stream().map(Entry::info).toList());
+        log.info("Loaded provider catalog version {} ({} providers, {} active)", version, providers.size(), active.size());
+    }
+
+    public static ProviderDto.ProviderInfo toInfo(ModelProvider provider) {
+        return ProviderDto.ProviderInfo.builder()
+                .id(provider.getId())
+                .code(provider.getCode())
+                .name(provider.getName())
+                .description(provider.getDescription())
+                .baseUrl(provider.getBaseUrl())
+                .modelName(provider.getModelName())
+                .modelNameSmall(provider.getModelNameSmall())
+                .isBuiltin(provider.getIsBuiltin())
+                .isActive(provider.getIsActive())
+                .sortOrder(provider.getSortOrder())
+                .iconUrl(provider.getIconUrl())
+                .aliases(provider.getAliases())
+                .createdAt(provider.getCreatedAt())
+                .build();
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static ProviderDto.ProviderInfo withApiKey(ModelProvider provider, boolean hasApiKey) {
+        ProviderDto.ProviderInfo info = toInfo(provider);
+        info.setHasApiKey(hasApiKey);
+        return info;
+    }
+
+    private static ModelProvider copyOf(ModelProvider provider) {
+        return ModelProvider.builder()
+                .id(provider.getId())
+                .code(provider.getCode())
+                .name(provider.getName())
+                .description(provider.getDescription())
+                .baseUrl(provider.getBaseUrl())
+                .modelName(provider.getModelName())
+                .modelNameSmall(provider.getModelNameSmall())
+                .isBuiltin(provider.getIsBuiltin())
+                .isActive(provider.getIsActive())
+                .sortOrder(provider.getSortOrder())
+                .iconUrl(provider.getIconUrl())
+                .aliases(provider.getAliases())
+                .createdAt(provider.getCreatedAt())
+                .updatedAt(provider.getUpdatedAt())
+                .build();
+    }
+
+    private record Entry(ModelProvider provider, ProviderDto.ProviderInfo info, ProviderDto.ProviderInfo withKey,
+                         ProviderDto.ProviderInfo withoutKey) {}
+
+    private record Snapshot(long version, Map<String, Entry> byCode, Map<Long, Entry> byId, List<Entry> active,
+                            List<ProviderDto.ProviderInfo> activeInfos) {}
+}
@@ -1,25 +1,47 @@
 package com.paicoding.paiswitch.service;
 
+import com.paicoding.paiswitch.common.config.ProviderWireProperties;
 import com.paicoding.paiswitch.common.exception.BusinessException;
 import com.paicoding.paiswitch.common.response.ResponseCode;
 import com.paicoding.paiswitch.domain.dto.ProviderDto;
 import com.paicoding.paiswitch.domain.entity.ApiKey;
 import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.event.ProviderCatalogChangedEvent;
 import com.paicoding.paiswitch.repository.ApiKeyRepository;
 import com.paicoding.paiswitch.repository.ModelProviderRepository;
+import com.paicoding.paiswitch.service.health.ProviderHealthMonitor;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import com.paicoding.paiswitch.service.wire.StreamingLatencyProbe;
+import com.paicoding.paiswitch.service.wire.WireChatRequest;
+import com.paicoding.paiswitch.service.wire.WireEndpoint;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -29,49 +51,25 @@ public class ProviderService {
     private final ModelProviderRepository providerRepository;
     private final ApiKeyRepository apiKeyRepository;
     private final EncryptionService encryptionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProviderWireClient providerWireClient;
+    private final ProviderRegistry providerRegistry;
+    private final ApiKeyPresenceIndex apiKeyPresenceIndex;
+    private final ProviderHealthMonitor healthMonitor;
+    private final StreamingLatencyProbe streamingLatencyProbe;
 
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
-
-    @Transactional(readOnly = true)
     public List<ProviderDto.ProviderInfo> getAllProviders() {
-        return providerRepository.findByIsActiveTrueOrderBySortOrderAsc().stream()
-                .map(this::mapToProviderInfo)
-                .collect(Collectors.toList());
+        return providerRegistry.activeProviderInfos();
     }
 
-    @Transactional(readOnly = true)
     public List<ProviderDto.ProviderInfo> getProvidersForUser(Long userId) {
-        List<ModelProvider> providers = providerRepository.findByIsActiveTrueOrderBySortOrderAsc();
-        return providers.stream()
-                .map(provider -> {
-                    ProviderDto.ProviderInfo info = mapToProviderInfo(provider);
-                    boolean hasApiKey = apiKeyRepository.existsByUserIdAndProviderId(userId, provider.getId());
-                    return ProviderDto.ProviderInfo.builder()
-                            .id(info.getId())
-                            .code(info.getCode())
-                            .name(info.getName())
-                            .description(info.getDescription())
-                            .baseUrl(info.getBaseUrl())
-                            .modelName(info.getModelName())
-                            .modelNameSmall(info.getModelNameSmall())
-                            .isBuiltin(info.getIsBuiltin())
-                            .isActive(info.getIsActive())
-                            .sortOrder(info.getSortOrder())
-                            .iconUrl(info.getIconUrl())
-                            .hasApiKey(hasApiKey)
-                            .createdAt(info.getCreatedAt())
-                            .build();
-                })
-                .collect(Collectors.toList());
+        return providerRegistry.activeProviderInfos(apiKeyPresenceIndex.keyedProviders(userId));
     }
 
-    @Transactional(readOnly = true)
     public ProviderDto.ProviderInfo getProviderByCode(String code) {
-        ModelProvider provider = providerRepository.findByCode(code)
+        ModelProvider provider = providerRegistry.findByCode(code)
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
-        return mapToProviderInfo(provider);
+        return providerRegistry.info(provider);
     }
 
     @Transactional
@@ -88,14 +86,16 @@ public class ProviderService {
                 .modelName(request.getModelName())
                 .modelNameSmall(request.getModelNameSmall())
                 .iconUrl(request.getIconUrl())
+                .aliases(request.getAliases())
                 .isBuiltin(false)
                 .isActive(true)
                 .sortOrder(100)
                 .build();
 
         provider = providerRepository.save(provider);
+        eventPublisher.publishEvent(new ProviderCatalogChangedEvent(provider.getCode()));
         log.info("Created custom provider: {} for user: {}", provider.getCode(), userId);
-        return mapToProviderInfo(provider);
+        return ProviderRegistry.toInfo(provider);
     }
 
     @Transactional
@@ -114,10 +114,12 @@ public class ProviderService {
         if (request.getModelNameSmall() != null) provider.setModelNameSmall(request.getModelNameSmall());
         if (request.getIsActive() != null) provider.setIsActive(request.getIsActive());
         if (request.getIconUrl() != null) provider.setIconUrl(request.getIconUrl());
+        if (request.getAliases() != null) provider.setAliases(request.getAliases());
 
         provider = providerRepository.save(provider);
+        eventPublisher.publishEvent(new ProviderCatalogChangedEvent(provider.getCode()));
         log.info("Updated provider: {} by user: {}", provider.getCode(), userId);
-        return mapToProviderInfo(provider);
+        return ProviderRegistry.toInfo(provider);
     }
 
     /**
@@ -141,16 +143,18 @@ public class ProviderService {
         }
 
         provider = providerRepository.save(provider);
+        eventPublisher.publishEvent(new ProviderCatalogChangedEvent(provider.getCode()));
         log.info("Updated provider config: {} by user: {}, model: {}", provider.getCode(), userId, provider.getModelName());
-        return mapToProviderInfo(provider);
+        return ProviderRegistry.toInfo(provider);
     }
 
     /**
      * Test API connection for a provider.
-     * Uses provided config or falls back to stored config.
+     * Uses provided config or falls back to stored config. With {@code stream} set, the reply
+     * is streamed and connection, first-token and generation timings are reported as well.
      */
     public ProviderDto.TestResult testProviderConnection(Long userId, String code, ProviderDto.TestRequest request) {
-        ModelProvider provider = providerRepository.findByCode(code)
+        ModelProvider provider = providerRegistry.findByCode(code)
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
 
         // Use request values or fall back to stored values
@@ -190,203 +194,181 @@ public class ProviderService {
                     .build();
         }
 
+        if (Boolean.TRUE.equals(request.getStream())) {
+            return performStreamingTestRequest(provider.getCode(), baseUrl, modelName, apiKey, request);
+        }
         return performTestRequest(provider.getCode(), baseUrl, modelName, apiKey);
     }
 
-    private ProviderDto.TestResult performTestRequest(String providerCode, String baseUrl, String modelName, String apiKey) {
-        long startTime = System.currentTimeMillis();
-        String testUrl = "";
-
-        try {
-            // Normalize base URL
-            String normalizedUrl = normalizeBaseUrl(baseUrl);
-            String normalizedApiKey = normalizeApiKey(apiKey);
-            boolean useOpenRouterApi = isOpenRouterProvider(providerCode, normalizedUrl);
-
-            testUrl = useOpenRouterApi
-                    ? buildOpenRouterChatCompletionsUrl(normalizedUrl)
-                    : buildMessagesTestUrl(normalizedUrl);
-            String requestBody = useOpenRouterApi
-                    ? buildOpenRouterTestRequestBody(modelName)
-                    : """
-                        {
-                            "model": "%s",
-                            "max_tokens": 10,
-                            "messages": [{"role": "user", "content": "Hi"}]
-                        }
-                        """.formatted(modelName);
-
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(URI.create(testUrl))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(30));
-
-            if (useOpenRouterApi) {
-                requestBuilder.header("Authorization", "Bearer " + normalizedApiKey);
-            } else {
-                requestBuilder
-                        .header("x-api-key", normalizedApiKey)
-                        .header("anthropic-version", "2023-06-01");
-            }
-
-            log.info("Test request -> provider={}, url={}, auth={}, apiKey={}, body={}",
-                    providerCode,
-                    testUrl,
-                    useOpenRouterApi ? "Authorization: Bearer" : "x-api-key",
-                    maskApiKey(normalizedApiKey),
-                    singleLine(requestBody));
-
-            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
-            log.info("Test response <- provider={}, url={}, status={}, body={}",
-                    providerCode,
-                    testUrl,
-                    response.statusCode(),
-                    truncate(response.body(), 4000));
-
-            if (useOpenRouterApi && shouldRetryOpenRouterWithAvailableProviders(response)) {
-                List<String> availableProviders = extractOpenRouterAvailableProviders(response.body());
-                if (!availableProviders.isEmpty()) {
-                    String retryRequestBody = buildOpenRouterTestRequestBody(modelName, availableProviders);
-                    HttpRequest retryRequest = buildHttpRequest(testUrl, retryRequestBody, true, normalizedApiKey);
-                    log.info("Test retry request -> provider={}, url={}, order={}, body={}",
-                            providerCode,
-                            testUrl,
-                            availableProviders,
-                            singleLine(retryRequestBody));
-                    HttpResponse<String> retryResponse = httpClient.send(retryRequest, HttpResponse.BodyHandlers.ofString());
-                    log.info("Test retry response <- provider={}, url={}, status={}, body={}",
-                            providerCode,
-                            testUrl,
-                            retryResponse.statusCode(),
-                            truncate(retryResponse.body(), 4000));
-                    return buildTestResult(retryResponse, modelName, startTime);
-                }
+    /**
+     * Tests every active provider the user has a valid key for, with its stored base URL and
+     * model, all at once. At most {@code provider-wire.test-all.parallelism} requests are in
+     * flight; providers that have not answered by the deadline are reported as timed out.
+     * {@code onResult} sees each result as it finishes. The returned list is ranked:
+     * successful providers by latency, then failures.
+     */
+    public CompletableFuture<List<ProviderDto.BulkTestResult>> testAllProviders(Long userId,
+                                                                             Consumer<ProviderDto.BulkTestResult> onResult) {
+        List<BulkTestTarget> targets = new ArrayList<>();
+        for (ApiKey key : apiKeyRepository.findByUserId(userId)) {
+            if (!Boolean.TRUE.equals(key.getIsValid())) {
+                continue;
             }
-
-            return buildTestResult(response, modelName, startTime);
-
-        } catch (java.net.ConnectException e) {
-            log.warn("Test connection connect exception: provider={}, url={}, message={}", providerCode, testUrl, e.getMessage());
-            return ProviderDto.TestResult.builder()
-                    .success(false)
-                    .message("无法连接到服务器，请检查 Base URL")
-                    .responseTimeMs(System.currentTimeMillis() - startTime)
-                    .build();
-        } catch (java.net.SocketTimeoutException e) {
-            log.warn("Test connection timeout: provider={}, url={}, message={}", providerCode, testUrl, e.getMessage());
-            return ProviderDto.TestResult.builder()
-                    .success(false)
-                    .message("连接超时，请检查网络或 Base URL")
-                    .responseTimeMs(System.currentTimeMillis() - startTime)
-                    .build();
-        } catch (Exception e) {
-            log.error("Test connection failed: provider={}, url={}, message={}", providerCode, testUrl, e.getMessage(), e);
-            return ProviderDto.TestResult.builder()
-                    .success(false)
-                    .message("测试失败: " + e.getMessage())
-                    .responseTimeMs(System.currentTimeMillis() - startTime)
-                    .build();
+            providerRegistry.findById(key.getProvider().getId())
+                    .filter(provider -> Boolean.TRUE.equals(provider.getIsActive()))
+                    .ifPresent(provider -> targets.add(
+                            new BulkTestTarget(provider, encryptionService.decrypt(key.getEncryptedKey()))));
         }
-    }
+        targets.sort(Comparator.comparing((BulkTestTarget target) -> target.provider().getSortOrder()));
 
-    private String maskApiKey(String apiKey) {
-        if (apiKey == null || apiKey.isBlank()) {
-            return "***";
-        }
-        int length = apiKey.length();
-        if (length <= 8) {
-            return "***";
-        }
-        return apiKey.substring(0, 4) + "..." + apiKey.substring(length - 4);
+        ProviderWireProperties.TestAll config = providerWireClient.properties().getTestAll();
+        return new BulkTest(targets, onResult).start(Math.max(1, config.getParallelism()), config.getDeadline());
     }
 
-    private String singleLine(String value) {
-        if (value == null) {
-            return "";
-        }
-        return value.replaceAll("\\s+", " ").trim();
+    public SseEmitter streamTestAllProviders(Long userId) {
+        Duration deadline = providerWireClient.properties().getTestAll().getDeadline();
+        SseEmitter emitter = new SseEmitter(deadline.plusSeconds(5).toMillis());
+        AtomicBoolean closed = new AtomicBoolean(false);
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(error -> closed.set(true));
+
+        testAllProviders(userId, result -> sendTestEvent(emitter, closed, "result", result))
+                .whenComplete((ranked, error) -> {
+                    if (error != null) {
+                        sendTestEvent(emitter, closed, "error", Map.of("message", "测试失败: " + error.getMessage()));
+                    } else {
+                        sendTestEvent(emitter, closed, "done", ranked);
+                    }
+                    if (closed.compareAndSet(false, true)) {
+                        emitter.complete();
+                    }
+                });
+        return emitter;
     }
 
-    private String truncate(String value, int maxLength) {
-        if (value == null) {
-            return "";
+    private void sendTestEvent(SseEmitter emitter, AtomicBoolean closed, String name, Object data) {
+        if (closed.get()) {
+            return;
         }
-        if (value.length() <= maxLength) {
-            return value;
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE client gone during provider test: {}", e.getMessage());
+            closed.set(true);
         }
-        return value.substring(0, maxLength) + "...(truncated)";
     }
 
-    private String normalizeApiKey(String apiKey) {
-        if (apiKey == null) {
-            return "";
-        }
-        String normalized = apiKey.trim();
-        if (normalized.regionMatches(true, 0, "Bearer ", 0, 7)) {
-            return normalized.substring(7).trim();
-        }
-        return normalized;
+    private ProviderDto.TestResult performTestRequest(String providerCode, String baseUrl, String modelName, String apiKey) {
+        return performTestRequestAsync(providerCode, baseUrl, modelName, apiKey).join();
     }
 
-    private boolean isOpenRouterProvider(String providerCode, String normalizedUrl) {
-        return "openrouter".equalsIgnoreCase(providerCode) || normalizedUrl.toLowerCase().contains("openrouter.ai");
-    }
+    /**
+     * Completes normally in all cases; failures are turned into an unsuccessful result.
+     * Cancelling the returned future aborts the request.
+     */
+    private CompletableFuture<ProviderDto.TestResult> performTestRequestAsync(String providerCode, String baseUrl,
+                                                                           String modelName, String apiKey) {
+        long startTime = System.currentTimeMillis();
+        WireEndpoint endpoint = null;
 
-    private String buildOpenRouterChatCompletionsUrl(String normalizedUrl) {
-        if (normalizedUrl.endsWith("/v1/chat/completions") || normalizedUrl.endsWith("/chat/completions")) {
-            return normalizedUrl;
-        }
-        if (normalizedUrl.endsWith("/v1")) {
-            return normalizedUrl + "/chat/completions";
+        try {
+            endpoint = providerWireClient.endpoint(providerCode, baseUrl, apiKey);
+            WireChatRequest request = WireChatRequest.builder()
+                    .model(modelName)
+                    .maxTokens(10)
+                    .userPrompt("Hi")
+                    .build();
+            String testUrl = endpoint.uri().toString();
+            CompletableFuture<HttpResponse<String>> sent = providerWireClient.send(endpoint, request);
+            CompletableFuture<ProviderDto.TestResult> result = sent
+                    .thenApply(response -> buildTestResult(response, modelName, startTime))
+                    .exceptionally(e -> failedTestResult(providerCode, testUrl, e, startTime));
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    sent.cancel(true);
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            String testUrl = endpoint != null ? endpoint.uri().toString() : baseUrl;
+            return CompletableFuture.completedFuture(failedTestResult(providerCode, testUrl, e, startTime));
         }
-        return normalizedUrl + "/v1/chat/completions";
     }
 
-    private String buildOpenRouterTestRequestBody(String modelName) {
-        String providerHint = extractModelProviderHint(modelName);
-        return buildOpenRouterTestRequestBody(modelName,
-                providerHint == null ? List.of() : List.of(providerHint));
-    }
+    private ProviderDto.TestResult performStreamingTestRequest(String providerCode, String baseUrl, String modelName,
+                                                              String apiKey, ProviderDto.TestRequest testRequest) {
+        ProviderWireProperties.StreamTest config = providerWireClient.properties().getStreamTest();
+        int promptTokens = bounded(testRequest.getPromptTokens(), config.getPromptTokens(), config.getMaxPromptTokens());
+        int maxTokens = bounded(testRequest.getMaxTokens(), config.getMaxTokens(), config.getMaxMaxTokens());
+        long startTime = System.currentTimeMillis();
+        WireEndpoint endpoint = null;
 
-    private String buildOpenRouterTestRequestBody(String modelName, List<String> providerOrder) {
-        if (providerOrder == null || providerOrder.isEmpty()) {
-            return """
-                {
-                    "model": "%s",
-                    "max_tokens": 10,
-                    "messages": [{"role": "user", "content": "Hi"}]
-                }
-                """.formatted(modelName);
+        try {
+            endpoint = providerWireClient.endpoint(providerCode, baseUrl, apiKey);
+            WireChatRequest request = WireChatRequest.builder()
+                    .model(modelName)
+                    .maxTokens(maxTokens)
+                    .userPrompt(StreamingLatencyProbe.promptOfSize(promptTokens))
+                    .build();
+            StreamingLatencyProbe.Result result = streamingLatencyProbe.measure(endpoint, request);
+
+            String message;
+            if (result.success()) {
+                message = "连接成功";
+            } else if (result.statusCode() == 401) {
+                message = "API Key 无效";
+            } else if (result.statusCode() < 200 || result.statusCode() >= 300) {
+                message = "请求失败: " + providerWireClient.extractErrorMessage(result.error());
+            } else {
+                message = "请求失败: " + result.error();
+            }
+            return ProviderDto.TestResult.builder()
+                    .success(result.success())
+                    .message(message)
+                    .modelName(result.success() ? modelName : null)
+                    .responseTimeMs(result.totalMs())
+                    .dnsMs(result.connection().dnsMs())
+                    .connectMs(result.connection().connectMs())
+                    .tlsMs(result.connection().tlsMs())
+                    .ttfbMs(result.ttfbMs())
+                    .ttftMs(result.ttftMs())
+                    .promptTokens(result.promptTokens())
+                    .outputTokens(result.success() ? result.outputTokens() : null)
+                    .tokensPerSecond(result.tokensPerSecond())
+                    .build();
+        } catch (Exception e) {
+            String testUrl = endpoint != null ? endpoint.uri().toString() : baseUrl;
+            return failedTestResult(providerCode, testUrl, e, startTime);
         }
+    }
 
-        String orderJson = providerOrder.stream()
-                .map(provider -> "\"" + provider + "\"")
-                .collect(Collectors.joining(", "));
-        return """
-            {
-                "model": "%s",
-                "max_tokens": 10,
-                "messages": [{"role": "user", "content": "Hi"}],
-                "provider": {
-                    "order": [%s],
-                    "allow_fallbacks": true
-                }
-            }
-            """.formatted(modelName, orderJson);
+    private static int bounded(Integer requested, int defaultValue, int max) {
+        int value = requested != null && requested > 0 ? requested : defaultValue;
+        return Math.min(value, max);
     }
 
-    private String extractModelProviderHint(String modelName) {
-        if (modelName == null || modelName.isBlank()) {
-            return null;
-        }
-        String normalized = modelName.trim();
-        int slashIndex = normalized.indexOf('/');
-        if (slashIndex <= 0) {
-            return null;
-        }
-        String providerHint = normalized.substring(0, slashIndex).trim().toLowerCase();
-        return providerHint.isEmpty() ? null : providerHint;
+    private ProviderDto.TestResult failedTestResult(String providerCode, String testUrl, Throwable e, long startTime) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        String message;
+        if (cause instanceof java.net.ConnectException) {
+            log.warn("Test connection connect exception: provider={}, url={}, message={}", providerCode, testUrl, cause.getMessage());
+            message = "无法连接到服务器，请检查 Base URL";
+        } else if (cause instanceof UnknownHostException) {
+            log.warn("Test connection unknown host: provider={}, url={}, message={}", providerCode, testUrl, cause.getMessage());
+            message = "无法解析域名，请检查 Base URL";
+        } else if (cause instanceof HttpTimeoutException || cause instanceof SocketTimeoutException) {
+            log.warn("Test connection timeout: provider={}, url={}, message={}", providerCode, testUrl, cause.getMessage());
+            message = "连接超时，请检查网络或 Base URL";
+        } else {
+            log.error("Test connection failed: provider={}, url={}, message={}", providerCode, testUrl, cause.getMessage(), cause);
+            message = "测试失败: " + cause.getMessage();
+        }
+        return ProviderDto.TestResult.builder()
+                .success(false)
+                .message(message)
+                .responseTimeMs(System.currentTimeMillis() - startTime)
+                .providerFault(ProviderHealthMonitor.isProviderFault(cause))
+                .build();
     }
 
     private ProviderDto.TestResult buildTestResult(HttpResponse<String> response, String modelName, long startTime) {
@@ -406,128 +388,147 @@ public class ProviderService {
                     .responseTimeMs(responseTime)
                     .build();
         } else if (response.statusCode() == 404) {
-            String errorMsg = extractErrorMessage(response.body());
+            String errorMsg = providerWireClient.extractErrorMessage(response.body());
             return ProviderDto.TestResult.builder()
                     .success(false)
                     .message("请求失败: " + errorMsg)
                     .responseTimeMs(responseTime)
                     .build();
         } else {
-            String errorMsg = extractErrorMessage(response.body());
+            String errorMsg = providerWireClient.extractErrorMessage(response.body());
             return ProviderDto.TestResult.builder()
                     .success(false)
                     .message("请求失败: " + errorMsg)
                     .responseTimeMs(responseTime)
+                    .providerFault(ProviderHealthMonitor.isProviderFault(response.statusCode()))
                     .build();
         }
     }
 
-    private HttpRequest buildHttpRequest(String testUrl, String requestBody, boolean useOpenRouterApi, String apiKey) {
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(testUrl))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .timeout(Duration.ofSeconds(30));
+    private record BulkTestTarget(ModelProvider provider, String apiKey) {}
 
-        if (useOpenRouterApi) {
-            requestBuilder.header("Authorization", "Bearer " + apiKey);
-        } else {
-            requestBuilder
-                    .header("x-api-key", apiKey)
-                    .header("anthropic-version", "2023-06-01");
-        }
-        return requestBuilder.build();
-    }
-
-    private boolean shouldRetryOpenRouterWithAvailableProviders(HttpResponse<String> response) {
-        if (response.statusCode() != 404 || response.body() == null) {
-            return false;
+    /**
+     * One run of {@link #testAllProviders}. Each finished test starts the next waiting one, so
+     * the parallelism bound holds without a thread per provider; results are recorded under
+     * the run's lock, which also serializes {@code onResult}. Tests still running at the
+     * deadline are cancelled so their connections are released.
+     */
+    private final class BulkTest {
+
+        private final List<BulkTestTarget> targets;
+        private final Deque<BulkTestTarget> waiting;
+        private final Consumer<ProviderDto.BulkTestResult> onResult;
+        private final Map<String, ProviderDto.BulkTestResult> results = new LinkedHashMap<>();
+        private final Map<String, CompletableFuture<ProviderDto.TestResult>> running = new HashMap<>();
+        private final CompletableFuture<List<ProviderDto.BulkTestResult>> done = new CompletableFuture<>();
+        private long deadlineMs;
+
+        private BulkTest(List<BulkTestTarget> targets, Consumer<ProviderDto.BulkTestResult> onResult) {
+            this.targets = targets;
+            this.waiting = new ArrayDeque<>(targets);
+            this.onResult = onResult;
+        }
+
+        CompletableFuture<List<ProviderDto.BulkTestResult>> start(int parallelism, Duration deadline) {
+            if (targets.isEmpty()) {
+                done.complete(List.of());
+                return done;
+            }
+            deadlineMs = deadline.toMillis();
+            CompletableFuture.delayedExecutor(deadlineMs, TimeUnit.MILLISECONDS).execute(this::expire);
+            for (int i = 0; i < parallelism; i++) {
+                launchNext();
+            }
+            return done;
         }
-        String body = response.body();
-        return body.contains("No allowed providers are available")
-                && body.contains("available_providers");
-    }
 
-    private List<String> extractOpenRouterAvailableProviders(String responseBody) {
-        try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode root = mapper.readTree(responseBody);
-            com.fasterxml.jackson.databind.JsonNode providersNode = root.path("error")
-                    .path("metadata")
-                    .path("available_providers");
-            if (!providersNode.isArray()) {
-                return List.of();
+        private void launchNext() {
+            BulkTestTarget target;
+            synchronized (this) {
+                target = done.isDone() ? null : waiting.poll();
+            }
+            if (target == null) {
+                return;
             }
-            List<String> providers = new java.util.ArrayList<>();
-            for (com.fasterxml.jackson.databind.JsonNode node : providersNode) {
-                String provider = node.asText();
-                if (provider != null && !provider.isBlank()) {
-                    providers.add(provider.trim().toLowerCase());
+            ModelProvider provider = target.provider();
+            CompletableFuture<ProviderDto.TestResult> test = performTestRequestAsync(provider.getCode(),
+                    provider.getBaseUrl(), provider.getModelName(), target.apiKey());
+            synchronized (this) {
+                if (done.isDone()) {
+                    test.cancel(true);
+                    return;
                 }
+                running.put(provider.getCode(), test);
             }
-            return providers;
-        } catch (Exception ignored) {
-            return List.of();
-        }
-    }
-
-    private String normalizeBaseUrl(String baseUrl) {
-        String normalizedUrl = baseUrl.trim();
-        if (!normalizedUrl.startsWith("http://") && !normalizedUrl.startsWith("https://")) {
-            normalizedUrl = "https://" + normalizedUrl;
+            test.thenAccept(result -> {
+                record(provider, result);
+                launchNext();
+            });
         }
-        while (normalizedUrl.endsWith("/")) {
-            normalizedUrl = normalizedUrl.substring(0, normalizedUrl.length() - 1);
-        }
-        return normalizedUrl;
-    }
 
-    private String buildMessagesTestUrl(String normalizedUrl) {
-        if (normalizedUrl.endsWith("/v1/messages") || normalizedUrl.endsWith("/messages")) {
-            return normalizedUrl;
-        }
-        if (normalizedUrl.endsWith("/v1")) {
-            return normalizedUrl + "/messages";
+        private synchronized void record(ModelProvider provider, ProviderDto.TestResult result) {
+            running.remove(provider.getCode());
+            if (done.isDone()) {
+                return;
+            }
+            ProviderDto.BulkTestResult item = ProviderDto.BulkTestResult.builder()
+                    .providerCode(provider.getCode())
+                    .providerName(provider.getName())
+                    .success(result.isSuccess())
+                    .message(result.getMessage())
+                    .modelName(provider.getModelName())
+                    .responseTimeMs(result.getResponseTimeMs())
+                    .build();
+            results.put(provider.getCode(), item);
+            if (result.isSuccess()) {
+                healthMonitor.recordSuccess(provider.getCode(), result.getResponseTimeMs());
+            } else if (result.isProviderFault()) {
+                healthMonitor.recordError(provider.getCode(), result.getMessage());
+            }
+            publish(item);
+            if (results.size() == targets.size()) {
+                done.complete(ranked());
+            }
         }
-        return normalizedUrl + "/v1/messages";
-    }
 
-    private String extractErrorMessage(String responseBody) {
-        if (responseBody == null || responseBody.isEmpty()) {
-            return "未知错误";
-        }
-        try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode root = mapper.readTree(responseBody);
-            if (root.has("error")) {
-                com.fasterxml.jackson.databind.JsonNode error = root.get("error");
-                if (error.has("message")) {
-                    return error.get("message").asText();
+        private synchronized void expire() {
+            if (done.isDone()) {
+                return;
+            }
+            for (BulkTestTarget target : targets) {
+                ModelProvider provider = target.provider();
+                if (!results.containsKey(provider.getCode())) {
+                    ProviderDto.BulkTestResult item = ProviderDto.BulkTestResult.builder()
+                            .providerCode(provider.getCode())
+                            .providerName(provider.getName())
+                            .success(false)
+                            .message("测试超时：超过总时限 " + deadlineMs / 1000 + " 秒")
+                            .modelName(provider.getModelName())
+                            .responseTimeMs(deadlineMs)
+                            .build();
+                    results.put(provider.getCode(), item);
+                    publish(item);
                 }
-                return error.asText();
             }
-        } catch (Exception ignored) {
+            done.complete(ranked());
+            running.values().forEach(test -> test.cancel(true));
+            running.clear();
         }
-        if (responseBody.length() > 100) {
-            return responseBody.substring(0, 100) + "...";
+
+        private void publish(ProviderDto.BulkTestResult item) {
+            try {
+                onResult.accept(item);
+            } catch (RuntimeException e) {
+                log.debug("Provider test listener failed: {}", e.getMessage());
+            }
         }
-        return responseBody;
-    }
 
-    private ProviderDto.ProviderInfo mapToProviderInfo(ModelProvider provider) {
-        return ProviderDto.ProviderInfo.builder()
-                .id(provider.getId())
-                .code(provider.getCode())
-                .name(provider.getName())
-                .description(provider.getDescription())
-                .baseUrl(provider.getBaseUrl())
-                .modelName(provider.getModelName())
-                .modelNameSmall(provider.getModelNameSmall())
-                .isBuiltin(provider.getIsBuiltin())
-                .isActive(provider.getIsActive())
-                .sortOrder(provider.getSortOrder())
-                .iconUrl(provider.getIconUrl())
-                .createdAt(provider.getCreatedAt())
-                .build();
+        private List<ProviderDto.BulkTestResult> ranked() {
+            return results.values().stream()
+                    .sorted(Comparator.comparing((ProviderDto.BulkTestResult item) -> !item.isSuccess())
+                            .thenComparing(ProviderDto.BulkTestResult::getResponseTimeMs,
+                                    Comparator.nullsLast(Comparator.naturalOrder())))
+                    .toList();
+        }
     }
 }
@@ -3,7 +3,6 @@ package com.paicoding.paiswitch.service;
 import com.paicoding.paiswitch.common.exception.BusinessException;
 import com.paicoding.paiswitch.common.response.ResponseCode;
 import com.paicoding.paiswitch.domain.dto.ConfigDto;
-import com.paicoding.paiswitch.domain.dto.ProviderDto;
 import com.paicoding.paiswitch.domain.dto.SwitchDto;
 import com.paicoding.paiswitch.domain.entity.ModelProvider;
 import com.paicoding.paiswitch.domain.entity.SwitchHistory;
@@ -21,6 +20,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -34,14 +34,25 @@ public class SwitchService {
     private final ConfigService configService;
     private final ApiKeyService apiKeyService;
     private final SettingsWriterService settingsWriterService;
+    private final ProviderRegistry providerRegistry;
 
     @Transactional
     public SwitchDto.SwitchResult switchToProvider(Long userId, String providerCode, SwitchType switchType,
                                                      String aiPrompt, String clientInfo) {
+        return switchToProvider(userId, providerCode, switchType, aiPrompt, clientInfo, null);
+    }
+
+    /**
+     * @param triggerMetrics stored with the history entry; what caused an automatic switch
+     */
+    @Transactional
+    public SwitchDto.SwitchResult switchToProvider(Long userId, String providerCode, SwitchType switchType,
+                                                     String aiPrompt, String clientInfo,
+                                                     Map<String, Object> triggerMetrics) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new BusinessException(ResponseCode.USER_NOT_FOUND));
 
-        ModelProvider targetProvider = providerRepository.findByCode(providerCode)
+        ModelProvider targetProvider = providerRegistry.findByCode(providerCode)
                 .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
 
         if (!targetProvider.getIsActive()) {
@@ -57,7 +68,7 @@ public class SwitchService {
             return SwitchDto.SwitchResult.builder()
                     .success(true)
                     .message("Already using " + targetProvider.getName())
-                    .currentProvider(mapToProviderInfo(targetProvider))
+                    .currentProvider(providerRegistry.info(targetProvider))
                     .switchedAt(LocalDateTime.now())
                     .build();
         }
@@ -68,14 +79,15 @@ public class SwitchService {
         SwitchHistory history = SwitchHistory.builder()
                 .user(user)
                 .fromProvider(fromProvider)
-                .toProvider(targetProvider)
+                .toProvider(providerRepository.getReferenceById(targetProvider.getId()))
                 .switchType(switchType)
                 .aiPrompt(aiPrompt)
                 .clientInfo(clientInfo)
+                .triggerMetrics(triggerMetrics)
                 .build();
 
         try {
-            config.setCurrentProvider(targetProvider);
+            config.setCurrentProvider(providerRepository.getReferenceById(targetProvider.getId()));
             configRepository.save(config);
 
             apiKeyService.updateLastUsedAt(userId, providerCode);
@@ -91,8 +103,8 @@ public class SwitchService {
             return SwitchDto.SwitchResult.builder()
                     .success(true)
                     .message("Successfully switched to " + targetProvider.getName())
-                    .previousProvider(mapToProviderInfo(fromProvider))
-                    .currentProvider(mapToProviderInfo(targetProvider))
+                    .previousProvider(providerRegistry.info(fromProvider))
+                    .currentProvider(providerRegistry.info(targetProvider))
                     .switchedAt(LocalDateTime.now())
                     .build();
         } catch (Exception e) {
@@ -105,7 +117,7 @@ public class SwitchService {
             return SwitchDto.SwitchResult.builder()
                     .success(false)
                     .message("Failed to switch: " + e.getMessage())
-                    .currentProvider(mapToProviderInfo(fromProvider))
+                    .currentProvider(providerRegistry.info(fromProvider))
                     .switchedAt(LocalDateTime.now())
                     .build();
         }
@@ -115,21 +127,4 @@ public class SwitchService {
     public SwitchDto.SwitchResult switchToProvider(Long userId, SwitchDto.SwitchRequest request) {
         return switchToProvider(userId, request.getProviderCode(), SwitchType.MANUAL, null, request.getClientInfo());
     }
-
-    private ProviderDto.ProviderInfo mapToProviderInfo(ModelProvider provider) {
-        return ProviderDto.ProviderInfo.builder()
-                .id(provider.getId())
-                .code(provider.getCode())
-                .name(provider.getName())
-                .description(provider.getDescription())
-                .baseUrl(provider.getBaseUrl())
-                .modelName(provider.getModelName())
-                .modelNameSmall(provider.getModelNameSmall())
-                .isBuiltin(provider.getIsBuiltin())
-                .isActive(provider.getIsActive())
-                .sortOrder(provider.getSortOrder())
-                .iconUrl(provider.getIconUrl())
-                .createdAt(provider.getCreatedAt())
-                .build();
-    }
 }
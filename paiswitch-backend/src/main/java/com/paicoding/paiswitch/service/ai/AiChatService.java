@@ -1,59 +1,68 @@
 package com.paicoding.paiswitch.service.ai;
 
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paicoding.paiswitch.common.config.AiChatProperties;
 import com.paicoding.paiswitch.common.exception.BusinessException;
 import com.paicoding.paiswitch.common.response.ResponseCode;
 import com.paicoding.paiswitch.domain.dto.SwitchDto;
-import com.paicoding.paiswitch.domain.entity.AiConversation;
 import com.paicoding.paiswitch.domain.entity.ModelProvider;
-import com.paicoding.paiswitch.domain.entity.UserConfig;
 import com.paicoding.paiswitch.domain.enums.SwitchType;
-import com.paicoding.paiswitch.repository.AiConversationRepository;
-import com.paicoding.paiswitch.repository.UserConfigRepository;
-import com.paicoding.paiswitch.service.ApiKeyService;
 import com.paicoding.paiswitch.service.SwitchService;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import com.paicoding.paiswitch.service.wire.WireChatRequest;
+import com.paicoding.paiswitch.service.wire.WireDialect;
+import com.paicoding.paiswitch.service.wire.WireEndpoint;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.anthropic.AnthropicChatModel;
 import org.springframework.ai.anthropic.AnthropicChatOptions;
 import org.springframework.ai.anthropic.api.AnthropicApi;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.function.FunctionCallbackContext;
+import org.springframework.ai.retry.RetryUtils;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+import java.io.IOException;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Locale;
-import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AiChatService {
 
-    private final UserConfigRepository configRepository;
-    private final AiConversationRepository conversationRepository;
-    private final ApiKeyService apiKeyService;
+    private final AiConversationService conversationService;
     private final SwitchService switchService;
+    private final ProviderAliasIndex providerAliasIndex;
+    private final ChatModelCache chatModelCache;
+    private final TokenUsageService tokenUsageService;
+    private final AnthropicApiFactory anthropicApiFactory;
+    private final ProviderWireClient providerWireClient;
+    private final ConversationContextBuilder contextBuilder;
+    private final FunctionCallbackContext functionCallbackContext;
+    private final AiChatProperties properties;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
 
     private static final String SYSTEM_PROMPT = """
             你是 PaiSwitch 的 AI 助手，帮助用户管理和切换 AI 模型。
@@ -74,232 +83,255 @@ public class AiChatService {
             请用中文与用户交流，保持友好和专业的态度。
             """;
 
-    private final Map<String, AnthropicChatModel> chatModelCache = new ConcurrentHashMap<>();
-    private static final Pattern FUNCTION_CALL_BLOCK_PATTERN = Pattern.compile("<FunctionCall>(.*?)</FunctionCall>", Pattern.DOTALL);
-    private static final Pattern TOOL_CALL_BLOCK_PATTERN = Pattern.compile("\\[TOOL_CALL\\](.*?)\\[/TOOL_CALL\\]", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-    private static final Pattern TOOL_NAME_PATTERN = Pattern.compile("tool_name:\\s*([\\w-]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern TOOL_NAME_ALT_PATTERN = Pattern.compile("tool\\s*=>\\s*\"?([\\w-]+)\"?", Pattern.CASE_INSENSITIVE);
-    private static final Pattern TOOL_ARGS_PATTERN = Pattern.compile("tool_args:\\s*(\\{.*\\})", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern TOOL_ARGS_ALT_PATTERN = Pattern.compile("args\\s*=>\\s*(\\{.*\\})", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern MODEL_FLAG_PATTERN = Pattern.compile("--(?:model|provider|providerCode)\\s+\"([^\"]+)\"", Pattern.CASE_INSENSITIVE);
-    private static final Pattern PROVIDER_KEY_VALUE_PATTERN = Pattern.compile("(?:providerCode|provider|model|code|name)\\s*[:=>]\\s*\"([^\"]+)\"", Pattern.CASE_INSENSITIVE);
-
-    @Transactional
+    private static final String SUMMARY_PROMPT = """
+            你负责压缩对话记录。请把已有摘要和新的对话合并成一段简洁的中文摘要，
+            保留用户的目标、偏好、已做出的决定（包括模型切换）和尚未解决的问题。
+            只输出摘要本身，不要添加任何说明。
+            """;
+
+    private static final SerializedString SUMMARY_PROMPT_JSON = new SerializedString(SUMMARY_PROMPT);
+
+    private static final long STREAM_TIMEOUT_MS = Duration.ofMinutes(2).toMillis();
+
+    private static final SystemMessage SYSTEM_MESSAGE = new SystemMessage(SYSTEM_PROMPT);
+
+    /**
+     * The system prompt is identical on every OpenRouter request, so it is escaped and encoded
+     * once.
+     */
+    private static final SerializedString SYSTEM_PROMPT_JSON = new SerializedString(SYSTEM_PROMPT);
+
+    /**
+     * Tool definition sent to OpenRouter; mirrors the schema Spring AI derives from the
+     * {@code switchModel} bean for Anthropic.
+     */
+    private static final WireDialect.Tool SWITCH_MODEL_TOOL = new WireDialect.Tool(
+            SpringAiConfig.SWITCH_MODEL_FUNCTION,
+            SpringAiConfig.SWITCH_MODEL_DESCRIPTION,
+            switchModelParameters());
+
+    /** Estimated tokens of the tool definition and system prompt, which start every prompt. */
+    private static final int STATIC_PREFIX_TOKENS = ConversationContextBuilder.estimateTokens(SYSTEM_PROMPT)
+            + ConversationContextBuilder.estimateTokens(SWITCH_MODEL_TOOL.description())
+            + ConversationContextBuilder.estimateTokens(SWITCH_MODEL_TOOL.parameters().toString());
+
+    /**
+     * Runs one chat turn in three phases: persist the user message, call the model with no
+     * transaction open, then apply the switch and persist the reply.
+     */
     public SwitchDto.NaturalLanguageResponse processNaturalLanguage(Long userId, SwitchDto.NaturalLanguageRequest request) {
         String sessionId = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
 
-        saveConversation(userId, sessionId, "user", request.getPrompt());
+        conversationService.saveMessage(userId, sessionId, "user", request.getPrompt());
 
         ParsedSwitchCommand quickSwitchCommand = parseSwitchCommandFromUserPrompt(request.getPrompt());
         if (quickSwitchCommand != null) {
-            SwitchDto.SwitchResult switchResult = switchService.switchToProvider(
-                    userId,
-                    quickSwitchCommand.providerCode(),
-                    SwitchType.AI_NATURAL_LANGUAGE,
-                    request.getPrompt(),
-                    request.getClientInfo()
-            );
-            String quickResponse = "已收到你的切换请求。\n\n切换结果：" + switchResult.getMessage();
-            saveConversation(userId, sessionId, "assistant", quickResponse);
-            return SwitchDto.NaturalLanguageResponse.builder()
-                    .aiResponse(quickResponse)
-                    .switchTriggered(true)
-                    .switchResult(switchResult)
-                    .sessionId(sessionId)
-                    .build();
+            return conversationService.completeTurn(userId, sessionId, request,
+                    quickSwitchCommand.providerCode(), "已收到你的切换请求。", null, null);
         }
 
-        UserConfig config = configRepository.findByUserId(userId)
-                .orElseThrow(() -> new BusinessException(ResponseCode.CONFIG_NOT_FOUND));
-
-        ModelProvider provider = config.getCurrentProvider();
-        String apiKey = apiKeyService.getDecryptedApiKey(userId, provider.getCode());
+        AiConversationService.ChatTarget target = conversationService.resolveChatTarget(userId);
+        ModelProvider provider = target.provider();
 
         try {
-            String aiResponse;
+            ConversationContextBuilder.Context context = contextBuilder.build(userId, sessionId, request.getPrompt(),
+                    summarizer(userId, provider, target.apiKey()));
+            ModelReply reply;
             if (isOpenRouterProvider(provider)) {
-                aiResponse = callOpenRouterChat(provider, apiKey, request.getPrompt());
+                reply = callOpenRouterChat(provider, target.apiKey(), request.getPrompt(), context);
             } else {
-                AnthropicChatModel chatModel = getOrCreateChatModel(provider, apiKey);
-                List<org.springframework.ai.chat.messages.Message> messages = new ArrayList<>();
-                messages.add(new SystemMessage(SYSTEM_PROMPT));
-                messages.add(new UserMessage(request.getPrompt()));
-                Prompt prompt = new Prompt(messages);
-                ChatResponse response = chatModel.call(prompt);
-                aiResponse = response.getResult().getOutput().getContent();
+                AnthropicChatModel chatModel = getOrCreateChatModel(userId, provider, target.apiKey());
+                ChatResponse response = chatModel.call(buildPrompt(request.getPrompt(), context));
+                reply = new ModelReply(extractContent(response), extractSwitchProviderCode(response), extractUsage(response));
             }
+            tokenUsageService.record(userId, provider.getCode(), reply.usage());
 
-            SwitchExecutionResult switchExecution = executeSwitchFromAiResponse(userId, request, aiResponse);
-            String finalAiResponse = switchExecution.aiResponse();
-
-            saveConversation(userId, sessionId, "assistant", finalAiResponse);
-
-            return SwitchDto.NaturalLanguageResponse.builder()
-                    .aiResponse(finalAiResponse)
-                    .switchTriggered(switchExecution.switchTriggered())
-                    .switchResult(switchExecution.switchResult())
-                    .sessionId(sessionId)
-                    .build();
+            if (reply.text().isBlank() && reply.switchProviderCode() == null) {
+                throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: 返回为空");
+            }
+            return conversationService.completeTurn(userId, sessionId, request,
+                    reply.switchProviderCode(), reply.text().trim(), provider.getCode(), reply.usage());
         } catch (Exception e) {
             log.error("AI chat error: {}", e.getMessage(), e);
             throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: " + e.getMessage());
         }
     }
 
-    private SwitchExecutionResult executeSwitchFromAiResponse(
-            Long userId,
-            SwitchDto.NaturalLanguageRequest request,
-            String aiResponse
-    ) {
-        ParsedSwitchCommand command = parseSwitchCommand(aiResponse);
-        if (command == null) {
-            command = parseSwitchCommandFromUserPrompt(request.getPrompt());
-        }
-        String cleanedResponse = stripFunctionCallBlock(aiResponse).trim();
-
-        if (command == null) {
-            String safeResponse = cleanedResponse.isBlank() ? aiResponse : cleanedResponse;
-            return new SwitchExecutionResult(safeResponse, false, null);
-        }
-
-        SwitchDto.SwitchResult switchResult = switchService.switchToProvider(
-                userId,
-                command.providerCode(),
-                SwitchType.AI_NATURAL_LANGUAGE,
-                request.getPrompt(),
-                request.getClientInfo()
-        );
+    /**
+     * Streaming variant of {@link #processNaturalLanguage}. Emits Server-Sent Events:
+     * {@code session} (sessionId), {@code delta} (text chunk), {@code switch} (switch result,
+     * sent as soon as the switchModel tool call is complete), {@code done} (final response)
+     * and {@code error}.
+     */
+    public SseEmitter streamNaturalLanguage(Long userId, SwitchDto.NaturalLanguageRequest request) {
+        String sessionId = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
+        StreamingChatSession session = new StreamingChatSession(userId, sessionId, request, new SseEmitter(STREAM_TIMEOUT_MS));
 
-        String resultLine = "切换结果：" + switchResult.getMessage();
-        String finalResponse = cleanedResponse.isBlank()
-                ? resultLine
-                : cleanedResponse + "\n\n" + resultLine;
+        try {
+            conversationService.saveMessage(userId, sessionId, "user", request.getPrompt());
+            session.sendEvent("session", Map.of("sessionId", sessionId));
+
+            ParsedSwitchCommand quickSwitchCommand = parseSwitchCommandFromUserPrompt(request.getPrompt());
+            if (quickSwitchCommand != null) {
+                session.onText("已收到你的切换请求。");
+                session.applySwitch(quickSwitchCommand.providerCode());
+                session.finish();
+                return session.emitter();
+            }
 
-        return new SwitchExecutionResult(finalResponse, true, switchResult);
-    }
+            AiConversationService.ChatTarget target = conversationService.resolveChatTarget(userId);
+            ModelProvider provider = target.provider();
 
-    private ParsedSwitchCommand parseSwitchCommandFromUserPrompt(String prompt) {
-        if (prompt == null || prompt.isBlank()) {
-            return null;
-        }
-        if (!isSwitchIntent(prompt)) {
-            return null;
-        }
-        String providerCode = normalizeProviderCode(prompt);
-        if (providerCode == null || providerCode.isBlank()) {
-            return null;
+            session.servedBy(provider.getCode());
+            ConversationContextBuilder.Context context = contextBuilder.build(userId, sessionId, request.getPrompt(),
+                    summarizer(userId, provider, target.apiKey()));
+            if (isOpenRouterProvider(provider)) {
+                streamOpenRouterChat(provider, target.apiKey(), request.getPrompt(), context, session);
+            } else {
+                AnthropicChatModel chatModel = getOrCreateChatModel(userId, provider, target.apiKey());
+                Disposable subscription = chatModel.stream(buildPrompt(request.getPrompt(), context))
+                        .subscribe(
+                                response -> {
+                                    session.onText(extractContent(response));
+                                    session.onUsage(extractUsage(response));
+                                    String providerCode = extractSwitchProviderCode(response);
+                                    if (providerCode != null) {
+                                        session.applySwitch(providerCode);
+                                    }
+                                },
+                                session::fail,
+                                session::finish
+                        );
+                session.onCancel(subscription::dispose);
+            }
+        } catch (Exception e) {
+            session.fail(e);
         }
-        return new ParsedSwitchCommand(providerCode);
+        return session.emitter();
     }
 
-    private boolean isSwitchIntent(String prompt) {
-        String normalized = prompt.toLowerCase(Locale.ROOT);
-        return normalized.contains("切换")
-                || normalized.contains("换成")
-                || normalized.contains("改成")
-                || normalized.contains("切到")
-                || normalized.contains("switch to")
-                || normalized.startsWith("用");
+    /**
+     * System prompt, then the summary as a second system message (Spring AI joins them into
+     * one system string), then the recent messages and the new prompt.
+     */
+    private Prompt buildPrompt(String userPrompt, ConversationContextBuilder.Context context) {
+        List<org.springframework.ai.chat.messages.Message> messages = new ArrayList<>();
+        messages.add(SYSTEM_MESSAGE);
+        if (context.summary() != null) {
+            messages.add(new SystemMessage(context.summarySection()));
+        }
+        for (WireDialect.Message message : context.history()) {
+            messages.add("assistant".equals(message.role())
+                    ? new AssistantMessage(message.content())
+                    : new UserMessage(message.content()));
+        }
+        messages.add(new UserMessage(userPrompt));
+        return new Prompt(messages);
     }
 
-    private ParsedSwitchCommand parseSwitchCommand(String aiResponse) {
-        if (aiResponse == null || aiResponse.isBlank()) {
-            return null;
-        }
-
-        ParsedSwitchCommand fromFunctionCall = parseSwitchCommandFromFunctionCall(aiResponse);
-        if (fromFunctionCall != null) {
-            return fromFunctionCall;
-        }
-        return parseSwitchCommandFromToolCall(aiResponse);
+    /**
+     * Folds older messages into the session summary with the session's current model, over
+     * the wire client and without tools so the summary call can never trigger a switch.
+     */
+    private ConversationContextBuilder.Summarizer summarizer(Long userId, ModelProvider provider, String apiKey) {
+        return (transcript, maxTokens) -> {
+            WireEndpoint endpoint = providerWireClient.endpoint(provider.getCode(), provider.getBaseUrl(), apiKey);
+            WireChatRequest request = WireChatRequest.builder()
+                    .model(provider.getModelName())
+                    .system(SUMMARY_PROMPT_JSON)
+                    .userPrompt(transcript)
+                    .maxTokens(maxTokens)
+                    .temperature(0.2)
+                    .includeUsage(true)
+                    .build();
+            HttpResponse<String> response = providerWireClient.send(endpoint, request).join();
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new BusinessException(ResponseCode.AI_SERVICE_ERROR,
+                        "AI service error: " + providerWireClient.extractErrorMessage(response.body()));
+            }
+            WireDialect.Reply reply = endpoint.dialect().decodeReply(response.body());
+            tokenUsageService.record(userId, provider.getCode(), reply.usage());
+            return reply.text();
+        };
     }
 
-    private String stripFunctionCallBlock(String text) {
-        if (text == null) {
+    /**
+     * Text of all generations. With tool calls Spring AI returns the text blocks and the
+     * tool_use blocks as separate generations, so {@code getResult()} alone is not enough.
+     */
+    private String extractContent(ChatResponse response) {
+        if (response == null || response.getResults() == null) {
             return "";
         }
-        String withoutFunctionCall = FUNCTION_CALL_BLOCK_PATTERN.matcher(text).replaceAll("");
-        return TOOL_CALL_BLOCK_PATTERN.matcher(withoutFunctionCall).replaceAll("").trim();
+        StringBuilder content = new StringBuilder();
+        for (Generation generation : response.getResults()) {
+            AssistantMessage output = generation.getOutput();
+            if (output != null && output.getContent() != null) {
+                content.append(output.getContent());
+            }
+        }
+        return content.toString();
     }
 
-    private ParsedSwitchCommand parseSwitchCommandFromFunctionCall(String aiResponse) {
-        Matcher blockMatcher = FUNCTION_CALL_BLOCK_PATTERN.matcher(aiResponse);
-        if (!blockMatcher.find()) {
-            return null;
-        }
-        String functionCallBlock = blockMatcher.group(1);
-        Matcher toolNameMatcher = TOOL_NAME_PATTERN.matcher(functionCallBlock);
-        if (!toolNameMatcher.find()) {
-            return null;
-        }
-        if (!"switchModel".equalsIgnoreCase(toolNameMatcher.group(1))) {
+    /**
+     * Provider code from a structured switchModel tool call. Tool calls are proxied back to
+     * us instead of being executed by Spring AI, so the switch runs in our own transaction
+     * and the turn needs no second model round trip.
+     */
+    private String extractSwitchProviderCode(ChatResponse response) {
+        if (response == null || response.getResults() == null) {
             return null;
         }
-
-        Matcher argsMatcher = TOOL_ARGS_PATTERN.matcher(functionCallBlock);
-        if (!argsMatcher.find()) {
-            return null;
+        for (Generation generation : response.getResults()) {
+            AssistantMessage output = generation.getOutput();
+            if (output == null || !output.hasToolCalls()) {
+                continue;
+            }
+            for (AssistantMessage.ToolCall toolCall : output.getToolCalls()) {
+                String providerCode = parseSwitchToolCall(toolCall.name(), toolCall.arguments());
+                if (providerCode != null) {
+                    return providerCode;
+                }
+            }
         }
-        String providerCode = parseProviderFromArgs(argsMatcher.group(1));
-        return providerCode == null ? null : new ParsedSwitchCommand(providerCode);
+        return null;
     }
 
-    private ParsedSwitchCommand parseSwitchCommandFromToolCall(String aiResponse) {
-        Matcher blockMatcher = TOOL_CALL_BLOCK_PATTERN.matcher(aiResponse);
-        if (!blockMatcher.find()) {
+    /**
+     * Usage from the response metadata. Streamed responses carry partial counts per chunk,
+     * which {@link TokenUsage#merge} combines.
+     */
+    private TokenUsage extractUsage(ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
             return null;
         }
-        String toolCallBlock = blockMatcher.group(1);
-
-        Matcher toolNameMatcher = TOOL_NAME_ALT_PATTERN.matcher(toolCallBlock);
-        if (!toolNameMatcher.find()) {
-            return null;
-        }
-        if (!"switchModel".equalsIgnoreCase(toolNameMatcher.group(1))) {
+        Usage usage = response.getMetadata().getUsage();
+        long promptTokens = usage.getPromptTokens() == null ? 0L : usage.getPromptTokens();
+        long completionTokens = usage.getGenerationTokens() == null ? 0L : usage.getGenerationTokens();
+        String model = response.getMetadata().getModel();
+        if (promptTokens == 0 && completionTokens == 0 && (model == null || model.isBlank())) {
             return null;
         }
-
-        Matcher modelFlagMatcher = MODEL_FLAG_PATTERN.matcher(toolCallBlock);
-        if (modelFlagMatcher.find()) {
-            String providerCode = normalizeProviderCode(modelFlagMatcher.group(1));
-            return providerCode == null ? null : new ParsedSwitchCommand(providerCode);
-        }
-
-        Matcher argsMatcher = TOOL_ARGS_ALT_PATTERN.matcher(toolCallBlock);
-        if (!argsMatcher.find()) {
-            return null;
-        }
-        String providerCode = parseProviderFromArgs(argsMatcher.group(1));
-        return providerCode == null ? null : new ParsedSwitchCommand(providerCode);
+        return new TokenUsage(promptTokens, completionTokens, model == null || model.isBlank() ? null : model);
     }
 
-    private String parseProviderFromArgs(String argsText) {
-        if (argsText == null || argsText.isBlank()) {
+    private String parseSwitchToolCall(String toolName, String arguments) {
+        if (!SpringAiConfig.SWITCH_MODEL_FUNCTION.equals(toolName) || arguments == null || arguments.isBlank()) {
             return null;
         }
         try {
-            JsonNode argsNode = objectMapper.readTree(argsText);
-            String rawProvider = firstNonBlank(
-                    textValue(argsNode, "providerCode"),
-                    textValue(argsNode, "provider"),
-                    textValue(argsNode, "model"),
-                    textValue(argsNode, "code"),
-                    textValue(argsNode, "name")
-            );
-            return normalizeProviderCode(rawProvider);
-        } catch (Exception ignored) {
-            Matcher modelFlagMatcher = MODEL_FLAG_PATTERN.matcher(argsText);
-            if (modelFlagMatcher.find()) {
-                return normalizeProviderCode(modelFlagMatcher.group(1));
-            }
-            Matcher keyValueMatcher = PROVIDER_KEY_VALUE_PATTERN.matcher(argsText);
-            if (keyValueMatcher.find()) {
-                return normalizeProviderCode(keyValueMatcher.group(1));
-            }
+            return providerAliasIndex.resolveProviderCode(textValue(objectMapper.readTree(arguments), "providerCode"));
+        } catch (Exception e) {
+            log.warn("Ignore malformed {} arguments: {}", toolName, truncate(arguments, 200));
             return null;
         }
     }
 
+    private ParsedSwitchCommand parseSwitchCommandFromUserPrompt(String prompt) {
+        String providerCode = providerAliasIndex.matchSwitchCommand(prompt);
+        return providerCode == null ? null : new ParsedSwitchCommand(providerCode);
+    }
+
     private String textValue(JsonNode node, String field) {
         if (node == null || field == null) {
             return null;
@@ -312,296 +344,159 @@ public class AiChatService {
         return text == null || text.isBlank() ? null : text.trim();
     }
 
-    private String firstNonBlank(String... values) {
-        if (values == null) {
-            return null;
-        }
-        for (String value : values) {
-            if (value != null && !value.isBlank()) {
-                return value;
-            }
-        }
-        return null;
-    }
-
-    private String normalizeProviderCode(String rawProvider) {
-        if (rawProvider == null || rawProvider.isBlank()) {
-            return null;
-        }
-        String normalized = rawProvider.trim().toLowerCase(Locale.ROOT);
-        if (normalized.contains("deepseek")) return "deepseek";
-        if (normalized.contains("openrouter")) return "openrouter";
-        if (normalized.contains("zhipu") || normalized.contains("智谱") || normalized.contains("glm")) return "zhipu";
-        if (normalized.contains("claude") || normalized.contains("anthropic")) return "claude";
-        return normalized;
+    public SwitchDto.ConversationHistoryResponse getLatestConversation(Long userId) {
+        return conversationService.getLatestConversation(userId);
     }
 
-    @Transactional(readOnly = true)
-    public SwitchDto.ConversationHistoryResponse getLatestConversation(Long userId) {
-        Optional<AiConversation> latest = conversationRepository.findFirstByUserIdOrderByCreatedAtDesc(userId);
-        if (latest.isEmpty()) {
-            return SwitchDto.ConversationHistoryResponse.builder()
-                    .sessionId(null)
-                    .messages(List.of())
-                    .build();
-        }
-        String latestSessionId = latest.get().getSessionId();
-        return getConversationHistory(userId, latestSessionId);
+    public List<SwitchDto.SessionSummary> listSessions(Long userId, Integer limit) {
+        return conversationService.listSessions(userId, limit);
     }
 
-    @Transactional(readOnly = true)
-    public SwitchDto.ConversationHistoryResponse getConversationHistory(Long userId, String sessionId) {
-        List<AiConversation> conversations = conversationRepository.findByUserIdAndSessionIdOrderByCreatedAtAsc(userId, sessionId);
-        return SwitchDto.ConversationHistoryResponse.builder()
-                .sessionId(sessionId)
-                .messages(conversations.stream()
-                        .map(conversation -> SwitchDto.ConversationMessage.builder()
-                                .role(conversation.getRole())
-                                .content(conversation.getContent())
-                                .createdAt(conversation.getCreatedAt())
-                                .build())
-                        .collect(Collectors.toList()))
-                .build();
+    public SwitchDto.ConversationHistoryResponse getConversationHistory(Long userId, String sessionId,
+                                                                        String before, Integer limit) {
+        return conversationService.getConversationHistory(userId, sessionId, before, limit);
     }
 
     private boolean isOpenRouterProvider(ModelProvider provider) {
-        if (provider == null) {
-            return false;
-        }
-        if ("openrouter".equalsIgnoreCase(provider.getCode())) {
-            return true;
-        }
-        return provider.getBaseUrl() != null && provider.getBaseUrl().toLowerCase().contains("openrouter.ai");
+        return provider != null && ProviderWireClient.isOpenRouter(provider.getCode(), provider.getBaseUrl());
     }
 
-    private String callOpenRouterChat(ModelProvider provider, String apiKey, String userPrompt) {
-        String requestUrl = buildOpenRouterChatCompletionsUrl(normalizeBaseUrl(provider.getBaseUrl()));
-        String normalizedApiKey = normalizeApiKey(apiKey);
-        String requestBody = buildOpenRouterChatRequestBody(provider.getModelName(), userPrompt, buildProviderOrderFromModel(provider.getModelName()));
-
+    private ModelReply callOpenRouterChat(ModelProvider provider, String apiKey, String userPrompt,
+                                          ConversationContextBuilder.Context context) {
+        WireEndpoint endpoint = providerWireClient.endpoint(provider.getCode(), provider.getBaseUrl(), apiKey);
+        HttpResponse<String> response;
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(requestUrl))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + normalizedApiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(45))
-                    .build();
-
-            log.info("AI OpenRouter request -> url={}, model={}, body={}",
-                    requestUrl,
-                    provider.getModelName(),
-                    singleLine(requestBody));
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            log.info("AI OpenRouter response <- status={}, body={}", response.statusCode(), truncate(response.body(), 4000));
-
-            if (shouldRetryWithAvailableProviders(response)) {
-                List<String> availableProviders = extractAvailableProviders(response.body());
-                if (!availableProviders.isEmpty()) {
-                    String retryBody = buildOpenRouterChatRequestBody(provider.getModelName(), userPrompt, availableProviders);
-                    HttpRequest retryRequest = HttpRequest.newBuilder()
-                            .uri(URI.create(requestUrl))
-                            .header("Content-Type", "application/json")
-                            .header("Authorization", "Bearer " + normalizedApiKey)
-                            .POST(HttpRequest.BodyPublishers.ofString(retryBody))
-                            .timeout(Duration.ofSeconds(45))
-                            .build();
-                    log.info("AI OpenRouter retry -> url={}, order={}, body={}", requestUrl, availableProviders, singleLine(retryBody));
-                    response = httpClient.send(retryRequest, HttpResponse.BodyHandlers.ofString());
-                    log.info("AI OpenRouter retry response <- status={}, body={}", response.statusCode(), truncate(response.body(), 4000));
-                }
-            }
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                String content = extractOpenRouterAssistantContent(response.body());
-                if (content != null && !content.isBlank()) {
-                    return content;
-                }
-                throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: OpenRouter 返回为空");
-            }
-
-            String errorMsg = extractErrorMessage(response.body());
-            throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: " + errorMsg);
-        } catch (BusinessException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: " + e.getMessage());
+            response = providerWireClient.send(endpoint, buildOpenRouterChatRequest(provider.getModelName(), userPrompt, context, false)).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: " + cause.getMessage());
         }
-    }
 
-    private String buildOpenRouterChatRequestBody(String modelName, String prompt, List<String> providerOrder) {
-        String escapedPrompt = escapeJson(prompt);
-        String escapedSystem = escapeJson(SYSTEM_PROMPT);
-        String escapedModel = escapeJson(modelName);
-        if (providerOrder == null || providerOrder.isEmpty()) {
-            return """
-                {
-                  "model": "%s",
-                  "max_tokens": 1024,
-                  "temperature": 0.7,
-                  "messages": [
-                    {"role": "system", "content": "%s"},
-                    {"role": "user", "content": "%s"}
-                  ]
-                }
-                """.formatted(escapedModel, escapedSystem, escapedPrompt);
-        }
-
-        String providerOrderJson = providerOrder.stream()
-                .map(provider -> "\"" + escapeJson(provider) + "\"")
-                .reduce((a, b) -> a + ", " + b)
-                .orElse("");
-
-        return """
-            {
-              "model": "%s",
-              "max_tokens": 1024,
-              "temperature": 0.7,
-              "messages": [
-                {"role": "system", "content": "%s"},
-                {"role": "user", "content": "%s"}
-              ],
-              "provider": {
-                "order": [%s],
-                "allow_fallbacks": true
-              }
+        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            ModelReply reply = toModelReply(endpoint.dialect().decodeReply(response.body()));
+            if (!reply.text().isBlank() || reply.switchProviderCode() != null) {
+                return reply;
             }
-            """.formatted(escapedModel, escapedSystem, escapedPrompt, providerOrderJson);
-    }
-
-    private List<String> buildProviderOrderFromModel(String modelName) {
-        if (modelName == null || modelName.isBlank()) {
-            return List.of();
+            throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: OpenRouter 返回为空");
         }
-        int slashIndex = modelName.indexOf('/');
-        if (slashIndex <= 0) {
-            return List.of();
-        }
-        String provider = modelName.substring(0, slashIndex).trim().toLowerCase();
-        return provider.isEmpty() ? List.of() : List.of(provider);
+        throw new BusinessException(ResponseCode.AI_SERVICE_ERROR,
+                "AI service error: " + providerWireClient.extractErrorMessage(response.body()));
     }
 
-    private boolean shouldRetryWithAvailableProviders(HttpResponse<String> response) {
-        if (response == null || response.statusCode() != 404 || response.body() == null) {
-            return false;
-        }
-        return response.body().contains("No allowed providers are available")
-                && response.body().contains("available_providers");
+    private void streamOpenRouterChat(ModelProvider provider, String apiKey, String userPrompt,
+                                      ConversationContextBuilder.Context context, StreamingChatSession session) {
+        WireEndpoint endpoint = providerWireClient.endpoint(provider.getCode(), provider.getBaseUrl(), apiKey);
+        CompletableFuture<HttpResponse<Stream<String>>> response = providerWireClient
+                .stream(endpoint, buildOpenRouterChatRequest(provider.getModelName(), userPrompt, context, true));
+        response.thenAccept(result -> consumeOpenRouterStream(endpoint, result, session))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        session.fail(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                });
+        // Closing the body wakes a reader blocked on a stalled upstream; a response that is
+        // still on its way is closed as soon as it arrives.
+        session.onCancel(() -> response.thenAccept(result -> result.body().close()));
     }
 
-    private List<String> extractAvailableProviders(String body) {
-        try {
-            JsonNode providersNode = objectMapper.readTree(body)
-                    .path("error")
-                    .path("metadata")
-                    .path("available_providers");
-            if (!providersNode.isArray()) {
-                return List.of();
-            }
-            List<String> providers = new ArrayList<>();
-            for (JsonNode node : providersNode) {
-                String value = node.asText();
-                if (value != null && !value.isBlank()) {
-                    providers.add(value.trim().toLowerCase());
-                }
-            }
-            return providers;
-        } catch (Exception ignored) {
-            return List.of();
+    private void consumeOpenRouterStream(WireEndpoint endpoint, HttpResponse<Stream<String>> response, StreamingChatSession session) {
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            String body = providerWireClient.collectBody(response);
+            throw new BusinessException(ResponseCode.AI_SERVICE_ERROR,
+                    "AI service error: " + providerWireClient.extractErrorMessage(body));
         }
-    }
-
-    private String extractOpenRouterAssistantContent(String body) {
-        try {
-            JsonNode root = objectMapper.readTree(body);
-            JsonNode contentNode = root.path("choices").path(0).path("message").path("content");
-            if (contentNode.isTextual()) {
-                return contentNode.asText();
-            }
-            if (contentNode.isArray()) {
-                StringBuilder sb = new StringBuilder();
-                for (JsonNode item : contentNode) {
-                    String text = item.path("text").asText("");
-                    if (!text.isBlank()) {
-                        if (!sb.isEmpty()) {
-                            sb.append('\n');
-                        }
-                        sb.append(text);
-                    }
-                }
-                return sb.toString();
+        try (Stream<String> lines = response.body()) {
+            if (session.isClosed()) {
+                return;
             }
-            return null;
-        } catch (Exception e) {
-            return null;
+            lines.takeWhile(line -> !session.isClosed())
+                    .forEach(line -> handleStreamChunk(endpoint.dialect().decodeStreamLine(line), session));
         }
+        session.finish();
     }
 
-    private String extractErrorMessage(String body) {
-        if (body == null || body.isBlank()) {
-            return "Unknown error";
+    /**
+     * Tool call arguments arrive as fragments keyed by index and are complete once the next
+     * index starts or the upstream reports a stop reason.
+     */
+    private void handleStreamChunk(WireDialect.StreamChunk chunk, StreamingChatSession session) {
+        if (chunk == null) {
+            return;
         }
-        try {
-            JsonNode root = objectMapper.readTree(body);
-            JsonNode msg = root.path("error").path("message");
-            if (!msg.isMissingNode() && !msg.isNull()) {
-                return msg.asText();
-            }
-        } catch (Exception ignored) {
+        if (chunk.error() != null) {
+            throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: " + chunk.error());
         }
-        return body.length() > 300 ? body.substring(0, 300) + "...(truncated)" : body;
-    }
-
-    private String buildOpenRouterChatCompletionsUrl(String baseUrl) {
-        if (baseUrl.endsWith("/v1/chat/completions") || baseUrl.endsWith("/chat/completions")) {
-            return baseUrl;
+        session.onText(chunk.text());
+        for (WireDialect.ToolCall toolCall : chunk.toolCalls()) {
+            session.onToolCallDelta(toolCall.index(), toolCall.name(), toolCall.arguments());
         }
-        if (baseUrl.endsWith("/v1")) {
-            return baseUrl + "/chat/completions";
+        if (chunk.finished()) {
+            session.completeToolCall();
         }
-        return baseUrl + "/v1/chat/completions";
+        session.onUsage(chunk.usage());
     }
 
-    private String normalizeBaseUrl(String baseUrl) {
-        String normalized = baseUrl == null ? "" : baseUrl.trim();
-        if (!normalized.startsWith("http://") && !normalized.startsWith("https://")) {
-            normalized = "https://" + normalized;
-        }
-        while (normalized.endsWith("/")) {
-            normalized = normalized.substring(0, normalized.length() - 1);
-        }
-        return normalized;
+    private WireChatRequest buildOpenRouterChatRequest(String modelName, String prompt,
+                                                       ConversationContextBuilder.Context context, boolean stream) {
+        return WireChatRequest.builder()
+                .model(modelName)
+                .system(SYSTEM_PROMPT_JSON)
+                .cacheHistory(supportsCacheControl(modelName) && isCacheablePrefix(context))
+                .context(context.summarySection())
+                .history(context.history())
+                .userPrompt(prompt)
+                .maxTokens(1024)
+                .temperature(0.7)
+                .stream(stream)
+                .tools(List.of(SWITCH_MODEL_TOOL))
+                .includeUsage(true)
+                .build();
     }
 
-    private String normalizeApiKey(String apiKey) {
-        if (apiKey == null) {
-            return "";
+    /**
+     * Anthropic and Gemini models only cache behind explicit cache_control breakpoints, and
+     * only prefixes of at least ~1024 tokens; the static prompt alone is far shorter. The
+     * breakpoint therefore goes on the last history message, once the history has grown
+     * the prefix past the configured minimum. Other upstreams cache prefixes automatically.
+     */
+    private boolean isCacheablePrefix(ConversationContextBuilder.Context context) {
+        if (!properties.getPromptCache().isEnabled() || context.history().isEmpty()) {
+            return false;
         }
-        String normalized = apiKey.trim();
-        if (normalized.regionMatches(true, 0, "Bearer ", 0, 7)) {
-            return normalized.substring(7).trim();
+        int tokens = STATIC_PREFIX_TOKENS + ConversationContextBuilder.estimateTokens(context.summarySection());
+        for (WireDialect.Message message : context.history()) {
+            tokens += ConversationContextBuilder.estimateTokens(message.content());
         }
-        return normalized;
+        return tokens >= properties.getPromptCache().getMinPrefixTokens();
     }
 
-    private String escapeJson(String value) {
-        if (value == null) {
-            return "";
+    private boolean supportsCacheControl(String modelName) {
+        if (modelName == null) {
+            return false;
         }
-        return value
-                .replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        String normalized = modelName.toLowerCase();
+        return normalized.startsWith("anthropic/") || normalized.startsWith("google/gemini");
     }
 
-    private String singleLine(String value) {
-        if (value == null) {
-            return "";
+    private ModelReply toModelReply(WireDialect.Reply reply) {
+        String switchProviderCode = null;
+        for (WireDialect.ToolCall toolCall : reply.toolCalls()) {
+            switchProviderCode = parseSwitchToolCall(toolCall.name(), toolCall.arguments());
+            if (switchProviderCode != null) {
+                break;
+            }
         }
-        return value.replaceAll("\\s+", " ").trim();
+        return new ModelReply(reply.text() == null ? "" : reply.text(), switchProviderCode, reply.usage());
+    }
+
+    private static ObjectNode switchModelParameters() {
+        ObjectNode parameters = JsonNodeFactory.instance.objectNode().put("type", "object");
+        parameters.putObject("properties")
+                .putObject("providerCode")
+                .put("type", "string")
+                .put("description", SpringAiConfig.PROVIDER_CODE_DESCRIPTION);
+        parameters.putArray("required").add("providerCode");
+        return parameters;
     }
 
     private String truncate(String value, int maxLength) {
@@ -614,43 +509,226 @@ public class AiChatService {
         return value.substring(0, maxLength) + "...(truncated)";
     }
 
-    private AnthropicChatModel getOrCreateChatModel(ModelProvider provider, String apiKey) {
-        String cacheKey = provider.getCode() + "_" + apiKey.hashCode();
-
-        return chatModelCache.computeIfAbsent(cacheKey, k -> {
-            AnthropicApi anthropicApi = new AnthropicApi(provider.getBaseUrl(), apiKey);
+    private AnthropicChatModel getOrCreateChatModel(Long userId, ModelProvider provider, String apiKey) {
+        return chatModelCache.getOrCreate(userId, provider, apiKey, () -> {
+            AnthropicApi anthropicApi = anthropicApiFactory.create(provider, apiKey);
 
             AnthropicChatOptions options = AnthropicChatOptions.builder()
                     .withModel(provider.getModelName())
                     .withMaxTokens(1024)
                     .withTemperature(0.7)
+                    .withFunction(SpringAiConfig.SWITCH_MODEL_FUNCTION)
+                    .withProxyToolCalls(true)
                     .build();
 
-            return new AnthropicChatModel(anthropicApi, options);
+            return new AnthropicChatModel(anthropicApi, options, RetryUtils.DEFAULT_RETRY_TEMPLATE, functionCallbackContext);
         });
     }
 
-    private void saveConversation(Long userId, String sessionId, String role, String content) {
-        AiConversation conversation = AiConversation.builder()
-                .user(com.paicoding.paiswitch.domain.entity.User.builder().id(userId).build())
-                .sessionId(sessionId)
-                .role(role)
-                .content(content)
-                .build();
+    private record ParsedSwitchCommand(String providerCode) {}
 
-        conversationRepository.save(conversation);
-    }
+    /**
+     * Model output of one turn: the reply text and the provider requested through a
+     * switchModel tool call, if any, plus the usage reported for the call.
+     */
+    private record ModelReply(String text, String switchProviderCode, TokenUsage usage) {}
+
+    /**
+     * State of one streamed reply: forwards text, runs the switch once the switchModel tool
+     * call is complete, and persists the assistant message when the upstream stream completes.
+     */
+    private final class StreamingChatSession {
+
+        private final Long userId;
+        private final String sessionId;
+        private final SwitchDto.NaturalLanguageRequest request;
+        private final SseEmitter emitter;
+        private final StringBuilder text = new StringBuilder();
+        private final StringBuilder pendingToolArguments = new StringBuilder();
+        private String pendingToolName;
+        private int pendingToolIndex = -1;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private volatile Runnable cancelAction = () -> {};
+        private SwitchDto.SwitchResult switchResult;
+        private String providerCode;
+        private TokenUsage usage;
+        /** The reply was saved and its usage recorded; see {@link #settle}. */
+        private boolean settled;
+        private String savedResponse;
+
+        private StreamingChatSession(Long userId, String sessionId, SwitchDto.NaturalLanguageRequest request, SseEmitter emitter) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.request = request;
+            this.emitter = emitter;
+            emitter.onTimeout(this::cancel);
+            emitter.onError(error -> cancel());
+        }
+
+        SseEmitter emitter() {
+            return emitter;
+        }
+
+        boolean isClosed() {
+            return closed.get();
+        }
+
+        void onCancel(Runnable action) {
+            this.cancelAction = action;
+            if (closed.get()) {
+                action.run();
+            }
+        }
 
-    public void clearModelCache() {
-        chatModelCache.clear();
-        log.info("Cleared chat model cache");
-    }
+        synchronized void onText(String chunk) {
+            if (chunk == null || chunk.isEmpty() || closed.get()) {
+                return;
+            }
+            text.append(chunk);
+            sendEvent("delta", Map.of("content", chunk));
+        }
 
-    private record ParsedSwitchCommand(String providerCode) {}
+        synchronized void servedBy(String providerCode) {
+            this.providerCode = providerCode;
+        }
+
+        synchronized void onUsage(TokenUsage chunkUsage) {
+            if (chunkUsage != null) {
+                usage = usage == null ? chunkUsage : usage.merge(chunkUsage);
+            }
+        }
+
+        synchronized void onToolCallDelta(int index, String name, String argumentsFragment) {
+            if (index != pendingToolIndex) {
+                completeToolCall();
+                pendingToolIndex = index;
+            }
+            if (name != null) {
+                pendingToolName = name;
+            }
+            if (argumentsFragment != null) {
+                pendingToolArguments.append(argumentsFragment);
+            }
+        }
+
+        synchronized void completeToolCall() {
+            if (pendingToolIndex < 0) {
+                return;
+            }
+            String providerCode = parseSwitchToolCall(pendingToolName, pendingToolArguments.toString());
+            pendingToolIndex = -1;
+            pendingToolName = null;
+            pendingToolArguments.setLength(0);
+            if (providerCode != null) {
+                applySwitch(providerCode);
+            }
+        }
+
+        synchronized void applySwitch(String providerCode) {
+            // Once settled the reply is saved; a switch now would be missing from it.
+            if (switchResult != null || settled) {
+                return;
+            }
+            switchResult = switchService.switchToProvider(
+                    userId,
+                    providerCode,
+                    SwitchType.AI_NATURAL_LANGUAGE,
+                    request.getPrompt(),
+                    request.getClientInfo()
+            );
+            sendEvent("switch", switchResult);
+        }
+
+        void finish() {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                String finalResponse = settle();
+                if (closed.get()) {
+                    return;
+                }
+                if (finalResponse.isBlank()) {
+                    throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: 返回为空");
+                }
+                sendEvent("done", SwitchDto.NaturalLanguageResponse.builder()
+                        .aiResponse(finalResponse)
+                        .switchTriggered(switchResult != null)
+                        .switchResult(switchResult)
+                        .sessionId(sessionId)
+                        .build());
+                if (closed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Applies a completed pending tool call, records the usage the upstream reported and
+         * saves the reply with any switch result. Runs once, when the stream completes or when
+         * the client goes away mid-stream, so a cancelled turn still has its (partial) reply
+         * and billed tokens on record. Returns the saved text, blank when nothing was saved.
+         */
+        private synchronized String settle() {
+            if (settled) {
+                return savedResponse;
+            }
+            completeToolCall();
+            settled = true;
+            savedResponse = "";
+            if (providerCode != null) {
+                tokenUsageService.record(userId, providerCode, usage);
+            }
+            String replyText = text.toString().trim();
+            String response = replyText;
+            if (switchResult != null) {
+                String resultLine = "切换结果：" + switchResult.getMessage();
+                response = replyText.isBlank() ? resultLine : replyText + "\n\n" + resultLine;
+            }
+            if (!response.isBlank()) {
+                conversationService.saveReply(userId, sessionId, response, providerCode, usage);
+            }
+            savedResponse = response;
+            return response;
+        }
 
-    private record SwitchExecutionResult(
-            String aiResponse,
-            boolean switchTriggered,
-            SwitchDto.SwitchResult switchResult
-    ) {}
+        void fail(Throwable error) {
+            if (closed.get()) {
+                return;
+            }
+            log.error("AI stream error: {}", error.getMessage(), error);
+            String message = error instanceof BusinessException
+                    ? error.getMessage()
+                    : "AI service error: " + error.getMessage();
+            sendEvent("error", Map.of("message", message));
+            if (closed.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+
+        void sendEvent(String name, Object data) {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("SSE client gone for session {}: {}", sessionId, e.getMessage());
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            if (closed.compareAndSet(false, true)) {
+                cancelAction.run();
+                try {
+                    settle();
+                } catch (Exception e) {
+                    log.warn("Failed to save cancelled stream of session {}: {}", sessionId, e.getMessage());
+                }
+            }
+        }
+    }
 }
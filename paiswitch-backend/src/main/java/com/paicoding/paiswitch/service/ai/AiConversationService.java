@@ -0,0 +1,295 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.common.exception.BusinessException;
+import com.paicoding.paiswitch.common.response.ResponseCode;
+import com.paicoding.paiswitch.domain.dto.SwitchDto;
+import com.paicoding.paiswitch.domain.entity.AiConversation;
+import com.paicoding.paiswitch.domain.entity.AiSession;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.entity.UserConfig;
+import com.paicoding.paiswitch.domain.enums.SwitchType;
+import com.paicoding.paiswitch.repository.AiSessionRepository;
+import com.paicoding.paiswitch.repository.UserConfigRepository;
+import com.paicoding.paiswitch.service.ApiKeyService;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import com.paicoding.paiswitch.service.SwitchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Short transactional phases of a chat turn. The upstream model call happens between
+ * these phases without a transaction, so no JDBC connection is held while waiting on it.
+ */
+@Service
+@RequiredArgsConstructor
+public class AiConversationService {
+
+    private final AiSessionRepository sessionRepository;
+    private final UserConfigRepository configRepository;
+    private final ApiKeyService apiKeyService;
+    private final SwitchService switchService;
+    private final ProviderRegistry providerRegistry;
+    private final ConversationJournal conversationJournal;
+    private final ConversationContextBuilder contextBuilder;
+    private final ConversationHotCache hotCache;
+    private final ConversationPageReader pageReader;
+    private final AiChatProperties properties;
+
+    /**
+     * Queue the message on the write-behind journal; it is readable through
+     * {@link #getConversationHistory} right away and reaches the table shortly after.
+     */
+    public void saveMessage(Long userId, String sessionId, String role, String content) {
+        hotCache.append(conversationJournal.append(userId, sessionId, role, content));
+        contextBuilder.record(userId, sessionId, role, content);
+    }
+
+    /**
+     * Assistant reply together with the provider that served it and the usage the upstream
+     * model reported for it.
+     */
+    public void saveReply(Long userId, String sessionId, String content, String providerCode, TokenUsage usage) {
+        hotCache.append(conversationJournal.append(userId, sessionId, "assistant", content, providerCode,
+                usage == null ? null : (int) Math.min(Integer.MAX_VALUE, usage.totalTokens()),
+                usage == null ? null : usage.model()));
+        contextBuilder.record(userId, sessionId, "assistant", content);
+    }
+
+    public SwitchDto.ConversationHistoryResponse getLatestConversation(Long userId) {
+        String latestSessionId = hotCache.latestSession(userId)
+                .orElseGet(() -> conversationJournal.read(() -> conversationJournal.latestPending(userId)
+                        .map(ConversationJournal.PendingMessage::sessionId)
+                        .or(() -> sessionRepository.findFirstByUserIdOrderByLastMessageAtDesc(userId)
+                                .map(AiSession::getSessionId))
+                        .orElse(null)));
+        if (latestSessionId == null) {
+            return SwitchDto.ConversationHistoryResponse.builder()
+                    .sessionId(null)
+                    .messages(List.of())
+                    .build();
+        }
+        return getConversationHistory(userId, latestSessionId);
+    }
+
+    public SwitchDto.ConversationHistoryResponse getConversationHistory(Long userId, String sessionId) {
+        return getConversationHistory(userId, sessionId, null, null);
+    }
+
+    /**
+     * One page of a session, oldest message first. Without {@code before} this is the newest
+     * page, including messages still queued on the journal, and is served from the hot cache
+     * while the session is live; {@code nextCursor} then walks towards older messages along the
+     * (user_id, session_id, created_at, id) index.
+     */
+    public SwitchDto.ConversationHistoryResponse getConversationHistory(Long userId, String sessionId,
+                                                                        String before, Integer limit) {
+        int pageSize = pageSize(limit);
+        HistoryCursor cursor = HistoryCursor.decode(before);
+        if (cursor == null) {
+            Optional<ConversationHotCache.Slice> hot = hotCache.newest(userId, sessionId, pageSize);
+            if (hot.isPresent()) {
+                List<ConversationHotCache.CachedMessage> cached = hot.get().messages();
+                return SwitchDto.ConversationHistoryResponse.builder()
+                        .sessionId(sessionId)
+                        .messages(cached.stream()
+                                .map(message -> SwitchDto.ConversationMessage.builder()
+                                        .role(message.role())
+                                        .content(message.content())
+                                        .createdAt(message.createdAt())
+                                        .build())
+                                .toList())
+                        .nextCursor(hot.get().hasMore()
+                                ? HistoryCursor.encode(cached.get(0).createdAt(), cached.get(0).id())
+                                : null)
+                        .hasMore(hot.get().hasMore())
+                        .build();
+            }
+        }
+        return conversationJournal.read(() -> {
+            List<AiConversation> rows = cursor == null
+                    ? pageReader.newest(userId, sessionId, pageSize + 1)
+                    : pageReader.before(userId, sessionId, cursor.createdAt(), cursor.id(), pageSize + 1);
+            boolean hasMore = rows.size() > pageSize;
+            List<AiConversation> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+
+            List<SwitchDto.ConversationMessage> messages = new ArrayList<>(pageRows.size());
+            for (int i = pageRows.size() - 1; i >= 0; i--) {
+                AiConversation conversation = pageRows.get(i);
+                messages.add(SwitchDto.ConversationMessage.builder()
+                        .role(conversation.getRole())
+                        .content(conversation.getContent())
+                        .createdAt(conversation.getCreatedAt())
+                        .build());
+            }
+            if (cursor == null) {
+                conversationJournal.pending(userId, sessionId)
+                        .forEach(message -> messages.add(SwitchDto.ConversationMessage.builder()
+                                .role(message.role())
+                                .content(message.content())
+                                .createdAt(message.createdAt())
+                                .build()));
+            }
+            return SwitchDto.ConversationHistoryResponse.builder()
+                    .sessionId(sessionId)
+                    .messages(messages)
+                    .nextCursor(hasMore ? HistoryCursor.encode(pageRows.get(pageRows.size() - 1).getCreatedAt(),
+                            pageRows.get(pageRows.size() - 1).getId()) : null)
+                    .hasMore(hasMore)
+                    .build();
+        });
+    }
+
+    /**
+     * The user's sessions, most recently active first, read from the ai_session summaries
+     * with the totals of messages still queued on the journal folded in.
+     */
+    public List<SwitchDto.SessionSummary> listSessions(Long userId, Integer limit) {
+        int pageSize = pageSize(limit);
+        return conversationJournal.read(() -> {
+            Map<String, SwitchDto.SessionSummary> sessions = new LinkedHashMap<>();
+            sessionRepository.findByUserIdOrderByLastMessageAtDesc(userId, PageRequest.of(0, pageSize))
+                    .forEach(session -> sessions.put(session.getSessionId(), sessionSummary(session)));
+            Map<String, List<ConversationJournal.PendingMessage>> pending = conversationJournal.pending(userId);
+            List<String> outsidePage = pending.keySet().stream()
+                    .filter(sessionId -> !sessions.containsKey(sessionId))
+                    .toList();
+            if (!outsidePage.isEmpty()) {
+                sessionRepository.findByUserIdAndSessionIdIn(userId, outsidePage)
+                        .forEach(session -> sessions.put(session.getSessionId(), sessionSummary(session)));
+            }
+            pending.forEach((sessionId, messages) -> {
+                SwitchDto.SessionSummary summary = sessions.computeIfAbsent(sessionId, id ->
+                        SwitchDto.SessionSummary.builder()
+                                .sessionId(id)
+                                .messageCount(0)
+                                .build());
+                for (ConversationJournal.PendingMessage message : messages) {
+                    summary.setMessageCount(summary.getMessageCount() + 1);
+                    if (summary.getLastMessageAt() == null || message.createdAt().isAfter(summary.getLastMessageAt())) {
+                        summary.setLastMessageAt(message.createdAt());
+                    }
+                    if (summary.getTitle() == null && "user".equals(message.role())) {
+                        summary.setTitle(ConversationJournal.title(message.content()));
+                    }
+                    if (message.providerCode() != null) {
+                        summary.setLastProvider(message.providerCode());
+                    }
+                }
+            });
+            return sessions.values().stream()
+                    .sorted(Comparator.comparing(SwitchDto.SessionSummary::getLastMessageAt).reversed())
+                    .limit(pageSize)
+                    .toList();
+        });
+    }
+
+    private static SwitchDto.SessionSummary sessionSummary(AiSession session) {
+        return SwitchDto.SessionSummary.builder()
+                .sessionId(session.getSessionId())
+                .title(session.getTitle())
+                .lastMessageAt(session.getLastMessageAt())
+                .messageCount(session.getMessageCount())
+                .lastProvider(session.getLastProvider())
+                .build();
+    }
+
+    private int pageSize(Integer limit) {
+        AiChatProperties.History config = properties.getHistory();
+        return limit == null || limit <= 0
+                ? config.getDefaultPageSize()
+                : Math.min(limit, config.getMaxPageSize());
+    }
+
+    /**
+     * Load the user's current provider (a registry copy, safe to use after the transaction)
+     * together with the decrypted API key.
+     */
+    @Transactional(readOnly = true)
+    public ChatTarget resolveChatTarget(Long userId) {
+        UserConfig config = configRepository.findByUserId(userId)
+                .orElseThrow(() -> new BusinessException(ResponseCode.CONFIG_NOT_FOUND));
+
+        ModelProvider provider = providerRegistry.findById(config.getCurrentProvider().getId())
+                .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
+        String apiKey = apiKeyService.getDecryptedApiKey(userId, provider.getCode());
+        return new ChatTarget(provider, apiKey);
+    }
+
+    /**
+     * Apply the switch (if any) and persist the assistant reply in one transaction.
+     */
+    @Transactional
+    public SwitchDto.NaturalLanguageResponse completeTurn(Long userId,
+                                                          String sessionId,
+                                                          SwitchDto.NaturalLanguageRequest request,
+                                                          String providerCode,
+                                                          String replyText,
+                                                          String servedBy,
+                                                          TokenUsage usage) {
+        SwitchDto.SwitchResult switchResult = null;
+        String finalResponse = replyText;
+
+        if (providerCode != null) {
+            switchResult = switchService.switchToProvider(
+                    userId,
+                    providerCode,
+                    SwitchType.AI_NATURAL_LANGUAGE,
+                    request.getPrompt(),
+                    request.getClientInfo()
+            );
+            String resultLine = "切换结果：" + switchResult.getMessage();
+            finalResponse = replyText == null || replyText.isBlank()
+                    ? resultLine
+                    : replyText + "\n\n" + resultLine;
+        }
+
+        saveReply(userId, sessionId, finalResponse, servedBy, usage);
+
+        return SwitchDto.NaturalLanguageResponse.builder()
+                .aiResponse(finalResponse)
+                .switchTriggered(switchResult != null)
+                .switchResult(switchResult)
+                .sessionId(sessionId)
+                .build();
+    }
+
+    public record ChatTarget(ModelProvider provider, String apiKey) {}
+
+    /**
+     * Opaque keyset position: the (createdAt, id) of the oldest message already returned.
+     */
+    private record HistoryCursor(LocalDateTime createdAt, Long id) {
+
+        static String encode(LocalDateTime createdAt, Long id) {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new BusinessException(ResponseCode.BAD_REQUEST, "无效的分页游标");
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.paicoding.paiswitch.service.ai;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over case-folded chars: reports every occurrence of every pattern
+ * in one left-to-right pass over the text, independent of the number of patterns.
+ * <p>
+ * Immutable once built and safe to share between threads.
+ */
+final class AliasAutomaton<T> {
+
+    private final Node<T> root;
+
+    private AliasAutomaton(Node<T> root) {
+        this.root = root;
+    }
+
+    static <T> AliasAutomaton<T> build(Map<String, T> patterns) {
+        Node<T> root = new Node<>();
+        patterns.forEach((pattern, value) -> {
+            if (pattern == null || pattern.isEmpty()) {
+                return;
+            }
+            Node<T> node = root;
+            for (int i = 0; i < pattern.length(); i++) {
+                node = node.children.computeIfAbsent(fold(pattern.charAt(i)), c -> new Node<>());
+            }
+            node.value = value;
+            node.length = pattern.length();
+        });
+
+        Queue<Node<T>> queue = new ArrayDeque<>();
+        for (Node<T> child : root.children.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node<T> node = queue.poll();
+            for (Map.Entry<Character, Node<T>> entry : node.children.entrySet()) {
+                char c = entry.getKey();
+                Node<T> child = entry.getValue();
+                Node<T> fail = node.fail;
+                while (fail != root && !fail.children.containsKey(c)) {
+                    fail = fail.fail;
+                }
+                Node<T> target = fail.children.get(c);
+                child.fail = target != null && target != child ? target : root;
+                child.output = child.fail.length > 0 ? child.fail : child.fail.output;
+                queue.add(child);
+            }
+        }
+        return new AliasAutomaton<>(root);
+    }
+
+    List<Match<T>> findAll(String text) {
+        List<Match<T>> matches = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return matches;
+        }
+        Node<T> node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.fail;
+            }
+            node = node.children.getOrDefault(c, root);
+            for (Node<T> hit = node.length > 0 ? node : node.output; hit != null; hit = hit.output) {
+                matches.add(new Match<>(i + 1 - hit.length, i + 1, hit.value));
+            }
+        }
+        return matches;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    record Match<T>(int start, int end, T value) {
+
+        int length() {
+            return end - start;
+        }
+    }
+
+    private static final class Node<T> {
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private Node<T> fail;
+        /** Nearest node on the fail chain that ends a pattern. */
+        private Node<T> output;
+        private T value;
+        private int length;
+    }
+}
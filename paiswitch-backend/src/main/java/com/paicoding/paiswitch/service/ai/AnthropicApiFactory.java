@@ -0,0 +1,195 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.ai.anthropic.api.AnthropicApi;
+import org.springframework.ai.retry.RetryUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.http.HttpClient;
+
+/**
+ * Builds {@link AnthropicApi} clients on top of the shared {@link ProviderWireClient} HTTP
+ * client, with the provider's configured timeout.
+ * <p>
+ * The clients also mark the last history message as an ephemeral prompt cache breakpoint, so
+ * the next turn of the conversation skips re-processing tools, system prompt and history.
+ * Anthropic ignores breakpoints on prefixes below its minimum (1024 tokens for Sonnet/Opus),
+ * and the static prompt alone is far shorter, so only requests whose prefix reaches
+ * {@code ai-chat.prompt-cache.min-prefix-tokens} are touched.
+ * <p>
+ * Spring AI 1.0.0-M4 has no cache_control option, so such /v1/messages bodies are rewritten
+ * on both the blocking (RestClient) and streaming (WebClient) paths. Bodies too small to
+ * reach the minimum are recognised by their length and sent without being parsed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnthropicApiFactory {
+
+    private static final String MESSAGES_PATH = "/v1/messages";
+    /** UTF-8 bytes per estimated token can't be lower than this (a CJK character is 3 bytes, 1 token). */
+    private static final int MIN_BYTES_PER_TOKEN = 3;
+
+    private final AiChatProperties properties;
+    private final ProviderWireClient providerWireClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public AnthropicApi create(ModelProvider provider, String apiKey) {
+        HttpClient httpClient = providerWireClient.httpClient();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(providerWireClient.properties().timeoutFor(provider.getCode()));
+
+        // AnthropicApi configures the builders it is given, so each client gets fresh ones.
+        RestClient.Builder restClientBuilder = RestClient.builder().requestFactory(requestFactory);
+        WebClient.Builder webClientBuilder = WebClient.builder().clientConnector(new JdkClientHttpConnector(httpClient));
+        if (properties.getPromptCache().isEnabled()) {
+            restClientBuilder.requestInterceptor(restInterceptor());
+            webClientBuilder.filter(webFilter());
+        }
+        return new AnthropicApi(provider.getBaseUrl(), apiKey, AnthropicApi.DEFAULT_ANTHROPIC_VERSION,
+                restClientBuilder, webClientBuilder, RetryUtils.DEFAULT_RESPONSE_ERROR_HANDLER);
+    }
+
+    private ClientHttpRequestInterceptor restInterceptor() {
+        return (request, body, execution) -> {
+            if (!isMessagesRequest(request.getMethod(), request.getURI().getPath())) {
+                return execution.execute(request, body);
+            }
+            byte[] rewritten = markHistoryBreakpoint(body);
+            if (rewritten == body) {
+                return execution.execute(request, body);
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(request.getHeaders());
+            headers.setContentLength(rewritten.length);
+            HttpRequest rewrittenRequest = new HttpRequestWrapper(request) {
+                @Override
+                public HttpHeaders getHeaders() {
+                    return headers;
+                }
+            };
+            return execution.execute(rewrittenRequest, rewritten);
+        };
+    }
+
+    private ExchangeFilterFunction webFilter() {
+        return (request, next) -> {
+            if (!isMessagesRequest(request.method(), request.url().getPath())) {
+                return next.exchange(request);
+            }
+            ClientRequest rewritten = ClientRequest.from(request)
+                    .body((outputMessage, context) -> request.body().insert(new ClientHttpRequestDecorator(outputMessage) {
+                        @Override
+                        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                            return DataBufferUtils.join(body).flatMap(buffer -> {
+                                if (isBelowCacheMinimum(buffer.readableByteCount())) {
+                                    return super.writeWith(Mono.just(buffer));
+                                }
+                                byte[] bytes = new byte[buffer.readableByteCount()];
+                                buffer.read(bytes);
+                                DataBufferUtils.release(buffer);
+                                byte[] marked = markHistoryBreakpoint(bytes);
+                                getHeaders().setContentLength(marked.length);
+                                return super.writeWith(Mono.just(bufferFactory().wrap(marked)));
+                            });
+                        }
+                    }, context))
+                    .build();
+            return next.exchange(rewritten);
+        };
+    }
+
+    /**
+     * Puts {@code cache_control: {"type": "ephemeral"}} on the last content block of the
+     * message before the new prompt, when the estimated prefix up to it reaches the minimum.
+     * Returns {@code body} itself when nothing is marked, including bodies that cannot be parsed.
+     */
+    byte[] markHistoryBreakpoint(byte[] body) {
+        if (isBelowCacheMinimum(body.length)) {
+            return body;
+        }
+        int minPrefixTokens = properties.getPromptCache().getMinPrefixTokens();
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            JsonNode messages = root.path("messages");
+            if (!(root instanceof ObjectNode) || !messages.isArray() || messages.size() < 2) {
+                return body;
+            }
+            int lastHistory = messages.size() - 2;
+            int tokens = estimateTokens(root.path("system")) + estimateTokens(root.path("tools"));
+            for (int i = 0; i <= lastHistory; i++) {
+                tokens += estimateTokens(messages.get(i).path("content"));
+            }
+            if (tokens < minPrefixTokens || !(messages.get(lastHistory) instanceof ObjectNode message)) {
+                return body;
+            }
+            JsonNode content = message.path("content");
+            ObjectNode block;
+            if (content.isTextual()) {
+                ArrayNode blocks = objectMapper.createArrayNode();
+                block = blocks.addObject().put("type", "text").put("text", content.asText());
+                message.set("content", blocks);
+            } else if (content.isArray() && !content.isEmpty() && content.get(content.size() - 1) instanceof ObjectNode last) {
+                block = last;
+            } else {
+                return body;
+            }
+            block.putObject("cache_control").put("type", "ephemeral");
+            return objectMapper.writeValueAsBytes(root);
+        } catch (Exception e) {
+            log.debug("Send Anthropic request without cache breakpoint: {}", e.getMessage());
+            return body;
+        }
+    }
+
+    /** Estimated tokens of a string, of the text of content blocks, or of any other JSON. */
+    private int estimateTokens(JsonNode node) {
+        if (node.isMissingNode() || node.isNull()) {
+            return 0;
+        }
+        if (node.isTextual()) {
+            return ConversationContextBuilder.estimateTokens(node.asText());
+        }
+        if (node.isArray()) {
+            int tokens = 0;
+            for (JsonNode element : node) {
+                JsonNode text = element.path("text");
+                tokens += ConversationContextBuilder.estimateTokens(text.isTextual() ? text.asText() : element.toString());
+            }
+            return tokens;
+        }
+        return ConversationContextBuilder.estimateTokens(node.toString());
+    }
+
+    private boolean isBelowCacheMinimum(int bodyLength) {
+        return bodyLength < (long) properties.getPromptCache().getMinPrefixTokens() * MIN_BYTES_PER_TOKEN;
+    }
+
+    private boolean isMessagesRequest(HttpMethod method, String path) {
+        return HttpMethod.POST.equals(method) && path != null && path.endsWith(MESSAGES_PATH);
+    }
+}
@@ -0,0 +1,174 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.event.ApiKeyChangedEvent;
+import com.paicoding.paiswitch.domain.event.ProviderCatalogChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.anthropic.AnthropicChatModel;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size- and idle-bounded cache of {@link AnthropicChatModel} instances.
+ * <p>
+ * Entries are keyed by provider code, the provider's config version (its updated_at) and a
+ * SHA-256 fingerprint of the API key, so a rotated key or an edited base URL / model never
+ * hits a stale client. Provider updates and API key changes also drop matching entries
+ * eagerly so their clients do not linger until they age out.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatModelCache {
+
+    private final AiChatProperties properties;
+
+    /** Access-ordered, so the head is always the least recently used entry. */
+    private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AnthropicChatModel getOrCreate(Long userId, ModelProvider provider, String apiKey,
+                                          Supplier<AnthropicChatModel> factory) {
+        CacheKey key = new CacheKey(provider.getCode(), configVersion(provider), fingerprint(apiKey));
+
+        synchronized (entries) {
+            long now = System.nanoTime();
+            evictIdle(now);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                return touch(entry, userId, now);
+            }
+        }
+
+        // Built outside the lock so a miss does not hold up chat requests for other keys; if
+        // two requests miss at once, the first one stored wins and the other model is dropped.
+        misses.increment();
+        Entry created = new Entry(factory.get());
+        synchronized (entries) {
+            Entry entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+                evictOverflow();
+            }
+            return touch(entry, userId, System.nanoTime());
+        }
+    }
+
+    private AnthropicChatModel touch(Entry entry, Long userId, long now) {
+        entry.lastAccessNanos = now;
+        entry.userIds.add(userId);
+        return entry.chatModel;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProviderCatalogChanged(ProviderCatalogChangedEvent event) {
+        int removed = invalidate((key, entry) -> key.providerCode().equals(event.providerCode()));
+        log.debug("Invalidated {} cached chat models for provider {}", removed, event.providerCode());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onApiKeyChanged(ApiKeyChangedEvent event) {
+        int removed = invalidate((key, entry) -> key.providerCode().equals(event.providerCode())
+                && entry.userIds.contains(event.userId()));
+        log.debug("Invalidated {} cached chat models for user {} provider {}", removed, event.userId(), event.providerCode());
+    }
+
+    public void invalidateAll() {
+        int removed = invalidate((key, entry) -> true);
+        log.info("Cleared chat model cache ({} entries)", removed);
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    private int invalidate(EntryPredicate predicate) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Map.Entry<CacheKey, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<CacheKey, Entry> candidate = iterator.next();
+                if (predicate.test(candidate.getKey(), candidate.getValue())) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void evictIdle(long now) {
+        long idleNanos = properties.getModelCache().getIdleTimeout().toNanos();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (now - eldest.lastAccessNanos < idleNanos) {
+                break;
+            }
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private void evictOverflow() {
+        int maxSize = Math.max(1, properties.getModelCache().getMaxSize());
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private long configVersion(ModelProvider provider) {
+        return provider.getUpdatedAt() == null ? 0L : provider.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private String fingerprint(String apiKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record Stats(int size, long hits, long misses, long evictions) {}
+
+    private record CacheKey(String providerCode, long configVersion, String keyFingerprint) {}
+
+    private interface EntryPredicate {
+        boolean test(CacheKey key, Entry entry);
+    }
+
+    private static final class Entry {
+        private final AnthropicChatModel chatModel;
+        /** Users who resolved to this key, so their key changes can drop it. */
+        private final Set<Long> userIds = new HashSet<>();
+        private long lastAccessNanos;
+
+        private Entry(AnthropicChatModel chatModel) {
+            this.chatModel = chatModel;
+        }
+    }
+}
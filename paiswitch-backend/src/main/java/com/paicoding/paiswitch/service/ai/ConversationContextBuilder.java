@@ -0,0 +1,304 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.domain.entity.AiConversation;
+import com.paicoding.paiswitch.service.wire.WireDialect;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-turn context for a chat turn: the most recent messages of the session that fit the
+ * token budget, plus a rolling summary of everything older.
+ * <p>
+ * Each active session keeps its window and summary in memory. A session is read once, from
+ * the {@link ConversationHotCache} or the database, when it is first used or after it aged
+ * out; afterwards new messages are added through {@link #record}. Messages pushed out of the window are folded into the
+ * summary by a background call to the session's model, so a turn never waits on it and uses
+ * the previous summary until the new one is ready.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationContextBuilder {
+
+    /**
+     * Starts the summary text in the system prompt. Everything before it is the static prompt,
+     * which stays the prompt-cache prefix.
+     */
+    public static final String SUMMARY_HEADER = "以下是本次会话较早内容的摘要：\n";
+
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final AiChatProperties properties;
+    private final ConversationPageReader pageReader;
+    private final ConversationJournal conversationJournal;
+    private final ConversationHotCache hotCache;
+
+    /** Access-ordered, so the head is always the least recently used session. */
+    private final LinkedHashMap<SessionKey, SessionContext> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private ExecutorService summaryExecutor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        summaryExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getContext().getSummaryThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "conversation-summary-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        summaryExecutor.shutdownNow();
+    }
+
+    /**
+     * Context for the turn whose user message is {@code currentPrompt}; that message itself is
+     * left out of the history. {@code summarizer} runs on a background thread when older
+     * messages are waiting to be folded into the summary.
+     */
+    public Context build(Long userId, String sessionId, String currentPrompt, Summarizer summarizer) {
+        AiChatProperties.Context config = properties.getContext();
+        if (!config.isEnabled()) {
+            return Context.EMPTY;
+        }
+        SessionContext session = session(new SessionKey(userId, sessionId), true);
+        synchronized (session) {
+            if (!session.loaded) {
+                load(userId, sessionId, session, config);
+            }
+            fit(session, config);
+
+            List<Turn> turns = new ArrayList<>(session.window);
+            if (!turns.isEmpty()) {
+                Turn last = turns.get(turns.size() - 1);
+                if ("user".equals(last.role()) && last.content().equals(currentPrompt)) {
+                    turns.remove(turns.size() - 1);
+                }
+            }
+            // Conversations sent upstream start with a user message.
+            while (!turns.isEmpty() && !"user".equals(turns.get(0).role())) {
+                turns.remove(0);
+            }
+
+            if (!session.unsummarized.isEmpty() && !session.summarizing && summarizer != null) {
+                summarize(session, summarizer, config);
+            }
+            return new Context(session.summary,
+                    turns.stream().map(turn -> new WireDialect.Message(turn.role(), turn.content())).toList());
+        }
+    }
+
+    /**
+     * Adds a message to the session's window if the session is cached; an uncached session
+     * reads it from the database when it is next built.
+     */
+    public void record(Long userId, String sessionId, String role, String content) {
+        if (!properties.getContext().isEnabled() || content == null) {
+            return;
+        }
+        SessionContext session = session(new SessionKey(userId, sessionId), false);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            if (session.loaded) {
+                session.add(new Turn(role, content, estimateTokens(content)));
+            }
+        }
+    }
+
+    /**
+     * Rough token count without a tokenizer: one token per CJK character, one per four other
+     * characters.
+     */
+    static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+            if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                    || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private SessionContext session(SessionKey key, boolean create) {
+        AiChatProperties.Context config = properties.getContext();
+        long now = System.nanoTime();
+        synchronized (sessions) {
+            evictIdle(now, config);
+            SessionContext session = sessions.get(key);
+            if (session == null && create) {
+                session = new SessionContext();
+                sessions.put(key, session);
+                evictOverflow(config);
+            }
+            if (session != null) {
+                session.lastAccessNanos = now;
+            }
+            return session;
+        }
+    }
+
+    private void load(Long userId, String sessionId, SessionContext session, AiChatProperties.Context config) {
+        Optional<ConversationHotCache.Slice> hot = hotCache.recent(userId, sessionId);
+        if (hot.isPresent()) {
+            List<ConversationHotCache.CachedMessage> messages = hot.get().messages();
+            messages.subList(Math.max(0, messages.size() - config.getLoadMessages()), messages.size())
+                    .forEach(message -> session.add(new Turn(message.role(), message.content(), estimateTokens(message.content()))));
+            session.loaded = true;
+            return;
+        }
+        List<Turn> turns = conversationJournal.read(() -> {
+            List<AiConversation> rows = pageReader.newest(userId, sessionId, Math.max(1, config.getLoadMessages()));
+            List<Turn> result = new ArrayList<>(rows.size());
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                AiConversation row = rows.get(i);
+                result.add(new Turn(row.getRole(), row.getContent(), estimateTokens(row.getContent())));
+            }
+            conversationJournal.pending(userId, sessionId)
+                    .forEach(message -> result.add(new Turn(message.role(), message.content(), estimateTokens(message.content()))));
+            return result;
+        });
+        turns.forEach(session::add);
+        session.loaded = true;
+    }
+
+    /**
+     * Moves the oldest messages out of the window until summary and window fit the budget;
+     * the newest message always stays.
+     */
+    private void fit(SessionContext session, AiChatProperties.Context config) {
+        int budget = config.getTokenBudget() - estimateTokens(session.summary);
+        while (session.windowTokens > budget && session.window.size() > 1) {
+            Turn oldest = session.window.pollFirst();
+            session.windowTokens -= oldest.tokens() + MESSAGE_OVERHEAD_TOKENS;
+            session.unsummarized.add(oldest);
+        }
+        int maxUnsummarized = Math.max(1, config.getLoadMessages());
+        if (!session.summarizing && session.unsummarized.size() > maxUnsummarized) {
+            session.unsummarized.subList(0, session.unsummarized.size() - maxUnsummarized).clear();
+        }
+    }
+
+    private void summarize(SessionContext session, Summarizer summarizer, AiChatProperties.Context config) {
+        List<Turn> folded = List.copyOf(session.unsummarized);
+        String transcript = transcript(session.summary, folded);
+        session.summarizing = true;
+        summaryExecutor.execute(() -> {
+            String summary = null;
+            try {
+                summary = summarizer.summarize(transcript, config.getSummaryMaxTokens());
+            } catch (Exception e) {
+                log.warn("Failed to summarize conversation, keeping previous summary: {}", e.getMessage());
+            }
+            synchronized (session) {
+                if (summary != null && !summary.isBlank()) {
+                    session.summary = summary.strip();
+                    session.unsummarized.subList(0, Math.min(folded.size(), session.unsummarized.size())).clear();
+                }
+                session.summarizing = false;
+            }
+        });
+    }
+
+    private String transcript(String previousSummary, List<Turn> turns) {
+        StringBuilder transcript = new StringBuilder();
+        if (previousSummary != null) {
+            transcript.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        transcript.append("需要并入摘要的对话：\n");
+        for (Turn turn : turns) {
+            transcript.append("user".equals(turn.role()) ? "用户：" : "助手：").append(turn.content()).append('\n');
+        }
+        return transcript.toString();
+    }
+
+    private void evictIdle(long now, AiChatProperties.Context config) {
+        long idleNanos = config.getIdleTimeout().toNanos();
+        Iterator<SessionContext> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            SessionContext eldest = iterator.next();
+            if (now - eldest.lastAccessNanos < idleNanos) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private void evictOverflow(AiChatProperties.Context config) {
+        int maxSessions = Math.max(1, config.getMaxSessions());
+        Iterator<SessionContext> iterator = sessions.values().iterator();
+        while (sessions.size() > maxSessions && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Calls a model to merge the transcript into a new summary; may block.
+     */
+    @FunctionalInterface
+    public interface Summarizer {
+        String summarize(String transcript, int maxTokens);
+    }
+
+    /**
+     * @param summary summary of the messages before {@code history}, or null
+     * @param history recent messages, oldest first, without the current prompt
+     */
+    public record Context(String summary, List<WireDialect.Message> history) {
+
+        static final Context EMPTY = new Context(null, List.of());
+
+        /** System prompt section carrying the summary, or null when there is none. */
+        public String summarySection() {
+            return summary == null ? null : SUMMARY_HEADER + summary;
+        }
+    }
+
+    private record SessionKey(Long userId, String sessionId) {}
+
+    private record Turn(String role, String content, int tokens) {}
+
+    private static final class SessionContext {
+        private final Deque<Turn> window = new ArrayDeque<>();
+        /** Left the window, not yet part of {@link #summary}. */
+        private final List<Turn> unsummarized = new ArrayList<>();
+        private int windowTokens;
+        private String summary;
+        private boolean summarizing;
+        private boolean loaded;
+        private long lastAccessNanos;
+
+        void add(Turn turn) {
+            window.addLast(turn);
+            windowTokens += turn.tokens() + MESSAGE_OVERHEAD_TOKENS;
+        }
+    }
+}
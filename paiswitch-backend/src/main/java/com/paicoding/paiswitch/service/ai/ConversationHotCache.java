@@ -0,0 +1,357 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.domain.entity.AiConversation;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The last N messages of recently active sessions, so history reads and context building
+ * for a live conversation do not go to ai_conversation.
+ * <p>
+ * A session becomes hot on its first write: that write reads the newest page from the
+ * database once, and every later message is appended as it is journaled. Sessions are
+ * evicted after an idle timeout and, least recently used first, when the estimated size of
+ * all cached content exceeds the memory budget.
+ * <p>
+ * Messages loaded from the database carry their id; appended messages get theirs when the
+ * journal commits them. A page whose oldest message has no id yet (not flushed, or flushed
+ * before it reached the cache) cannot produce a keyset cursor and is read from the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationHotCache {
+
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+    private static final Duration STORED_TIME_PRECISION = Duration.ofSeconds(1);
+
+    private final AiChatProperties properties;
+    private final ConversationPageReader pageReader;
+    private final ConversationJournal conversationJournal;
+
+    /** Moved to the end on every use ({@link #touch}), so the head is the least recently used session. */
+    private final LinkedHashMap<SessionKey, Entry> entries = new LinkedHashMap<>();
+    /** Session each user wrote to last; all writes pass through {@link #append}. */
+    private final Map<Long, String> latestSessions = new HashMap<>();
+    private long usedBytes;
+
+    @PostConstruct
+    public void start() {
+        conversationJournal.onFlushed(this::assignIds);
+    }
+
+    /**
+     * Records a message that was just appended to the journal. The first write to a session
+     * that is not hot loads its newest page.
+     */
+    public void append(ConversationJournal.PendingMessage message) {
+        AiChatProperties.HotCache config = properties.getHotCache();
+        if (!config.isEnabled()) {
+            return;
+        }
+        SessionKey key = new SessionKey(message.userId(), message.sessionId());
+        Entry entry;
+        synchronized (entries) {
+            latestSessions.put(message.userId(), message.sessionId());
+            evictIdle(System.nanoTime(), config);
+            entry = entries.get(key);
+            if (entry != null) {
+                touch(key, entry);
+                if (entry.loaded) {
+                    usedBytes += entry.add(message, config.getMessagesPerSession());
+                    evictOverflow(config);
+                } else {
+                    entry.buffered.add(message);
+                }
+                return;
+            }
+            entry = new Entry();
+            entry.lastAccessNanos = System.nanoTime();
+            entries.put(key, entry);
+        }
+        load(key, entry, config);
+    }
+
+    /**
+     * The newest {@code limit} messages of a hot session, oldest first, or empty when the
+     * session is not hot or the page needs the database.
+     */
+    public Optional<Slice> newest(Long userId, String sessionId, int limit) {
+        Optional<Slice> all = recent(userId, sessionId);
+        if (all.isEmpty()) {
+            return all;
+        }
+        List<CachedMessage> messages = all.get().messages();
+        if (messages.size() <= limit) {
+            return all.get().hasMore() ? Optional.empty() : all;
+        }
+        List<CachedMessage> page = messages.subList(messages.size() - limit, messages.size());
+        return page.get(0).id() == null ? Optional.empty() : Optional.of(new Slice(page, true));
+    }
+
+    /**
+     * All cached messages of a hot session, oldest first; {@code hasMore} tells whether the
+     * session has older messages than these.
+     */
+    public Optional<Slice> recent(Long userId, String sessionId) {
+        AiChatProperties.HotCache config = properties.getHotCache();
+        if (!config.isEnabled()) {
+            return Optional.empty();
+        }
+        synchronized (entries) {
+            evictIdle(System.nanoTime(), config);
+            SessionKey key = new SessionKey(userId, sessionId);
+            Entry entry = entries.get(key);
+            if (entry == null || !entry.loaded) {
+                return Optional.empty();
+            }
+            touch(key, entry);
+            return Optional.of(new Slice(entry.messages(), !entry.complete));
+        }
+    }
+
+    /**
+     * The session the user wrote to last, if it is still hot.
+     */
+    public Optional<String> latestSession(Long userId) {
+        if (!properties.getHotCache().isEnabled()) {
+            return Optional.empty();
+        }
+        synchronized (entries) {
+            String sessionId = latestSessions.get(userId);
+            if (sessionId == null || !entries.containsKey(new SessionKey(userId, sessionId))) {
+                return Optional.empty();
+            }
+            return Optional.of(sessionId);
+        }
+    }
+
+    private void load(SessionKey key, Entry entry, AiChatProperties.HotCache config) {
+        int size = Math.max(1, config.getMessagesPerSession());
+        Snapshot snapshot;
+        try {
+            snapshot = conversationJournal.read(() -> new Snapshot(
+                    pageReader.newest(key.userId(), key.sessionId(), size + 1),
+                    conversationJournal.pending(key.userId(), key.sessionId())));
+        } catch (RuntimeException e) {
+            log.warn("Failed to warm conversation cache for session {}: {}", key.sessionId(), e.getMessage());
+            synchronized (entries) {
+                if (entries.remove(key, entry)) {
+                    forgetLatest(key);
+                }
+            }
+            return;
+        }
+
+        synchronized (entries) {
+            List<AiConversation> rows = snapshot.rows();
+            entry.complete = rows.size() <= size;
+            for (int i = Math.min(rows.size(), size) - 1; i >= 0; i--) {
+                entry.add(new Slot(CachedMessage.of(rows.get(i)), null), size);
+            }
+            for (ConversationJournal.PendingMessage message : snapshot.pending()) {
+                entry.add(message, size);
+            }
+            // Appended while the page was loading. The journal may have flushed such a message
+            // before the page was read, so it can already be among the rows.
+            List<AiConversation> unmatched = new ArrayList<>(rows);
+            for (ConversationJournal.PendingMessage message : entry.buffered) {
+                if (!snapshot.pending().contains(message) && !removeStored(unmatched, message)) {
+                    entry.add(message, size);
+                }
+            }
+            entry.buffered.clear();
+            entry.loaded = true;
+            if (entries.get(key) == entry) {
+                usedBytes += entry.bytes;
+                evictOverflow(config);
+            }
+        }
+    }
+
+    /**
+     * Gives cached messages the ids their rows got, so pages that start at them can produce a
+     * keyset cursor.
+     */
+    private void assignIds(List<ConversationJournal.PendingMessage> batch, List<Long> ids) {
+        synchronized (entries) {
+            for (int i = 0; i < batch.size(); i++) {
+                ConversationJournal.PendingMessage message = batch.get(i);
+                Entry entry = entries.get(new SessionKey(message.userId(), message.sessionId()));
+                if (entry != null) {
+                    entry.assignId(message, ids.get(i));
+                }
+            }
+        }
+    }
+
+    private void touch(SessionKey key, Entry entry) {
+        entry.lastAccessNanos = System.nanoTime();
+        entries.remove(key);
+        entries.put(key, entry);
+    }
+
+    /**
+     * Removes the row the message was stored as, if present. created_at loses its fraction
+     * in a TIMESTAMP column, so times within a second match.
+     */
+    private static boolean removeStored(List<AiConversation> rows, ConversationJournal.PendingMessage message) {
+        Iterator<AiConversation> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            AiConversation row = iterator.next();
+            if (Objects.equals(row.getRole(), message.role())
+                    && Objects.equals(row.getContent(), message.content())
+                    && row.getCreatedAt() != null
+                    && Duration.between(row.getCreatedAt(), message.createdAt()).abs().compareTo(STORED_TIME_PRECISION) < 0) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evictIdle(long now, AiChatProperties.HotCache config) {
+        long idleNanos = config.getIdleTimeout().toNanos();
+        Iterator<Map.Entry<SessionKey, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SessionKey, Entry> eldest = iterator.next();
+            if (now - eldest.getValue().lastAccessNanos < idleNanos) {
+                break;
+            }
+            iterator.remove();
+            evicted(eldest);
+        }
+    }
+
+    private void evictOverflow(AiChatProperties.HotCache config) {
+        long maxBytes = config.getMaxMemory().toBytes();
+        Iterator<Map.Entry<SessionKey, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<SessionKey, Entry> eldest = iterator.next();
+            iterator.remove();
+            evicted(eldest);
+        }
+    }
+
+    private void evicted(Map.Entry<SessionKey, Entry> eldest) {
+        usedBytes -= eldest.getValue().loaded ? eldest.getValue().bytes : 0;
+        forgetLatest(eldest.getKey());
+    }
+
+    /** Drops the user's latest-session pointer when it refers to a session no longer cached. */
+    private void forgetLatest(SessionKey key) {
+        latestSessions.remove(key.userId(), key.sessionId());
+    }
+
+    /**
+     * @param id null for appended messages the journal has not committed yet
+     */
+    public record CachedMessage(Long id, String role, String content, LocalDateTime createdAt) {
+
+        static CachedMessage of(AiConversation conversation) {
+            return new CachedMessage(conversation.getId(), conversation.getRole(), conversation.getContent(),
+                    conversation.getCreatedAt());
+        }
+
+        static CachedMessage of(ConversationJournal.PendingMessage message) {
+            return new CachedMessage(null, message.role(), message.content(), message.createdAt());
+        }
+
+        CachedMessage withId(Long id) {
+            return new CachedMessage(id, role, content, createdAt);
+        }
+
+        long bytes() {
+            return MESSAGE_OVERHEAD_BYTES + (content == null ? 0 : 2L * content.length());
+        }
+    }
+
+    /**
+     * @param messages oldest first
+     * @param hasMore  the session has messages older than {@code messages}
+     */
+    public record Slice(List<CachedMessage> messages, boolean hasMore) {}
+
+    private record Snapshot(List<AiConversation> rows, List<ConversationJournal.PendingMessage> pending) {}
+
+    private record SessionKey(Long userId, String sessionId) {}
+
+    /**
+     * A cached message and, until its id is known, the journal message it was appended as.
+     */
+    private static final class Slot {
+        private CachedMessage message;
+        private final ConversationJournal.PendingMessage pending;
+
+        private Slot(CachedMessage message, ConversationJournal.PendingMessage pending) {
+            this.message = message;
+            this.pending = pending;
+        }
+    }
+
+    private static final class Entry {
+        private final Deque<Slot> messages = new ArrayDeque<>();
+        /** Appended messages still waiting for their id, by identity. */
+        private final Map<ConversationJournal.PendingMessage, Slot> awaitingId = new IdentityHashMap<>();
+        /** Written while the entry was loading; merged once the load completes. */
+        private final List<ConversationJournal.PendingMessage> buffered = new ArrayList<>();
+        private boolean loaded;
+        /** No older messages exist than the ones held. */
+        private boolean complete;
+        private long bytes;
+        private long lastAccessNanos;
+
+        /** Returns the change in size. */
+        long add(ConversationJournal.PendingMessage message, int maxMessages) {
+            Slot slot = new Slot(CachedMessage.of(message), message);
+            awaitingId.put(message, slot);
+            return add(slot, maxMessages);
+        }
+
+        /** Returns the change in size. */
+        long add(Slot slot, int maxMessages) {
+            long before = bytes;
+            messages.addLast(slot);
+            bytes += slot.message.bytes();
+            while (messages.size() > maxMessages) {
+                Slot oldest = messages.removeFirst();
+                if (oldest.pending != null) {
+                    awaitingId.remove(oldest.pending);
+                }
+                bytes -= oldest.message.bytes();
+                complete = false;
+            }
+            return bytes - before;
+        }
+
+        void assignId(ConversationJournal.PendingMessage message, Long id) {
+            Slot slot = awaitingId.remove(message);
+            if (slot != null) {
+                slot.message = slot.message.withId(id);
+            }
+        }
+
+        List<CachedMessage> messages() {
+            List<CachedMessage> result = new ArrayList<>(messages.size());
+            messages.forEach(slot -> result.add(slot.message));
+            return result;
+        }
+    }
+}
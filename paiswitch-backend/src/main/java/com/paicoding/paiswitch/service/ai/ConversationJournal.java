@@ -0,0 +1,371 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.domain.converter.TextCompression;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind journal for ai_conversation rows. Messages are queued in memory and a single
+ * flusher thread writes them as multi-row INSERTs once a batch is full or the flush interval
+ * has passed since its first message, so chat requests never wait on the database. The same
+ * transaction upserts the batch's per-session totals into the ai_session read model.
+ * <p>
+ * Until its batch is committed a message stays visible through {@link #pending}. Commits and
+ * reads done through {@link #read} are mutually exclusive, so a reader sees every message
+ * exactly once: either in the table or still pending. When the queue is full the caller
+ * writes its message synchronously instead of dropping it. The queue is drained on shutdown.
+ * <p>
+ * Listeners registered with {@link #onFlushed} receive each committed batch together with
+ * the ids the database generated for it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationJournal {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO ai_conversation (user_id, session_id, role, content, tokens_used, model_used, created_at) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 7;
+    private static final String SESSION_UPSERT =
+            "INSERT INTO ai_session (user_id, session_id, title, started_at, last_message_at, message_count, last_provider) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+                    + "title = COALESCE(title, VALUES(title)), "
+                    + "started_at = COALESCE(started_at, VALUES(started_at)), "
+                    + "last_message_at = GREATEST(last_message_at, VALUES(last_message_at)), "
+                    + "message_count = message_count + VALUES(message_count), "
+                    + "last_provider = COALESCE(VALUES(last_provider), last_provider)";
+    private static final int TITLE_LENGTH = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiChatProperties properties;
+    private final PlatformTransactionManager transactionManager;
+
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final Map<SessionKey, ConcurrentLinkedQueue<PendingMessage>> unflushed = new ConcurrentHashMap<>();
+    private final List<BiConsumer<List<PendingMessage>, List<Long>>> flushListeners = new CopyOnWriteArrayList<>();
+    private BlockingQueue<PendingMessage> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(properties.getJournal().getCapacity());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        flusher = new Thread(this::flushLoop, "conversation-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        int batchSize = properties.getJournal().getBatchSize();
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            write(remaining.subList(from, Math.min(remaining.size(), from + batchSize)));
+        }
+        log.info("Conversation journal stopped, drained {} messages", remaining.size());
+    }
+
+    public PendingMessage append(Long userId, String sessionId, String role, String content) {
+        return append(userId, sessionId, role, content, null, null, null);
+    }
+
+    public PendingMessage append(Long userId, String sessionId, String role, String content,
+                       String providerCode, Integer tokensUsed, String modelUsed) {
+        PendingMessage message = new PendingMessage(userId, sessionId, role, content, providerCode,
+                tokensUsed, modelUsed, LocalDateTime.now());
+        unflushed.computeIfAbsent(new SessionKey(userId, sessionId), key -> new ConcurrentLinkedQueue<>()).add(message);
+        if (!running || !queue.offer(message)) {
+            log.warn("Conversation journal full or stopped, writing message for session {} synchronously", sessionId);
+            try {
+                write(List.of(message));
+            } catch (RuntimeException e) {
+                forget(List.of(message));
+                throw e;
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Runs a database read so that no batch commits while it is in progress; combine it with
+     * {@link #pending} inside the supplier for a consistent view.
+     */
+    public <T> T read(Supplier<T> databaseRead) {
+        commitLock.readLock().lock();
+        try {
+            return databaseRead.get();
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Called on the writing thread after each commit with the batch and its generated ids, in
+     * batch order, before the batch stops being pending. Runs under the commit lock, so it must
+     * not call {@link #read}. Not called when the driver does not return one id per row.
+     */
+    public void onFlushed(BiConsumer<List<PendingMessage>, List<Long>> listener) {
+        flushListeners.add(listener);
+    }
+
+    public List<PendingMessage> pending(Long userId, String sessionId) {
+        ConcurrentLinkedQueue<PendingMessage> messages = unflushed.get(new SessionKey(userId, sessionId));
+        return messages == null ? List.of() : List.copyOf(messages);
+    }
+
+    /**
+     * Pending messages of all the user's sessions, keyed by session id.
+     */
+    public Map<String, List<PendingMessage>> pending(Long userId) {
+        Map<String, List<PendingMessage>> result = new HashMap<>();
+        unflushed.forEach((key, messages) -> {
+            if (key.userId().equals(userId)) {
+                result.put(key.sessionId(), List.copyOf(messages));
+            }
+        });
+        return result;
+    }
+
+    public Optional<PendingMessage> latestPending(Long userId) {
+        return unflushed.entrySet().stream()
+                .filter(entry -> entry.getKey().userId().equals(userId))
+                .flatMap(entry -> entry.getValue().stream())
+                .max(Comparator.comparing(PendingMessage::createdAt));
+    }
+
+    private void flushLoop() {
+        AiChatProperties.Journal config = properties.getJournal();
+        long intervalNanos = config.getFlushInterval().toNanos();
+        while (running) {
+            List<PendingMessage> batch = new ArrayList<>(config.getBatchSize());
+            try {
+                PendingMessage first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + intervalNanos;
+                while (batch.size() < config.getBatchSize()) {
+                    queue.drainTo(batch, config.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= config.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    write(batch);
+                } catch (Exception e) {
+                    log.error("Failed to flush {} conversation messages, retrying synchronously: {}", batch.size(), e.getMessage(), e);
+                    batch.forEach(message -> writeQuietly(List.of(message)));
+                }
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (INSERT_ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[batch.size() * COLUMNS];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage message = batch.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+            int offset = i * COLUMNS;
+            args[offset] = message.userId();
+            args[offset + 1] = message.sessionId();
+            args[offset + 2] = message.role();
+            args[offset + 3] = TextCompression.encode(message.content());
+            args[offset + 4] = message.tokensUsed();
+            args[offset + 5] = message.modelUsed();
+            args[offset + 6] = Timestamp.valueOf(message.createdAt());
+        }
+
+        String insertSql = sql.toString();
+        List<Object[]> sessionArgs = sessionTotals(batch);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        commitLock.writeLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(new BatchInsert(insertSql, args), keyHolder);
+                jdbcTemplate.batchUpdate(SESSION_UPSERT, sessionArgs);
+            });
+            notifyFlushed(batch, keyHolder.getKeyList());
+            removeUnflushed(batch);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        log.debug("Flushed {} conversation messages", batch.size());
+    }
+
+    private void notifyFlushed(List<PendingMessage> batch, List<Map<String, Object>> keys) {
+        if (flushListeners.isEmpty()) {
+            return;
+        }
+        if (keys.size() != batch.size()) {
+            log.debug("Got {} generated ids for {} conversation messages, not reporting them", keys.size(), batch.size());
+            return;
+        }
+        List<Long> ids = new ArrayList<>(keys.size());
+        for (Map<String, Object> key : keys) {
+            Object id = key.isEmpty() ? null : key.values().iterator().next();
+            if (!(id instanceof Number number)) {
+                return;
+            }
+            ids.add(number.longValue());
+        }
+        for (BiConsumer<List<PendingMessage>, List<Long>> listener : flushListeners) {
+            try {
+                listener.accept(batch, ids);
+            } catch (RuntimeException e) {
+                log.warn("Conversation flush listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One ai_session upsert per session in the batch: message count, oldest and newest
+     * timestamp, last provider that replied and, for a new session, its first user message as
+     * the title.
+     */
+    private List<Object[]> sessionTotals(List<PendingMessage> batch) {
+        Map<SessionKey, Object[]> totals = new LinkedHashMap<>();
+        for (PendingMessage message : batch) {
+            Object[] row = totals.computeIfAbsent(new SessionKey(message.userId(), message.sessionId()),
+                    key -> new Object[]{key.userId(), key.sessionId(), null, null, null, 0, null});
+            if (row[2] == null && "user".equals(message.role())) {
+                row[2] = title(message.content());
+            }
+            Timestamp createdAt = Timestamp.valueOf(message.createdAt());
+            if (row[3] == null || createdAt.before((Timestamp) row[3])) {
+                row[3] = createdAt;
+            }
+            if (row[4] == null || createdAt.after((Timestamp) row[4])) {
+                row[4] = createdAt;
+            }
+            row[5] = (Integer) row[5] + 1;
+            if (message.providerCode() != null) {
+                row[6] = message.providerCode();
+            }
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    static String title(String content) {
+        if (content == null) {
+            return null;
+        }
+        String title = content.strip();
+        if (title.length() <= TITLE_LENGTH) {
+            return title;
+        }
+        int end = title.offsetByCodePoints(0, title.codePointCount(0, TITLE_LENGTH));
+        return title.substring(0, end);
+    }
+
+    private void writeQuietly(List<PendingMessage> batch) {
+        try {
+            write(batch);
+        } catch (Exception e) {
+            log.error("Dropping conversation message for session {}: {}", batch.get(0).sessionId(), e.getMessage());
+            forget(batch);
+        }
+    }
+
+    private void forget(List<PendingMessage> batch) {
+        commitLock.writeLock().lock();
+        try {
+            removeUnflushed(batch);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    private void removeUnflushed(List<PendingMessage> batch) {
+        for (PendingMessage message : batch) {
+            unflushed.computeIfPresent(new SessionKey(message.userId(), message.sessionId()), (key, messages) -> {
+                messages.remove(message);
+                return messages.isEmpty() ? null : messages;
+            });
+        }
+    }
+
+    /** Multi-row INSERT that returns the generated ids. */
+    record BatchInsert(String sql, Object[] args) implements PreparedStatementCreator, SqlProvider {
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            new ArgumentPreparedStatementSetter(args).setValues(statement);
+            return statement;
+        }
+
+        @Override
+        public String getSql() {
+            return sql;
+        }
+    }
+
+    public record PendingMessage(Long userId, String sessionId, String role, String content, String providerCode,
+                                 Integer tokensUsed, String modelUsed, LocalDateTime createdAt) {}
+
+    private record SessionKey(Long userId, String sessionId) {}
+}
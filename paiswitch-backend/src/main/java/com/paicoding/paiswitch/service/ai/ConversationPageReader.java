@@ -0,0 +1,47 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.RetentionProperties;
+import com.paicoding.paiswitch.domain.entity.AiConversation;
+import com.paicoding.paiswitch.domain.entity.AiSession;
+import com.paicoding.paiswitch.repository.AiConversationRepository;
+import com.paicoding.paiswitch.repository.AiSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keyset pages of a session's messages, newest first, bounded on created_at so MySQL only
+ * reads the monthly partitions the session spans. The lower bound is the session's first
+ * message from ai_session, or the start of the retention window for a session that has not
+ * been flushed yet.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConversationPageReader {
+
+    private final AiConversationRepository conversationRepository;
+    private final AiSessionRepository sessionRepository;
+    private final RetentionProperties retentionProperties;
+
+    public List<AiConversation> newest(Long userId, String sessionId, int limit) {
+        return conversationRepository.findNewestPage(userId, sessionId, from(userId, sessionId),
+                PageRequest.of(0, limit));
+    }
+
+    /** Messages strictly older than the (createdAt, id) cursor. */
+    public List<AiConversation> before(Long userId, String sessionId, LocalDateTime createdAt, Long id, int limit) {
+        return conversationRepository.findPageBefore(userId, sessionId, from(userId, sessionId), createdAt, id,
+                PageRequest.of(0, limit));
+    }
+
+    private LocalDateTime from(Long userId, String sessionId) {
+        LocalDateTime since = retentionProperties.conversationSince();
+        return sessionRepository.findByUserIdAndSessionId(userId, sessionId)
+                .map(AiSession::getStartedAt)
+                .filter(startedAt -> startedAt.isAfter(since))
+                .orElse(since);
+    }
+}
@@ -0,0 +1,317 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.event.ProviderCatalogChangedEvent;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves "switch to X" prompts without calling a model. Provider codes, names, model names
+ * and user-defined aliases of every active provider, together with a multilingual switch
+ * intent lexicon, are compiled into one {@link AliasAutomaton} that is matched in a single
+ * pass over the prompt. The automaton is rebuilt whenever the provider catalog changes.
+ * <p>
+ * A provider is only taken as the target when it directly follows a switch intent
+ * ("切换到 deepseek") or the to-marker of a "from X to Y" phrase; anything looser is left to
+ * the model, since a wrong quick switch happens without confirmation.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderAliasIndex {
+
+    /** Switch intent phrases that may appear anywhere in the prompt, right before the target. */
+    private static final List<String> INTENT_TERMS = List.of(
+            // zh-CN / zh-TW
+            "切换", "切到", "换成", "换到", "换为", "改成", "改为", "改用", "转到", "切換", "換成", "換到", "改為",
+            // en
+            "switch to", "change to", "change model to", "swap to",
+            // ja / ko
+            "切り替え", "に変更", "전환", "바꿔"
+    );
+
+    /** Phrases that only signal a switch at the very start of the prompt ("用 deepseek"). */
+    private static final List<String> PREFIX_INTENT_TERMS = List.of("用", "使用", "换", "use");
+
+    /** Switch intents naming the current provider: "switch from X to Y". */
+    private static final List<String> SWITCH_FROM_TERMS = List.of("switch from", "change from", "swap from");
+
+    /** Mark the provider after them as the one being left ("从 claude 切换到 deepseek"). */
+    private static final List<String> FROM_TERMS = List.of("from", "从", "從");
+
+    /** Introduce the target after an intent or a from-provider. */
+    private static final List<String> TO_TERMS = List.of("to", "到", "成", "为", "為");
+
+    /** Words allowed between an intent and its target ("切换模型到 deepseek", "switch to the kimi model"). */
+    private static final List<String> FILLER_TERMS = List.of("the", "model", "模型", "一下");
+
+    /** Separators allowed between an intent and its target; sentence punctuation is not one of them. */
+    private static final String SEPARATORS = "\"'`“”‘’「」:：";
+
+    private final ProviderRegistry providerRegistry;
+
+    private volatile AliasAutomaton<Term> automaton = AliasAutomaton.build(Map.of());
+    private volatile Set<String> providerCodes = Set.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProviderCatalogChanged(ProviderCatalogChangedEvent event) {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        List<ModelProvider> providers = providerRegistry.activeProviders();
+
+        Map<String, Term> terms = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        Set<String> codes = new HashSet<>();
+        for (ModelProvider provider : providers) {
+            codes.add(provider.getCode().toLowerCase(Locale.ROOT));
+        }
+        for (ModelProvider provider : providers) {
+            for (String alias : aliasesOf(provider)) {
+                String key = alias.toLowerCase(Locale.ROOT);
+                Term term = new Term(provider.getCode(), TermKind.PROVIDER, isAsciiWord(key));
+                Term existing = terms.putIfAbsent(key, term);
+                if (existing != null && !existing.providerCode().equals(provider.getCode())) {
+                    // A provider's own code always wins; any other clash makes the alias unusable.
+                    if (codes.contains(key)) {
+                        terms.put(key, new Term(findCode(providers, key), TermKind.PROVIDER, term.asciiWord()));
+                    } else {
+                        ambiguous.add(key);
+                    }
+                }
+            }
+        }
+        ambiguous.forEach(terms::remove);
+        addMarkers(terms, INTENT_TERMS, TermKind.INTENT);
+        addMarkers(terms, PREFIX_INTENT_TERMS, TermKind.PREFIX_INTENT);
+        addMarkers(terms, SWITCH_FROM_TERMS, TermKind.SWITCH_FROM);
+        addMarkers(terms, FROM_TERMS, TermKind.FROM);
+        addMarkers(terms, TO_TERMS, TermKind.TO);
+        addMarkers(terms, FILLER_TERMS, TermKind.FILLER);
+
+        this.automaton = AliasAutomaton.build(terms);
+        this.providerCodes = Set.copyOf(codes);
+        log.info("Rebuilt provider alias index: {} providers, {} terms, {} ambiguous aliases dropped",
+                providers.size(), terms.size(), ambiguous.size());
+    }
+
+    /**
+     * Provider code the prompt explicitly asks to switch to, or {@code null} when there is no
+     * switch intent or the target is not clear (the prompt then goes to the model).
+     */
+    public String matchSwitchCommand(String prompt) {
+        if (prompt == null || prompt.isBlank()) {
+            return null;
+        }
+        int promptStart = 0;
+        while (promptStart < prompt.length() && Character.isWhitespace(prompt.charAt(promptStart))) {
+            promptStart++;
+        }
+
+        boolean hasIntent = false;
+        List<AliasAutomaton.Match<Term>> providerMatches = new ArrayList<>();
+        Map<Integer, AliasAutomaton.Match<Term>> markersByEnd = new HashMap<>();
+        for (AliasAutomaton.Match<Term> match : automaton.findAll(prompt)) {
+            Term term = match.value();
+            if (term.asciiWord() && !isWordBoundary(prompt, match)) {
+                continue;
+            }
+            if (term.kind() == TermKind.PROVIDER) {
+                providerMatches.add(match);
+                continue;
+            }
+            if (term.kind() == TermKind.PREFIX_INTENT && match.start() != promptStart) {
+                continue;
+            }
+            hasIntent |= term.kind() == TermKind.INTENT || term.kind() == TermKind.PREFIX_INTENT
+                    || term.kind() == TermKind.SWITCH_FROM;
+            markersByEnd.merge(match.end(), match, ProviderAliasIndex::longer);
+        }
+        if (!hasIntent || providerMatches.isEmpty()) {
+            return null;
+        }
+
+        List<AliasAutomaton.Match<Term>> targets = longestNonOverlapping(providerMatches);
+        Map<Integer, AliasAutomaton.Match<Term>> termsByEnd = new HashMap<>(markersByEnd);
+        targets.forEach(target -> termsByEnd.merge(target.end(), target, ProviderAliasIndex::longer));
+        for (AliasAutomaton.Match<Term> target : targets) {
+            if (isSwitchTarget(prompt, target, termsByEnd)) {
+                return target.value().providerCode();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A provider is the target when an intent comes right before it, or a to-marker that itself
+     * follows an intent or the provider being switched away from.
+     */
+    private boolean isSwitchTarget(String prompt, AliasAutomaton.Match<Term> provider,
+                                   Map<Integer, AliasAutomaton.Match<Term>> termsByEnd) {
+        AliasAutomaton.Match<Term> before = termBefore(prompt, provider.start(), termsByEnd);
+        if (before == null) {
+            return false;
+        }
+        TermKind kind = before.value().kind();
+        if (kind == TermKind.INTENT || kind == TermKind.PREFIX_INTENT) {
+            return true;
+        }
+        if (kind != TermKind.TO) {
+            return false;
+        }
+        AliasAutomaton.Match<Term> beforeTo = termBefore(prompt, before.start(), termsByEnd);
+        if (beforeTo == null) {
+            return false;
+        }
+        TermKind beforeToKind = beforeTo.value().kind();
+        if (beforeToKind == TermKind.INTENT) {
+            return true;
+        }
+        if (beforeToKind != TermKind.PROVIDER) {
+            return false;
+        }
+        AliasAutomaton.Match<Term> beforeSource = termBefore(prompt, beforeTo.start(), termsByEnd);
+        return beforeSource != null && (beforeSource.value().kind() == TermKind.FROM
+                || beforeSource.value().kind() == TermKind.SWITCH_FROM);
+    }
+
+    /**
+     * The term ending right before {@code position}, skipping whitespace, quotes, colons and
+     * filler words; {@code null} when anything else is in between.
+     */
+    private AliasAutomaton.Match<Term> termBefore(String prompt, int position,
+                                                  Map<Integer, AliasAutomaton.Match<Term>> termsByEnd) {
+        int end = position;
+        while (true) {
+            while (end > 0 && isSeparator(prompt.charAt(end - 1))) {
+                end--;
+            }
+            AliasAutomaton.Match<Term> term = termsByEnd.get(end);
+            if (term == null || term.value().kind() != TermKind.FILLER) {
+                return term;
+            }
+            end = term.start();
+        }
+    }
+
+    private static AliasAutomaton.Match<Term> longer(AliasAutomaton.Match<Term> a, AliasAutomaton.Match<Term> b) {
+        return b.length() > a.length() ? b : a;
+    }
+
+    private boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || SEPARATORS.indexOf(c) >= 0;
+    }
+
+    private void addMarkers(Map<String, Term> terms, List<String> phrases, TermKind kind) {
+        for (String phrase : phrases) {
+            terms.putIfAbsent(phrase, new Term(null, kind, isAsciiWord(phrase)));
+        }
+    }
+
+    /**
+     * Maps a provider reference from a tool call ("DeepSeek", "智谱", "glm-4.5") to a provider
+     * code. Unknown values are returned lower-cased so the switch reports them as not found.
+     */
+    public String resolveProviderCode(String rawProvider) {
+        if (rawProvider == null || rawProvider.isBlank()) {
+            return null;
+        }
+        String normalized = rawProvider.trim().toLowerCase(Locale.ROOT);
+        if (providerCodes.contains(normalized)) {
+            return normalized;
+        }
+        return automaton.findAll(normalized).stream()
+                .filter(match -> match.value().providerCode() != null)
+                .max(Comparator.comparingInt(AliasAutomaton.Match::length))
+                .map(match -> match.value().providerCode())
+                .orElse(normalized);
+    }
+
+    private List<String> aliasesOf(ModelProvider provider) {
+        List<String> aliases = new ArrayList<>();
+        aliases.add(provider.getCode());
+        aliases.add(provider.getName());
+        aliases.add(provider.getModelName());
+        aliases.add(provider.getModelNameSmall());
+        if (provider.getAliases() != null) {
+            aliases.addAll(List.of(provider.getAliases().split(",")));
+        }
+        return aliases.stream()
+                .filter(alias -> alias != null && !alias.isBlank())
+                .map(String::trim)
+                .distinct()
+                .toList();
+    }
+
+    private String findCode(List<ModelProvider> providers, String lowerCaseCode) {
+        return providers.stream()
+                .map(ModelProvider::getCode)
+                .filter(code -> code.toLowerCase(Locale.ROOT).equals(lowerCaseCode))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * Leftmost-longest selection, so "anthropic/claude-sonnet-4" is not also read as "claude".
+     */
+    private List<AliasAutomaton.Match<Term>> longestNonOverlapping(List<AliasAutomaton.Match<Term>> matches) {
+        List<AliasAutomaton.Match<Term>> sorted = new ArrayList<>(matches);
+        sorted.sort(Comparator.<AliasAutomaton.Match<Term>>comparingInt(AliasAutomaton.Match::start)
+                .thenComparing(Comparator.<AliasAutomaton.Match<Term>>comparingInt(AliasAutomaton.Match::length).reversed()));
+        List<AliasAutomaton.Match<Term>> selected = new ArrayList<>();
+        int coveredUntil = -1;
+        for (AliasAutomaton.Match<Term> match : sorted) {
+            if (match.start() >= coveredUntil) {
+                selected.add(match);
+                coveredUntil = match.end();
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Latin aliases must not be glued to other letters ("ds" inside "needs"); digits after an
+     * alias are fine ("claude3"). CJK aliases need no boundary.
+     */
+    private boolean isWordBoundary(String text, AliasAutomaton.Match<Term> match) {
+        boolean startOk = match.start() == 0 || !isAsciiLetterOrDigit(text.charAt(match.start() - 1));
+        boolean endOk = match.end() == text.length() || !isAsciiLetter(text.charAt(match.end()));
+        return startOk && endOk;
+    }
+
+    private boolean isAsciiWord(String term) {
+        return !term.isEmpty() && isAsciiLetterOrDigit(term.charAt(0));
+    }
+
+    private boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private enum TermKind { PROVIDER, INTENT, PREFIX_INTENT, SWITCH_FROM, FROM, TO, FILLER }
+
+    private record Term(String providerCode, TermKind kind, boolean asciiWord) {}
+}
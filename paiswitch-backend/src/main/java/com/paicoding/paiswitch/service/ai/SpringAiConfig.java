@@ -1,5 +1,7 @@
 package com.paicoding.paiswitch.service.ai;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import com.paicoding.paiswitch.domain.dto.SwitchDto;
 import com.paicoding.paiswitch.service.SwitchService;
 import org.springframework.context.annotation.Bean;
@@ -11,12 +13,27 @@ import java.util.function.Function;
 @Configuration
 public class SpringAiConfig {
 
-    public record SwitchModelRequest(Long userId, String providerCode, String clientInfo) {}
+    public static final String SWITCH_MODEL_FUNCTION = "switchModel";
+
+    public static final String SWITCH_MODEL_DESCRIPTION =
+            "Switch to a specified AI model provider. Use this when the user wants to change or switch to a different AI model.";
+
+    public static final String PROVIDER_CODE_DESCRIPTION =
+            "Code of the provider to switch to, e.g. claude, deepseek, zhipu, openrouter";
+
+    /**
+     * Only {@code providerCode} is filled in by the model; userId and clientInfo are bound
+     * by the server and kept out of the tool schema.
+     */
+    public record SwitchModelRequest(
+            @JsonIgnore Long userId,
+            @JsonPropertyDescription(PROVIDER_CODE_DESCRIPTION) String providerCode,
+            @JsonIgnore String clientInfo) {}
 
     public record SwitchModelResult(boolean success, String message, String currentProvider) {}
 
-    @Bean
-    @Description("Switch to a specified AI model provider. Use this when the user wants to change or switch to a different AI model.")
+    @Bean(SWITCH_MODEL_FUNCTION)
+    @Description(SWITCH_MODEL_DESCRIPTION)
     public Function<SwitchModelRequest, SwitchModelResult> switchModel(SwitchService switchService) {
         return request -> {
             SwitchDto.SwitchResult result = switchService.switchToProvider(
@@ -0,0 +1,25 @@
+package com.paicoding.paiswitch.service.ai;
+
+/**
+ * Token usage reported by the upstream model for one reply.
+ */
+public record TokenUsage(long promptTokens, long completionTokens, String model) {
+
+    public long totalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    /**
+     * Streamed replies report usage piecemeal (input tokens first, output tokens at the end),
+     * so keep the largest value seen for each part.
+     */
+    public TokenUsage merge(TokenUsage other) {
+        if (other == null) {
+            return this;
+        }
+        return new TokenUsage(
+                Math.max(promptTokens, other.promptTokens),
+                Math.max(completionTokens, other.completionTokens),
+                other.model != null ? other.model : model);
+    }
+}
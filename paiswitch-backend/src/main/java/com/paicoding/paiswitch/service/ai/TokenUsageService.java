@@ -0,0 +1,177 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.domain.dto.UsageDto;
+import com.paicoding.paiswitch.domain.entity.AiUsageHourly;
+import com.paicoding.paiswitch.repository.AiUsageHourlyRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token usage per user, provider, model and hour. Chat turns only bump in-memory counters;
+ * a scheduled job adds the deltas to ai_usage_hourly, which is what the usage endpoint reads,
+ * so nothing ever aggregates over ai_conversation.
+ * <p>
+ * Each counter is taken with {@code getAndSet(0)}, so an increment racing a flush lands in
+ * either this flush or the next one. A bucket is removed only once it is older than the
+ * previous hour; a chat turn that picked its key just before the hour rolled over can still
+ * add to the previous hour's bucket, which therefore stays in the map for one more hour.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenUsageService {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO ai_usage_hourly (user_id, bucket_start, provider_code, model, request_count, prompt_tokens, completion_tokens, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON DUPLICATE KEY UPDATE
+                request_count = request_count + VALUES(request_count),
+                prompt_tokens = prompt_tokens + VALUES(prompt_tokens),
+                completion_tokens = completion_tokens + VALUES(completion_tokens),
+                updated_at = CURRENT_TIMESTAMP
+            """;
+
+    private final AiUsageHourlyRepository usageRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<BucketKey, Counters> counters = new ConcurrentHashMap<>();
+
+    public void record(Long userId, String providerCode, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        String model = usage.model() == null || usage.model().isBlank() ? "unknown" : usage.model();
+        BucketKey key = new BucketKey(userId, currentBucket(), providerCode, model);
+        Counters bucket = counters.computeIfAbsent(key, k -> new Counters());
+        bucket.requests.incrementAndGet();
+        bucket.promptTokens.addAndGet(usage.promptTokens());
+        bucket.completionTokens.addAndGet(usage.completionTokens());
+    }
+
+    @Scheduled(fixedDelayString = "${ai-chat.usage.flush-interval-ms:60000}")
+    public void flush() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        LocalDateTime retireBefore = currentBucket().minusHours(1);
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<BucketKey, Counters> entry : counters.entrySet()) {
+            BucketKey key = entry.getKey();
+            Counters bucket = entry.getValue();
+            if (key.bucketStart().isBefore(retireBefore)) {
+                counters.remove(key, bucket);
+            }
+            long requests = bucket.requests.getAndSet(0);
+            long promptTokens = bucket.promptTokens.getAndSet(0);
+            long completionTokens = bucket.completionTokens.getAndSet(0);
+            if (requests == 0 && promptTokens == 0 && completionTokens == 0) {
+                continue;
+            }
+            rows.add(new Object[]{key.userId(), Timestamp.valueOf(key.bucketStart()), key.providerCode(), key.model(),
+                    requests, promptTokens, completionTokens});
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+            log.debug("Flushed {} token usage buckets", rows.size());
+        } catch (Exception e) {
+            log.error("Failed to flush {} token usage buckets: {}", rows.size(), e.getMessage(), e);
+            rows.forEach(this::restore);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Hourly usage between {@code from} (inclusive) and {@code to} (exclusive), including
+     * counts that have not been flushed yet.
+     */
+    public UsageDto.UsageSummary getUsage(Long userId, LocalDateTime from, LocalDateTime to) {
+        Map<BucketKey, UsageDto.UsageBucket> buckets = new LinkedHashMap<>();
+        for (AiUsageHourly row : usageRepository
+                .findByUserIdAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStartAsc(userId, from, to)) {
+            buckets.put(new BucketKey(userId, row.getBucketStart(), row.getProviderCode(), row.getModel()),
+                    toBucket(row.getBucketStart(), row.getProviderCode(), row.getModel(),
+                            row.getRequestCount(), row.getPromptTokens(), row.getCompletionTokens()));
+        }
+        counters.forEach((key, bucket) -> {
+            if (!key.userId().equals(userId) || key.bucketStart().isBefore(from) || !key.bucketStart().isBefore(to)) {
+                return;
+            }
+            UsageDto.UsageBucket pending = toBucket(key.bucketStart(), key.providerCode(), key.model(),
+                    bucket.requests.get(), bucket.promptTokens.get(), bucket.completionTokens.get());
+            buckets.merge(key, pending, (stored, extra) -> toBucket(stored.getBucketStart(), stored.getProviderCode(), stored.getModel(),
+                    stored.getRequestCount() + extra.getRequestCount(),
+                    stored.getPromptTokens() + extra.getPromptTokens(),
+                    stored.getCompletionTokens() + extra.getCompletionTokens()));
+        });
+
+        List<UsageDto.UsageBucket> sorted = new ArrayList<>(buckets.values());
+        sorted.sort(Comparator.comparing(UsageDto.UsageBucket::getBucketStart));
+        long requests = sorted.stream().mapToLong(UsageDto.UsageBucket::getRequestCount).sum();
+        long promptTokens = sorted.stream().mapToLong(UsageDto.UsageBucket::getPromptTokens).sum();
+        long completionTokens = sorted.stream().mapToLong(UsageDto.UsageBucket::getCompletionTokens).sum();
+        return UsageDto.UsageSummary.builder()
+                .from(from)
+                .to(to)
+                .requestCount(requests)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .totalTokens(promptTokens + completionTokens)
+                .buckets(sorted)
+                .build();
+    }
+
+    private void restore(Object[] row) {
+        BucketKey key = new BucketKey((Long) row[0], ((Timestamp) row[1]).toLocalDateTime(), (String) row[2], (String) row[3]);
+        Counters bucket = counters.computeIfAbsent(key, k -> new Counters());
+        bucket.requests.addAndGet((Long) row[4]);
+        bucket.promptTokens.addAndGet((Long) row[5]);
+        bucket.completionTokens.addAndGet((Long) row[6]);
+    }
+
+    private UsageDto.UsageBucket toBucket(LocalDateTime bucketStart, String providerCode, String model,
+                                          long requests, long promptTokens, long completionTokens) {
+        return UsageDto.UsageBucket.builder()
+                .bucketStart(bucketStart)
+                .providerCode(providerCode)
+                .model(model)
+                .requestCount(requests)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .totalTokens(promptTokens + completionTokens)
+                .build();
+    }
+
+    private LocalDateTime currentBucket() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private record BucketKey(Long userId, LocalDateTime bucketStart, String providerCode, String model) {}
+
+    private static final class Counters {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong promptTokens = new AtomicLong();
+        private final AtomicLong completionTokens = new AtomicLong();
+    }
+}
@@ -0,0 +1,379 @@
+package com.paicoding.paiswitch.service.benchmark;
+
+import com.paicoding.paiswitch.common.config.BenchmarkProperties;
+import com.paicoding.paiswitch.common.exception.BusinessException;
+import com.paicoding.paiswitch.common.response.ResponseCode;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.domain.entity.ApiKey;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.entity.ProviderBenchmark;
+import com.paicoding.paiswitch.repository.ApiKeyRepository;
+import com.paicoding.paiswitch.repository.ProviderBenchmarkRepository;
+import com.paicoding.paiswitch.service.EncryptionService;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import com.paicoding.paiswitch.service.ai.TokenUsage;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import com.paicoding.paiswitch.service.wire.WireChatRequest;
+import com.paicoding.paiswitch.service.wire.WireEndpoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark of one provider and model: a fixed prompt set is sent at stepped
+ * concurrency levels, one level after another, through the same {@link ProviderWireClient}
+ * path as connection tests. Each level yields one provider_benchmark row with its latency
+ * distribution, 429/5xx counts and aggregate tokens per second. Runs execute in the
+ * background on the HTTP client's threads; a level that fails too often ends the run, so a
+ * struggling provider is not pushed harder.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProviderBenchmarkService {
+
+    /** Short, mixed prompts with replies of similar length across providers. */
+    static final List<String> PROMPTS = List.of(
+            "用三句话解释 Java 中 volatile 关键字的作用。",
+            "Write a Java method that reverses a singly linked list, without comments.",
+            "List three differences between TCP and UDP as short bullet points.",
+            "把这句话翻译成英文：缓存失效和命名是计算机科学中最难的两件事。",
+            "Explain in two sentences what a database index is.",
+            "给出一个 Git 命令，用于查看最近 5 次提交的简要日志，并说明各参数含义。");
+
+    private final BenchmarkProperties properties;
+    private final ProviderRegistry providerRegistry;
+    private final ApiKeyRepository apiKeyRepository;
+    private final EncryptionService encryptionService;
+    private final ProviderWireClient providerWireClient;
+    private final ProviderBenchmarkRepository benchmarkRepository;
+
+    private final Map<String, RunningRun> running = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a run with the user's key for the provider and returns it at once; the levels
+     * appear in {@link #getRun} as they finish.
+     */
+    public ProviderDto.BenchmarkRun start(Long userId, String code, ProviderDto.BenchmarkRequest request) {
+        ModelProvider provider = providerRegistry.findByCode(code)
+                .orElseThrow(() -> new BusinessException(ResponseCode.PROVIDER_NOT_FOUND));
+        if (!Boolean.TRUE.equals(provider.getIsActive())) {
+            throw new BusinessException(ResponseCode.PROVIDER_INACTIVE);
+        }
+        String modelName = request.getModelName() != null && !request.getModelName().isBlank()
+                ? request.getModelName().trim()
+                : provider.getModelName();
+        if (provider.getBaseUrl() == null || provider.getBaseUrl().isBlank() || modelName == null || modelName.isBlank()) {
+            throw new BusinessException(ResponseCode.BAD_REQUEST, "Base URL 或模型名称未配置");
+        }
+        ApiKey key = apiKeyRepository.findByUserIdAndProviderId(userId, provider.getId())
+                .orElseThrow(() -> new BusinessException(ResponseCode.API_KEY_NOT_FOUND));
+
+        List<Integer> levels = levels(request.getLevels());
+        int maxTokens = request.getMaxTokens() != null && request.getMaxTokens() > 0
+                ? Math.min(request.getMaxTokens(), properties.getMaxMaxTokens())
+                : properties.getMaxTokens();
+        WireEndpoint endpoint = providerWireClient.endpoint(provider.getCode(), provider.getBaseUrl(),
+                encryptionService.decrypt(key.getEncryptedKey()));
+
+        ProviderDto.BenchmarkRun run = ProviderDto.BenchmarkRun.builder()
+                .runId(UUID.randomUUID().toString())
+                .providerCode(provider.getCode())
+                .providerName(provider.getName())
+                .modelName(modelName)
+                .running(true)
+                .startedAt(LocalDateTime.now())
+                .levels(List.of())
+                .build();
+        synchronized (running) {
+            if (running.size() >= Math.max(1, properties.getMaxRunningRuns())) {
+                throw new BusinessException(ResponseCode.CONFLICT, "已有基准测试在运行，请稍后再试");
+            }
+            running.put(run.getRunId(), new RunningRun(userId, run));
+        }
+        log.info("Starting benchmark {} of {}/{} by user {} at levels {}", run.getRunId(), provider.getCode(),
+                modelName, userId, levels);
+
+        CompletableFuture<Boolean> chain = CompletableFuture.completedFuture(true);
+        for (int concurrency : levels) {
+            int requests = requestsFor(concurrency, request.getRequestsPerLevel());
+            chain = chain.thenCompose(proceed -> !proceed
+                    ? CompletableFuture.completedFuture(false)
+                    : new Level(endpoint, modelName, maxTokens, concurrency, requests).start()
+                            .thenApply(level -> saveLevel(userId, run, level)));
+        }
+        chain.whenComplete((ignored, error) -> {
+            running.remove(run.getRunId());
+            if (error != null) {
+                log.warn("Benchmark {} of {} failed: {}", run.getRunId(), provider.getCode(), error.getMessage());
+            } else {
+                log.info("Benchmark {} of {}/{} finished", run.getRunId(), provider.getCode(), modelName);
+            }
+        });
+        return run;
+    }
+
+    /**
+     * A run the user started; runs of other users are reported as not found.
+     */
+    public ProviderDto.BenchmarkRun getRun(Long userId, String runId) {
+        List<ProviderBenchmark> rows = benchmarkRepository.findByRunIdAndUserIdOrderByConcurrency(runId, userId);
+        RunningRun active = running.get(runId);
+        boolean activeOwned = active != null && active.userId().equals(userId);
+        if (rows.isEmpty()) {
+            if (!activeOwned) {
+                throw new BusinessException(ResponseCode.NOT_FOUND, "Benchmark run not found");
+            }
+            return active.run();
+        }
+        return toRun(rows, activeOwned);
+    }
+
+    /**
+     * Latest run of every provider and model the user benchmarked within the comparison
+     * window, side by side, ordered by provider sort order and model. Optionally limited to
+     * some providers.
+     */
+    public List<ProviderDto.BenchmarkRun> compare(Long userId, List<String> providerCodes) {
+        LocalDateTime since = LocalDateTime.now().minus(properties.getCompareWindow());
+        Map<String, String> latestRunByTarget = new LinkedHashMap<>();
+        Map<String, List<ProviderBenchmark>> rowsByRun = new LinkedHashMap<>();
+        for (ProviderBenchmark row : benchmarkRepository
+                .findByUserIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(userId, since)) {
+            if (providerCodes != null && !providerCodes.isEmpty() && !providerCodes.contains(row.getProviderCode())) {
+                continue;
+            }
+            String target = row.getProviderCode() + '\n' + row.getModelName();
+            String runId = latestRunByTarget.computeIfAbsent(target, ignored -> row.getRunId());
+            if (runId.equals(row.getRunId())) {
+                rowsByRun.computeIfAbsent(runId, ignored -> new ArrayList<>()).add(row);
+            }
+        }
+
+        List<ProviderDto.BenchmarkRun> runs = new ArrayList<>();
+        rowsByRun.forEach((runId, rows) -> {
+            rows.sort(Comparator.comparing(ProviderBenchmark::getConcurrency));
+            runs.add(toRun(rows, running.containsKey(runId)));
+        });
+        runs.sort(Comparator.comparing((ProviderDto.BenchmarkRun run) -> providerRegistry.findByCode(run.getProviderCode())
+                        .map(ModelProvider::getSortOrder).orElse(Integer.MAX_VALUE))
+                .thenComparing(ProviderDto.BenchmarkRun::getProviderCode)
+                .thenComparing(ProviderDto.BenchmarkRun::getModelName));
+        return runs;
+    }
+
+    private boolean saveLevel(Long userId, ProviderDto.BenchmarkRun run, LevelResult level) {
+        ProviderBenchmark row = ProviderBenchmark.builder()
+                .runId(run.getRunId())
+                .userId(userId)
+                .providerCode(run.getProviderCode())
+                .modelName(run.getModelName())
+                .concurrency(level.concurrency())
+                .requestCount(level.requests())
+                .successCount(level.successes())
+                .rateLimitedCount(level.rateLimited())
+                .serverErrorCount(level.serverErrors())
+                .otherErrorCount(level.otherErrors())
+                .p50Ms(percentile(level.latencies(), 0.50))
+                .p90Ms(percentile(level.latencies(), 0.90))
+                .p99Ms(percentile(level.latencies(), 0.99))
+                .maxMs(level.latencies().length == 0 ? null : level.latencies()[level.latencies().length - 1])
+                .outputTokens(level.outputTokens())
+                .durationMs(level.durationMs())
+                .tokensPerSecond(perSecond(level.outputTokens(), level.durationMs()))
+                .requestsPerSecond(perSecond(level.successes(), level.durationMs()))
+                .build();
+        benchmarkRepository.save(row);
+        running.computeIfPresent(run.getRunId(), (runId, current) -> {
+            List<ProviderDto.BenchmarkLevel> levels = new ArrayList<>(current.run().getLevels());
+            levels.add(toLevel(row));
+            current.run().setLevels(List.copyOf(levels));
+            return current;
+        });
+
+        int failures = level.requests() - level.successes();
+        log.info("Benchmark {} level {}: {}/{} ok, 429={}, 5xx={}, p50={}ms, p99={}ms, {} tokens/s", run.getRunId(),
+                level.concurrency(), level.successes(), level.requests(), level.rateLimited(), level.serverErrors(),
+                row.getP50Ms(), row.getP99Ms(), row.getTokensPerSecond());
+        return failures < level.requests() * properties.getAbortErrorRate();
+    }
+
+    private List<Integer> levels(List<Integer> requested) {
+        List<Integer> source = requested != null && !requested.isEmpty() ? requested : properties.getLevels();
+        List<Integer> levels = new ArrayList<>();
+        for (Integer level : source) {
+            if (level != null && level > 0) {
+                int bounded = Math.min(level, properties.getMaxConcurrency());
+                if (!levels.contains(bounded)) {
+                    levels.add(bounded);
+                }
+            }
+        }
+        if (levels.isEmpty()) {
+            throw new BusinessException(ResponseCode.BAD_REQUEST, "并发级别必须为正整数");
+        }
+        return levels;
+    }
+
+    private int requestsFor(int concurrency, Integer requested) {
+        int requests = requested != null && requested > 0 ? requested : properties.getRequestsPerLevel();
+        return Math.min(Math.max(requests, concurrency * 2), properties.getMaxRequestsPerLevel());
+    }
+
+    private ProviderDto.BenchmarkRun toRun(List<ProviderBenchmark> rows, boolean stillRunning) {
+        ProviderBenchmark first = rows.get(0);
+        return ProviderDto.BenchmarkRun.builder()
+                .runId(first.getRunId())
+                .providerCode(first.getProviderCode())
+                .providerName(providerRegistry.findByCode(first.getProviderCode())
+                        .map(ModelProvider::getName).orElse(first.getProviderCode()))
+                .modelName(first.getModelName())
+                .running(stillRunning)
+                .startedAt(rows.stream().map(ProviderBenchmark::getCreatedAt).min(Comparator.naturalOrder()).orElse(null))
+                .levels(rows.stream().map(ProviderBenchmarkService::toLevel).toList())
+                .build();
+    }
+
+    private static ProviderDto.BenchmarkLevel toLevel(ProviderBenchmark row) {
+        return ProviderDto.BenchmarkLevel.builder()
+                .concurrency(row.getConcurrency())
+                .requestCount(row.getRequestCount())
+                .successCount(row.getSuccessCount())
+                .rateLimitedCount(row.getRateLimitedCount())
+                .serverErrorCount(row.getServerErrorCount())
+                .otherErrorCount(row.getOtherErrorCount())
+                .p50Ms(row.getP50Ms())
+                .p90Ms(row.getP90Ms())
+                .p99Ms(row.getP99Ms())
+                .maxMs(row.getMaxMs())
+                .outputTokens(row.getOutputTokens())
+                .durationMs(row.getDurationMs())
+                .tokensPerSecond(row.getTokensPerSecond())
+                .requestsPerSecond(row.getRequestsPerSecond())
+                .build();
+    }
+
+    /** Nearest-rank percentile of sorted latencies, or null without any. */
+    static Long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private static Double perSecond(long count, long durationMs) {
+        return durationMs <= 0 ? null : count * 1000.0 / durationMs;
+    }
+
+    private record RunningRun(Long userId, ProviderDto.BenchmarkRun run) {}
+
+    /**
+     * @param latencies successful requests only, sorted ascending
+     */
+    private record LevelResult(int concurrency, int requests, int successes, int rateLimited, int serverErrors,
+                               int otherErrors, long[] latencies, long outputTokens, long durationMs) {}
+
+    /**
+     * One concurrency level. Every finished request starts the next one, so exactly
+     * {@code concurrency} requests are in flight until the last ones drain.
+     */
+    private final class Level {
+
+        private final WireEndpoint endpoint;
+        private final String modelName;
+        private final int maxTokens;
+        private final int concurrency;
+        private final int requests;
+        private final CompletableFuture<LevelResult> done = new CompletableFuture<>();
+        private final long[] latencies;
+        private int launched;
+        private int finished;
+        private int successes;
+        private int rateLimited;
+        private int serverErrors;
+        private int otherErrors;
+        private long outputTokens;
+        private long startNanos;
+
+        private Level(WireEndpoint endpoint, String modelName, int maxTokens, int concurrency, int requests) {
+            this.endpoint = endpoint;
+            this.modelName = modelName;
+            this.maxTokens = maxTokens;
+            this.concurrency = concurrency;
+            this.requests = requests;
+            this.latencies = new long[requests];
+        }
+
+        CompletableFuture<LevelResult> start() {
+            startNanos = System.nanoTime();
+            for (int i = 0; i < concurrency; i++) {
+                launchNext();
+            }
+            return done;
+        }
+
+        private void launchNext() {
+            int index;
+            synchronized (this) {
+                if (launched == requests) {
+                    return;
+                }
+                index = launched++;
+            }
+            WireChatRequest request = WireChatRequest.builder()
+                    .model(modelName)
+                    .maxTokens(maxTokens)
+                    .userPrompt(PROMPTS.get(index % PROMPTS.size()))
+                    .includeUsage(true)
+                    .build();
+            long sentNanos = System.nanoTime();
+            CompletableFuture<HttpResponse<String>> response;
+            try {
+                response = providerWireClient.send(endpoint, request);
+            } catch (Exception e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((result, error) -> {
+                record(result, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentNanos));
+                launchNext();
+            });
+        }
+
+        private synchronized void record(HttpResponse<String> response, Throwable error, long latencyMs) {
+            int status = error == null ? response.statusCode() : -1;
+            if (status >= 200 && status < 300) {
+                latencies[successes++] = latencyMs;
+                TokenUsage usage = endpoint.dialect().decodeReply(response.body()).usage();
+                if (usage != null) {
+                    outputTokens += usage.completionTokens();
+                }
+            } else if (status == 429) {
+                rateLimited++;
+            } else if (status >= 500) {
+                serverErrors++;
+            } else {
+                otherErrors++;
+            }
+            if (++finished == requests) {
+                long[] sorted = Arrays.copyOf(latencies, successes);
+                Arrays.sort(sorted);
+                done.complete(new LevelResult(concurrency, requests, successes, rateLimited, serverErrors, otherErrors,
+                        sorted, outputTokens, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+            }
+        }
+    }
+}
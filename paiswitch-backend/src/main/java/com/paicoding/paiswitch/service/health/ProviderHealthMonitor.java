@@ -0,0 +1,218 @@
+package com.paicoding.paiswitch.service.health;
+
+import com.paicoding.paiswitch.common.config.ProviderHealthProperties;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.entity.ProviderHealth;
+import com.paicoding.paiswitch.domain.enums.HealthStatus;
+import com.paicoding.paiswitch.repository.ProviderHealthRepository;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling latency percentiles and error rate per provider, fed by the background prober and
+ * by connection tests. Reads are served from memory only, so health checks never cause an
+ * upstream call. The summary is written to provider_health periodically; after a restart the
+ * stored summary is reported until the provider has fresh samples.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderHealthMonitor {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO provider_health (provider_code, sample_count, error_count, p50_ms, p95_ms, p99_ms,
+                                         last_probe_at, last_success_at, last_error, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON DUPLICATE KEY UPDATE
+                sample_count = VALUES(sample_count),
+                error_count = VALUES(error_count),
+                p50_ms = VALUES(p50_ms),
+                p95_ms = VALUES(p95_ms),
+                p99_ms = VALUES(p99_ms),
+                last_probe_at = VALUES(last_probe_at),
+                last_success_at = VALUES(last_success_at),
+                last_error = VALUES(last_error),
+                updated_at = CURRENT_TIMESTAMP
+            """;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final ProviderHealthProperties properties;
+    private final ProviderHealthRepository healthRepository;
+    private final ProviderRegistry providerRegistry;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, ProviderState> states = new ConcurrentHashMap<>();
+    /** Summaries read at startup, reported until the provider is measured again. */
+    private final Map<String, ProviderHealth> stored = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            healthRepository.findAll().forEach(row -> stored.put(row.getProviderCode(), row));
+        } catch (Exception e) {
+            log.warn("Failed to load stored provider health: {}", e.getMessage());
+        }
+    }
+
+    public void recordSuccess(String providerCode, long latencyMs) {
+        ProviderState state = state(providerCode);
+        long now = System.currentTimeMillis();
+        state.window.recordSuccess(latencyMs, now);
+        state.lastProbeAt = LocalDateTime.now();
+        state.lastSuccessAt = state.lastProbeAt;
+        state.dirty = true;
+    }
+
+    public void recordError(String providerCode, String message) {
+        ProviderState state = state(providerCode);
+        state.window.recordError(System.currentTimeMillis());
+        state.lastProbeAt = LocalDateTime.now();
+        state.lastError = message == null || message.length() <= MAX_ERROR_LENGTH
+                ? message
+                : message.substring(0, MAX_ERROR_LENGTH);
+        state.dirty = true;
+    }
+
+    /**
+     * Whether a failed probe or test says something about the provider rather than the key or
+     * request it was sent with. Only these may be recorded with {@link #recordError}: the window
+     * is shared by all users, so a 401 from one user's revoked key must not mark the provider
+     * down for everyone else.
+     */
+    public static boolean isProviderFault(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /** Transport failures (connect, DNS, timeout, reset) count; failures to build the request do not. */
+    public static boolean isProviderFault(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof IOException;
+    }
+
+    /** Health of every active provider, in catalog order. */
+    public List<ProviderDto.HealthInfo> health() {
+        List<ProviderDto.HealthInfo> result = new ArrayList<>();
+        for (ModelProvider provider : providerRegistry.activeProviders()) {
+            result.add(health(provider));
+        }
+        return result;
+    }
+
+    public Optional<ProviderDto.HealthInfo> health(String providerCode) {
+        return providerRegistry.findByCode(providerCode).map(this::health);
+    }
+
+    @Scheduled(fixedDelayString = "${provider-health.persist-interval-ms:60000}")
+    public void persist() {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        states.forEach((providerCode, state) -> {
+            if (!state.dirty) {
+                return;
+            }
+            state.dirty = false;
+            RollingLatencyWindow.Stats stats = state.window.stats(now);
+            rows.add(new Object[]{providerCode, stats.samples(), stats.errors(), stats.p50Ms(), stats.p95Ms(),
+                    stats.p99Ms(), timestamp(state.lastProbeAt), timestamp(state.lastSuccessAt), state.lastError});
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+            log.debug("Persisted health of {} providers", rows.size());
+        } catch (Exception e) {
+            log.warn("Failed to persist provider health: {}", e.getMessage());
+            rows.forEach(row -> Optional.ofNullable(states.get((String) row[0])).ifPresent(state -> state.dirty = true));
+        }
+    }
+
+    @PreDestroy
+    public void persistOnShutdown() {
+        persist();
+    }
+
+    private ProviderDto.HealthInfo health(ModelProvider provider) {
+        ProviderState state = states.get(provider.getCode());
+        if (state == null) {
+            ProviderHealth row = stored.get(provider.getCode());
+            if (row != null) {
+                return toInfo(provider, new RollingLatencyWindow.Stats(row.getSampleCount(), row.getErrorCount(),
+                        row.getP50Ms(), row.getP95Ms(), row.getP99Ms()),
+                        row.getLastProbeAt(), row.getLastSuccessAt(), row.getLastError(), true);
+            }
+            return toInfo(provider, new RollingLatencyWindow.Stats(0, 0, null, null, null), null, null, null, false);
+        }
+        return toInfo(provider, state.window.stats(System.currentTimeMillis()),
+                state.lastProbeAt, state.lastSuccessAt, state.lastError, false);
+    }
+
+    private ProviderDto.HealthInfo toInfo(ModelProvider provider, RollingLatencyWindow.Stats stats,
+                                          LocalDateTime lastProbeAt, LocalDateTime lastSuccessAt, String lastError,
+                                          boolean fromStore) {
+        return ProviderDto.HealthInfo.builder()
+                .providerCode(provider.getCode())
+                .providerName(provider.getName())
+                .status(status(stats))
+                .p50Ms(stats.p50Ms())
+                .p95Ms(stats.p95Ms())
+                .p99Ms(stats.p99Ms())
+                .sampleCount(stats.samples())
+                .errorCount(stats.errors())
+                .errorRate(stats.errorRate())
+                .lastProbeAt(lastProbeAt)
+                .lastSuccessAt(lastSuccessAt)
+                .lastError(lastError)
+                .stale(fromStore)
+                .build();
+    }
+
+    private HealthStatus status(RollingLatencyWindow.Stats stats) {
+        if (stats.samples() + stats.errors() == 0) {
+            return HealthStatus.UNKNOWN;
+        }
+        if (stats.errorRate() >= properties.getDownErrorRate()) {
+            return HealthStatus.DOWN;
+        }
+        return stats.errors() > 0 ? HealthStatus.DEGRADED : HealthStatus.UP;
+    }
+
+    private ProviderState state(String providerCode) {
+        return states.computeIfAbsent(providerCode, code -> new ProviderState(
+                new RollingLatencyWindow(properties.getWindow().toMillis(), properties.getWindowSlices())));
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+
+    private static final class ProviderState {
+        private final RollingLatencyWindow window;
+        private volatile LocalDateTime lastProbeAt;
+        private volatile LocalDateTime lastSuccessAt;
+        private volatile String lastError;
+        private volatile boolean dirty;
+
+        private ProviderState(RollingLatencyWindow window) {
+            this.window = window;
+        }
+    }
+}
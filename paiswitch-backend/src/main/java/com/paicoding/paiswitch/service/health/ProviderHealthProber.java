@@ -0,0 +1,110 @@
+package com.paicoding.paiswitch.service.health;
+
+import com.paicoding.paiswitch.common.config.ProviderHealthProperties;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.service.ProbeKeyResolver;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import com.paicoding.paiswitch.service.wire.WireChatRequest;
+import com.paicoding.paiswitch.service.wire.WireEndpoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends a one-token request to every active provider that has a probe key (see
+ * {@link ProbeKeyResolver}), each on its own cadence of {@code probe-interval} plus random
+ * jitter, and feeds the outcome to {@link ProviderHealthMonitor}. At most one probe per
+ * provider is in flight; probes run on the HTTP client's executor, the scheduler thread only
+ * decides which are due.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderHealthProber {
+
+    private final ProviderHealthProperties properties;
+    private final ProviderRegistry providerRegistry;
+    private final ProbeKeyResolver probeKeyResolver;
+    private final ProviderWireClient providerWireClient;
+    private final ProviderHealthMonitor healthMonitor;
+
+    private final Map<String, Long> nextProbeAt = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Scheduled(initialDelayString = "${provider-health.probe-initial-delay-ms:30000}",
+               fixedDelayString = "${provider-health.probe-tick-ms:5000}")
+    public void probeDueProviders() {
+        if (!properties.isProbeEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (ModelProvider provider : providerRegistry.activeProviders()) {
+            if (now < nextProbeAt.getOrDefault(provider.getCode(), 0L) || !inFlight.add(provider.getCode())) {
+                continue;
+            }
+            nextProbeAt.put(provider.getCode(), now + properties.getProbeInterval().toMillis() + jitterMillis());
+            try {
+                probe(provider);
+            } catch (Exception e) {
+                inFlight.remove(provider.getCode());
+                log.warn("Failed to start health probe for {}: {}", provider.getCode(), e.getMessage());
+            }
+        }
+    }
+
+    private void probe(ModelProvider provider) {
+        if (provider.getBaseUrl() == null || provider.getModelName() == null) {
+            inFlight.remove(provider.getCode());
+            return;
+        }
+        Optional<String> key = probeKeyResolver.keyFor(provider);
+        if (key.isEmpty()) {
+            inFlight.remove(provider.getCode());
+            return;
+        }
+        WireEndpoint endpoint = providerWireClient.endpoint(provider.getCode(), provider.getBaseUrl(), key.get());
+        WireChatRequest request = WireChatRequest.builder()
+                .model(provider.getModelName())
+                .maxTokens(1)
+                .userPrompt("Hi")
+                .build();
+        long start = System.nanoTime();
+        providerWireClient.send(endpoint, request).whenComplete((response, error) -> {
+            try {
+                long latencyMs = (System.nanoTime() - start) / 1_000_000;
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (ProviderHealthMonitor.isProviderFault(cause)) {
+                        healthMonitor.recordError(provider.getCode(), cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                    } else {
+                        log.debug("Health probe for {} failed locally: {}", provider.getCode(), cause.getMessage());
+                    }
+                } else if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                    healthMonitor.recordSuccess(provider.getCode(), latencyMs);
+                } else if (ProviderHealthMonitor.isProviderFault(response.statusCode())) {
+                    healthMonitor.recordError(provider.getCode(), "HTTP " + response.statusCode() + ": "
+                            + providerWireClient.extractErrorMessage(response.body()));
+                } else {
+                    log.warn("Health probe for {} rejected with HTTP {}, check its probe key",
+                            provider.getCode(), response.statusCode());
+                }
+            } finally {
+                inFlight.remove(provider.getCode());
+            }
+        });
+    }
+
+    private long jitterMillis() {
+        long jitter = properties.getProbeJitter().toMillis();
+        return jitter <= 0 ? 0 : ThreadLocalRandom.current().nextLong(jitter + 1);
+    }
+}
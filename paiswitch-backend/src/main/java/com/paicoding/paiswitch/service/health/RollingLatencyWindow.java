@@ -0,0 +1,123 @@
+package com.paicoding.paiswitch.service.health;
+
+import java.util.Arrays;
+
+/**
+ * Latency histogram and error count over a sliding time window. The window is split into
+ * slices that are reused round-robin, so old samples drop out a slice at a time without
+ * keeping individual measurements. Latencies go into log-scaled buckets, each 20% wider
+ * than the previous one, which bounds the percentile error to the bucket width.
+ */
+public final class RollingLatencyWindow {
+
+    private static final double GROWTH = 1.2;
+    private static final long MAX_LATENCY_MS = 300_000;
+    private static final int BUCKETS = bucketOf(MAX_LATENCY_MS) + 1;
+
+    private final long sliceMillis;
+    private final Slice[] slices;
+
+    public RollingLatencyWindow(long windowMillis, int sliceCount) {
+        int count = Math.max(1, sliceCount);
+        this.sliceMillis = Math.max(1, windowMillis / count);
+        this.slices = new Slice[count];
+        for (int i = 0; i < count; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    public synchronized void recordSuccess(long latencyMs, long nowMillis) {
+        Slice slice = current(nowMillis);
+        slice.buckets[bucketOf(latencyMs)]++;
+        slice.samples++;
+    }
+
+    public synchronized void recordError(long nowMillis) {
+        current(nowMillis).errors++;
+    }
+
+    public synchronized Stats stats(long nowMillis) {
+        long oldestEpoch = nowMillis / sliceMillis - slices.length + 1;
+        long[] buckets = new long[BUCKETS];
+        long samples = 0;
+        long errors = 0;
+        for (Slice slice : slices) {
+            if (slice.epoch < oldestEpoch) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += slice.buckets[i];
+            }
+            samples += slice.samples;
+            errors += slice.errors;
+        }
+        return new Stats(samples, errors,
+                percentile(buckets, samples, 0.50), percentile(buckets, samples, 0.95), percentile(buckets, samples, 0.99));
+    }
+
+    private Slice current(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        Slice slice = slices[(int) (epoch % slices.length)];
+        if (slice.epoch != epoch) {
+            slice.reset(epoch);
+        }
+        return slice;
+    }
+
+    /** Upper bound of the bucket holding the given rank, or null without samples. */
+    private static Long percentile(long[] buckets, long samples, double quantile) {
+        if (samples == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * samples));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return MAX_LATENCY_MS;
+    }
+
+    static int bucketOf(long latencyMs) {
+        if (latencyMs <= 1) {
+            return 0;
+        }
+        long clamped = Math.min(latencyMs, MAX_LATENCY_MS);
+        int bucket = Math.max(0, (int) Math.floor(Math.log(clamped) / Math.log(GROWTH)) - 1);
+        while (upperBound(bucket) < clamped) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    static long upperBound(int bucket) {
+        return Math.min(MAX_LATENCY_MS, (long) Math.ceil(Math.pow(GROWTH, bucket)));
+    }
+
+    /**
+     * @param p50Ms null when there were no successful samples in the window
+     */
+    public record Stats(long samples, long errors, Long p50Ms, Long p95Ms, Long p99Ms) {
+
+        public double errorRate() {
+            long total = samples + errors;
+            return total == 0 ? 0 : (double) errors / total;
+        }
+    }
+
+    private static final class Slice {
+        private final long[] buckets = new long[BUCKETS];
+        private long epoch = Long.MIN_VALUE;
+        private long samples;
+        private long errors;
+
+        void reset(long epoch) {
+            Arrays.fill(buckets, 0);
+            this.epoch = epoch;
+            samples = 0;
+            errors = 0;
+        }
+    }
+}
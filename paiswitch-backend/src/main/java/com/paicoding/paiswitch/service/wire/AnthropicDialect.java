@@ -0,0 +1,190 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paicoding.paiswitch.service.ai.TokenUsage;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Anthropic Messages API dialect, also spoken by the Anthropic-compatible endpoints of
+ * DeepSeek, Zhipu and similar providers.
+ */
+public class AnthropicDialect extends WireDialect {
+
+    public static final String API_VERSION = "2023-06-01";
+
+    public AnthropicDialect(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public String resolveUrl(String normalizedBaseUrl) {
+        if (normalizedBaseUrl.endsWith("/v1/messages") || normalizedBaseUrl.endsWith("/messages")) {
+            return normalizedBaseUrl;
+        }
+        if (normalizedBaseUrl.endsWith("/v1")) {
+            return normalizedBaseUrl + "/messages";
+        }
+        return normalizedBaseUrl + "/v1/messages";
+    }
+
+    @Override
+    public String modelsUrl(String normalizedBaseUrl) {
+        String base = normalizedBaseUrl;
+        if (base.endsWith("/messages")) {
+            base = base.substring(0, base.length() - "/messages".length());
+        }
+        return (base.endsWith("/v1") ? base : base + "/v1") + "/models?limit=1000";
+    }
+
+    @Override
+    public void authorize(HttpRequest.Builder request, String apiKey) {
+        request.header("x-api-key", apiKey)
+                .header("anthropic-version", API_VERSION);
+    }
+
+    @Override
+    public String authDescription() {
+        return "x-api-key";
+    }
+
+    @Override
+    protected void writeRequest(JsonGenerator generator, WireChatRequest request) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("model", request.model());
+        generator.writeNumberField("max_tokens", request.maxTokens());
+        if (request.temperature() != null) {
+            generator.writeNumberField("temperature", request.temperature());
+        }
+        if (request.stream()) {
+            generator.writeBooleanField("stream", true);
+        }
+        if (request.system() != null) {
+            generator.writeFieldName("system");
+            if (request.context() != null) {
+                generator.writeStartArray();
+                generator.writeStartObject();
+                generator.writeStringField("type", "text");
+                generator.writeFieldName("text");
+                generator.writeString(request.system());
+                generator.writeEndObject();
+                generator.writeStartObject();
+                generator.writeStringField("type", "text");
+                generator.writeStringField("text", request.context());
+                generator.writeEndObject();
+                generator.writeEndArray();
+            } else {
+                generator.writeString(request.system());
+            }
+        }
+
+        generator.writeArrayFieldStart("messages");
+        if (request.history() != null) {
+            for (int i = 0; i < request.history().size(); i++) {
+                Message message = request.history().get(i);
+                generator.writeStartObject();
+                generator.writeStringField("role", message.role());
+                if (request.cacheHistory() && i == request.history().size() - 1) {
+                    writeCachedContent(generator, message.content());
+                } else {
+                    generator.writeStringField("content", message.content());
+                }
+                generator.writeEndObject();
+            }
+        }
+        generator.writeStartObject();
+        generator.writeStringField("role", "user");
+        generator.writeStringField("content", request.userPrompt());
+        generator.writeEndObject();
+        generator.writeEndArray();
+
+        if (request.tools() != null && !request.tools().isEmpty()) {
+            generator.writeArrayFieldStart("tools");
+            for (Tool tool : request.tools()) {
+                generator.writeStartObject();
+                generator.writeStringField("name", tool.name());
+                generator.writeStringField("description", tool.description());
+                generator.writeFieldName("input_schema");
+                generator.writeTree(tool.parameters());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    protected Reply decodeReply(JsonNode root) {
+        StringBuilder text = new StringBuilder();
+        List<ToolCall> toolCalls = new ArrayList<>();
+        int index = 0;
+        for (JsonNode block : root.path("content")) {
+            String type = block.path("type").asText("");
+            if ("text".equals(type)) {
+                text.append(block.path("text").asText(""));
+            } else if ("tool_use".equals(type)) {
+                toolCalls.add(new ToolCall(index, text(block, "name"), block.path("input").toString()));
+            }
+            index++;
+        }
+        JsonNode usage = root.path("usage");
+        TokenUsage tokenUsage = usage.isObject()
+                ? new TokenUsage(usage.path("input_tokens").asLong(0), usage.path("output_tokens").asLong(0), text(root, "model"))
+                : null;
+        return new Reply(text.toString(), toolCalls, tokenUsage);
+    }
+
+    /**
+     * Messages API stream events: input usage on message_start, text and tool input JSON as
+     * content_block deltas, output usage on message_delta, and message_stop at the end.
+     */
+    @Override
+    protected StreamChunk decodeStreamChunk(JsonNode root) {
+        String type = root.path("type").asText("");
+        return switch (type) {
+            case "message_start" -> {
+                JsonNode message = root.path("message");
+                JsonNode usage = message.path("usage");
+                yield new StreamChunk(null, List.of(), false,
+                        new TokenUsage(usage.path("input_tokens").asLong(0), usage.path("output_tokens").asLong(0), text(message, "model")),
+                        null);
+            }
+            case "content_block_start" -> {
+                JsonNode block = root.path("content_block");
+                if (!"tool_use".equals(block.path("type").asText())) {
+                    yield null;
+                }
+                yield new StreamChunk(null, List.of(new ToolCall(root.path("index").asInt(0), text(block, "name"), null)),
+                        false, null, null);
+            }
+            case "content_block_delta" -> {
+                JsonNode delta = root.path("delta");
+                String deltaType = delta.path("type").asText("");
+                if ("text_delta".equals(deltaType)) {
+                    yield new StreamChunk(delta.path("text").asText(""), List.of(), false, null, null);
+                }
+                if ("input_json_delta".equals(deltaType)) {
+                    yield new StreamChunk(null,
+                            List.of(new ToolCall(root.path("index").asInt(0), null, delta.path("partial_json").asText(""))),
+                            false, null, null);
+                }
+                yield null;
+            }
+            case "message_delta" -> {
+                JsonNode usage = root.path("usage");
+                yield new StreamChunk(null, List.of(), false,
+                        usage.isObject() ? new TokenUsage(0, usage.path("output_tokens").asLong(0), null) : null,
+                        null);
+            }
+            case "message_stop" -> new StreamChunk(null, List.of(), true, null, null);
+            case "error" -> new StreamChunk(null, List.of(), true, null,
+                    root.path("error").path("message").asText("Unknown error"));
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,173 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paicoding.paiswitch.common.config.ProviderWireProperties;
+import com.paicoding.paiswitch.domain.dto.ExchangeDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last N upstream exchanges per provider for debugging.
+ * <p>
+ * Recording only stores references to the bytes and strings the call already produced, plus
+ * the masked API key. Redaction of user message content and truncation happen when a record
+ * is rendered: when the admin endpoint reads it or the DEBUG log line is actually written.
+ * Failed exchanges are always kept; successful ones are sampled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExchangeCapture {
+
+    private final ProviderWireProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public void record(WireEndpoint endpoint, byte[] requestBody, int status, String responseBody,
+                       long latencyMs, Throwable error) {
+        ProviderWireProperties.Capture config = properties.getCapture();
+        boolean failed = error != null || status < 200 || status >= 300;
+        if (!config.isEnabled() || (!failed && ThreadLocalRandom.current().nextDouble() >= config.getSampleRate())) {
+            return;
+        }
+        Exchange exchange = new Exchange(sequence.incrementAndGet(), LocalDateTime.now(), endpoint.providerCode(),
+                endpoint.uri().toString(), ProviderWireClient.maskApiKey(endpoint.apiKey()), requestBody, status, responseBody, latencyMs,
+                error == null ? null : error.toString());
+        rings.computeIfAbsent(endpoint.providerCode(), code -> new Ring(Math.max(1, config.getBufferSize())))
+                .add(exchange);
+        log.debug("Provider exchange {}", lazy(exchange));
+    }
+
+    /**
+     * Most recent first; all providers when {@code providerCode} is null.
+     */
+    public List<ExchangeDto.Exchange> recent(String providerCode) {
+        List<Exchange> exchanges = new ArrayList<>();
+        if (providerCode != null) {
+            Ring ring = rings.get(providerCode);
+            if (ring != null) {
+                ring.copyTo(exchanges);
+            }
+        } else {
+            rings.values().forEach(ring -> ring.copyTo(exchanges));
+        }
+        exchanges.sort(Comparator.comparingLong(Exchange::sequence).reversed());
+        return exchanges.stream().map(this::render).toList();
+    }
+
+    public void clear() {
+        rings.clear();
+    }
+
+    /** Rendered only if the log line is actually written. */
+    private Object lazy(Exchange exchange) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return render(exchange).toString();
+            }
+        };
+    }
+
+    private ExchangeDto.Exchange render(Exchange exchange) {
+        int maxChars = properties.getCapture().getMaxBodyChars();
+        return ExchangeDto.Exchange.builder()
+                .sequence(exchange.sequence())
+                .timestamp(exchange.timestamp())
+                .providerCode(exchange.providerCode())
+                .url(exchange.url())
+                .apiKey(exchange.apiKey())
+                .status(exchange.status())
+                .latencyMs(exchange.latencyMs())
+                .requestBody(truncate(redactRequest(exchange.requestBody()), maxChars))
+                .responseBody(truncate(exchange.responseBody(), maxChars))
+                .error(exchange.error())
+                .build();
+    }
+
+    /**
+     * Replaces conversation content (messages and any per-conversation system context) with
+     * its length. The leading system prompt and request parameters are kept.
+     */
+    private String redactRequest(byte[] body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            boolean leadingSystem = true;
+            for (JsonNode message : root.path("messages")) {
+                boolean system = "system".equals(message.path("role").asText());
+                if (message instanceof ObjectNode node && !(system && leadingSystem)) {
+                    node.put("content", redacted(node.path("content")));
+                }
+                leadingSystem = false;
+            }
+            JsonNode system = root.path("system");
+            for (int i = 1; i < system.size(); i++) {
+                if (system.get(i) instanceof ObjectNode block) {
+                    block.put("text", redacted(block.path("text")));
+                }
+            }
+            return objectMapper.writeValueAsString(root);
+        } catch (Exception e) {
+            return "[unparsable request, " + body.length + " bytes]";
+        }
+    }
+
+    private String redacted(JsonNode content) {
+        return "[redacted " + content.toString().length() + " chars]";
+    }
+
+    private String truncate(String value, int maxChars) {
+        if (value == null || value.length() <= maxChars) {
+            return value;
+        }
+        return value.substring(0, maxChars) + "...(truncated)";
+    }
+
+    private record Exchange(long sequence, LocalDateTime timestamp, String providerCode, String url, String apiKey,
+                            byte[] requestBody, int status, String responseBody, long latencyMs, String error) {}
+
+    /**
+     * Fixed-size overwrite-oldest buffer. Writers claim a slot with one atomic increment and
+     * never block each other; readers copy whatever is present.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Exchange> slots;
+        private final AtomicLong next = new AtomicLong();
+
+        private Ring(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+        }
+
+        void add(Exchange exchange) {
+            int slot = (int) (next.getAndIncrement() % slots.length());
+            slots.set(slot, exchange);
+        }
+
+        void copyTo(List<Exchange> target) {
+            for (int i = 0; i < slots.length(); i++) {
+                Exchange exchange = slots.get(i);
+                if (exchange != null) {
+                    target.add(exchange);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paicoding.paiswitch.service.ai.TokenUsage;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OpenAI chat-completions dialect, as spoken by OpenRouter.
+ */
+public class OpenAiDialect extends WireDialect {
+
+    public OpenAiDialect(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public String resolveUrl(String normalizedBaseUrl) {
+        if (normalizedBaseUrl.endsWith("/v1/chat/completions") || normalizedBaseUrl.endsWith("/chat/completions")) {
+            return normalizedBaseUrl;
+        }
+        if (normalizedBaseUrl.endsWith("/v1")) {
+            return normalizedBaseUrl + "/chat/completions";
+        }
+        return normalizedBaseUrl + "/v1/chat/completions";
+    }
+
+    @Override
+    public String modelsUrl(String normalizedBaseUrl) {
+        String base = normalizedBaseUrl;
+        if (base.endsWith("/chat/completions")) {
+            base = base.substring(0, base.length() - "/chat/completions".length());
+        }
+        return (base.endsWith("/v1") ? base : base + "/v1") + "/models";
+    }
+
+    @Override
+    public void authorize(HttpRequest.Builder request, String apiKey) {
+        request.header("Authorization", "Bearer " + apiKey);
+    }
+
+    @Override
+    public String authDescription() {
+        return "Authorization: Bearer";
+    }
+
+    @Override
+    protected void writeRequest(JsonGenerator generator, WireChatRequest request) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("model", request.model());
+        generator.writeNumberField("max_tokens", request.maxTokens());
+        if (request.temperature() != null) {
+            generator.writeNumberField("temperature", request.temperature());
+        }
+        if (request.stream()) {
+            generator.writeBooleanField("stream", true);
+        }
+
+        generator.writeArrayFieldStart("messages");
+        if (request.system() != null) {
+            generator.writeStartObject();
+            generator.writeStringField("role", "system");
+            generator.writeFieldName("content");
+            generator.writeString(request.system());
+            generator.writeEndObject();
+        }
+        if (request.context() != null) {
+            generator.writeStartObject();
+            generator.writeStringField("role", "system");
+            generator.writeStringField("content", request.context());
+            generator.writeEndObject();
+        }
+        if (request.history() != null) {
+            for (int i = 0; i < request.history().size(); i++) {
+                Message message = request.history().get(i);
+                generator.writeStartObject();
+                generator.writeStringField("role", message.role());
+                if (request.cacheHistory() && i == request.history().size() - 1) {
+                    writeCachedContent(generator, message.content());
+                } else {
+                    generator.writeStringField("content", message.content());
+                }
+                generator.writeEndObject();
+            }
+        }
+        generator.writeStartObject();
+        generator.writeStringField("role", "user");
+        generator.writeStringField("content", request.userPrompt());
+        generator.writeEndObject();
+        generator.writeEndArray();
+
+        if (request.tools() != null && !request.tools().isEmpty()) {
+            generator.writeArrayFieldStart("tools");
+            for (Tool tool : request.tools()) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "function");
+                generator.writeObjectFieldStart("function");
+                generator.writeStringField("name", tool.name());
+                generator.writeStringField("description", tool.description());
+                generator.writeFieldName("parameters");
+                generator.writeTree(tool.parameters());
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if (request.includeUsage()) {
+            generator.writeObjectFieldStart("usage");
+            generator.writeBooleanField("include", true);
+            generator.writeEndObject();
+        }
+        if (request.providerOrder() != null && !request.providerOrder().isEmpty()) {
+            generator.writeObjectFieldStart("provider");
+            generator.writeArrayFieldStart("order");
+            for (String provider : request.providerOrder()) {
+                generator.writeString(provider);
+            }
+            generator.writeEndArray();
+            generator.writeBooleanField("allow_fallbacks", true);
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    protected Reply decodeReply(JsonNode root) {
+        JsonNode message = root.path("choices").path(0).path("message");
+        List<ToolCall> toolCalls = new ArrayList<>();
+        int index = 0;
+        for (JsonNode toolCall : message.path("tool_calls")) {
+            JsonNode function = toolCall.path("function");
+            toolCalls.add(new ToolCall(index++, text(function, "name"), function.path("arguments").asText(null)));
+        }
+        return new Reply(content(message.path("content")), toolCalls, usage(root));
+    }
+
+    /**
+     * Tool call arguments arrive as fragments keyed by index; a finish_reason closes them.
+     * The usage block, when requested, comes on the last chunk only.
+     */
+    @Override
+    protected StreamChunk decodeStreamChunk(JsonNode root) {
+        if (root.hasNonNull("error")) {
+            JsonNode error = root.path("error");
+            return new StreamChunk(null, List.of(), true, null,
+                    error.path("message").isTextual() ? error.path("message").asText() : error.toString());
+        }
+        JsonNode choice = root.path("choices").path(0);
+        JsonNode delta = choice.path("delta");
+        JsonNode content = delta.path("content");
+        List<ToolCall> toolCalls = new ArrayList<>();
+        for (JsonNode toolCall : delta.path("tool_calls")) {
+            JsonNode function = toolCall.path("function");
+            JsonNode arguments = function.path("arguments");
+            toolCalls.add(new ToolCall(
+                    toolCall.path("index").asInt(0),
+                    text(function, "name"),
+                    arguments.isTextual() ? arguments.asText() : null));
+        }
+        return new StreamChunk(
+                content.isTextual() ? content.asText() : null,
+                toolCalls,
+                choice.hasNonNull("finish_reason"),
+                usage(root),
+                null);
+    }
+
+    private String content(JsonNode contentNode) {
+        if (contentNode.isTextual()) {
+            return contentNode.asText();
+        }
+        if (contentNode.isArray()) {
+            StringBuilder sb = new StringBuilder();
+            for (JsonNode item : contentNode) {
+                String text = item.path("text").asText("");
+                if (!text.isBlank()) {
+                    if (!sb.isEmpty()) {
+                        sb.append('\n');
+                    }
+                    sb.append(text);
+                }
+            }
+            return sb.toString();
+        }
+        return "";
+    }
+
+    private TokenUsage usage(JsonNode root) {
+        JsonNode usage = root.path("usage");
+        if (!usage.isObject()) {
+            return null;
+        }
+        return new TokenUsage(
+                usage.path("prompt_tokens").asLong(0),
+                usage.path("completion_tokens").asLong(0),
+                text(root, "model"));
+    }
+}
@@ -0,0 +1,291 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paicoding.paiswitch.common.config.ProviderWireProperties;
+import com.paicoding.paiswitch.common.exception.BusinessException;
+import com.paicoding.paiswitch.common.response.ResponseCode;
+import com.paicoding.paiswitch.service.OpenRouterRoutingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The one HTTP path to model providers. A single pooled HTTP/2 {@link HttpClient} serves
+ * connection tests, OpenRouter chat and (through {@code AnthropicApiFactory}) the Spring AI
+ * Anthropic clients, so connections and TLS sessions are reused across all of them.
+ * <p>
+ * Requests to OpenRouter get the learned provider order from {@link OpenRouterRoutingCache};
+ * a 404 "No allowed providers are available" teaches the cache and is retried once with the
+ * providers OpenRouter listed. Exchanges go to {@link ExchangeCapture} rather than to INFO
+ * logs, so bodies are only formatted when someone looks at them.
+ */
+@Slf4j
+@Component
+public class ProviderWireClient {
+
+    private final ProviderWireProperties properties;
+    private final OpenRouterRoutingCache openRouterRoutingCache;
+    private final ExchangeCapture exchangeCapture;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WireDialect anthropicDialect = new AnthropicDialect(objectMapper);
+    private final WireDialect openAiDialect = new OpenAiDialect(objectMapper);
+    private final HttpClient httpClient;
+
+    public ProviderWireClient(ProviderWireProperties properties, OpenRouterRoutingCache openRouterRoutingCache,
+                              ExchangeCapture exchangeCapture) {
+        this.properties = properties;
+        this.openRouterRoutingCache = openRouterRoutingCache;
+        this.exchangeCapture = exchangeCapture;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    public HttpClient httpClient() {
+        return httpClient;
+    }
+
+    public ProviderWireProperties properties() {
+        return properties;
+    }
+
+    public WireEndpoint endpoint(String providerCode, String baseUrl, String apiKey) {
+        String normalizedUrl = normalizeBaseUrl(baseUrl);
+        boolean openRouter = isOpenRouter(providerCode, normalizedUrl);
+        WireDialect dialect = openRouter ? openAiDialect : anthropicDialect;
+        return new WireEndpoint(providerCode, URI.create(dialect.resolveUrl(normalizedUrl)), dialect,
+                normalizeApiKey(apiKey), properties.timeoutFor(providerCode), openRouter);
+    }
+
+    /**
+     * Cancelling the returned future aborts the exchange in flight, so its connection is
+     * released at once instead of when the endpoint timeout expires.
+     */
+    public CompletableFuture<HttpResponse<String>> send(WireEndpoint endpoint, WireChatRequest request) {
+        WireChatRequest routed = withLearnedOrder(endpoint, request);
+        AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<>();
+        return abortOnCancel(inFlight, sendOnce(endpoint, routed, HttpResponse.BodyHandlers.ofString(), inFlight)
+                .thenCompose(response -> {
+                    List<String> availableProviders = fallbackProviders(endpoint, response.statusCode(), response.body());
+                    if (availableProviders.isEmpty()) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    WireChatRequest retry = relearn(request, availableProviders);
+                    return sendOnce(endpoint, retry, HttpResponse.BodyHandlers.ofString(), inFlight);
+                }));
+    }
+
+    /**
+     * Streaming variant of {@link #send}. The body is left unread except for a 404, which is
+     * consumed to decide on the routing retry; if no retry applies it fails with the upstream
+     * error message.
+     */
+    public CompletableFuture<HttpResponse<Stream<String>>> stream(WireEndpoint endpoint, WireChatRequest request) {
+        WireChatRequest routed = withLearnedOrder(endpoint, request);
+        AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<>();
+        return abortOnCancel(inFlight, sendOnce(endpoint, routed, HttpResponse.BodyHandlers.ofLines(), inFlight)
+                .thenCompose(response -> {
+                    if (response.statusCode() != 404) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    String body = collectBody(response);
+                    List<String> availableProviders = fallbackProviders(endpoint, response.statusCode(), body);
+                    if (availableProviders.isEmpty()) {
+                        throw new BusinessException(ResponseCode.AI_SERVICE_ERROR, "AI service error: " + extractErrorMessage(body));
+                    }
+                    return sendOnce(endpoint, relearn(request, availableProviders), HttpResponse.BodyHandlers.ofLines(),
+                            inFlight);
+                }));
+    }
+
+    /**
+     * Lists the endpoint's models. {@code etag} and {@code lastModified} from an earlier
+     * response make the request conditional, so an unchanged list comes back as 304.
+     */
+    public CompletableFuture<HttpResponse<String>> listModels(String providerCode, String baseUrl, String apiKey,
+                                                             String etag, String lastModified) {
+        String normalizedUrl = normalizeBaseUrl(baseUrl);
+        WireDialect dialect = isOpenRouter(providerCode, normalizedUrl) ? openAiDialect : anthropicDialect;
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(dialect.modelsUrl(normalizedUrl)))
+                .header("Accept", "application/json")
+                .GET()
+                .timeout(properties.timeoutFor(providerCode));
+        String normalizedKey = normalizeApiKey(apiKey);
+        if (!normalizedKey.isEmpty()) {
+            dialect.authorize(builder, normalizedKey);
+        }
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            builder.header("If-Modified-Since", lastModified);
+        }
+        return httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    public String collectBody(HttpResponse<Stream<String>> response) {
+        try (Stream<String> lines = response.body()) {
+            return lines.collect(Collectors.joining("\n"));
+        }
+    }
+
+    public String extractErrorMessage(String body) {
+        if (body == null || body.isBlank()) {
+            return "未知错误";
+        }
+        try {
+            JsonNode error = objectMapper.readTree(body).path("error");
+            if (error.path("message").isTextual()) {
+                return error.path("message").asText();
+            }
+            if (error.isTextual()) {
+                return error.asText();
+            }
+        } catch (Exception ignored) {
+        }
+        return truncate(body, 300);
+    }
+
+    public static boolean isOpenRouter(String providerCode, String baseUrl) {
+        if ("openrouter".equalsIgnoreCase(providerCode)) {
+            return true;
+        }
+        return baseUrl != null && baseUrl.toLowerCase().contains("openrouter.ai");
+    }
+
+    public static String normalizeBaseUrl(String baseUrl) {
+        String normalized = baseUrl == null ? "" : baseUrl.trim();
+        if (!normalized.startsWith("http://") && !normalized.startsWith("https://")) {
+            normalized = "https://" + normalized;
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    public static String normalizeApiKey(String apiKey) {
+        if (apiKey == null) {
+            return "";
+        }
+        String normalized = apiKey.trim();
+        if (normalized.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return normalized.substring(7).trim();
+        }
+        return normalized;
+    }
+
+    public static String maskApiKey(String apiKey) {
+        if (apiKey == null || apiKey.length() <= 8) {
+            return "***";
+        }
+        return apiKey.substring(0, 4) + "..." + apiKey.substring(apiKey.length() - 4);
+    }
+
+    /**
+     * Cancelling {@code result} also cancels the exchange last started through
+     * {@code inFlight}; the JDK client then aborts it and releases the connection.
+     */
+    private static <T> CompletableFuture<T> abortOnCancel(AtomicReference<CompletableFuture<?>> inFlight,
+                                                          CompletableFuture<T> result) {
+        result.whenComplete((value, error) -> {
+            CompletableFuture<?> exchange = inFlight.get();
+            if (result.isCancelled() && exchange != null) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> sendOnce(WireEndpoint endpoint, WireChatRequest request,
+                                                             HttpResponse.BodyHandler<T> bodyHandler,
+                                                             AtomicReference<CompletableFuture<?>> inFlight) {
+        byte[] body = endpoint.dialect().encode(request);
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(endpoint.uri())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .timeout(endpoint.timeout());
+        endpoint.dialect().authorize(builder, endpoint.apiKey());
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> exchange = httpClient.sendAsync(builder.build(), bodyHandler);
+        inFlight.set(exchange);
+        return exchange
+                .whenComplete((response, error) -> {
+                    long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    int status = response != null ? response.statusCode() : -1;
+                    if (error != null || status < 200 || status >= 300) {
+                        log.warn("Provider request failed: provider={}, url={}, status={}, latencyMs={}, error={}",
+                                endpoint.providerCode(), endpoint.uri(), status, latencyMs,
+                                error != null ? error.toString() : null);
+                    }
+                    // Streamed bodies are consumed by the caller and are not captured.
+                    String responseBody = response != null && response.body() instanceof String text ? text : null;
+                    exchangeCapture.record(endpoint, body, status, responseBody, latencyMs, error);
+                });
+    }
+
+    private WireChatRequest withLearnedOrder(WireEndpoint endpoint, WireChatRequest request) {
+        if (!endpoint.openRouter() || (request.providerOrder() != null && !request.providerOrder().isEmpty())) {
+            return request;
+        }
+        return request.toBuilder()
+                .providerOrder(openRouterRoutingCache.providerOrder(request.model()))
+                .build();
+    }
+
+    private WireChatRequest relearn(WireChatRequest request, List<String> availableProviders) {
+        openRouterRoutingCache.learn(request.model(), availableProviders);
+        log.info("Retry OpenRouter request for model {} with provider order {}", request.model(), availableProviders);
+        return request.toBuilder().providerOrder(availableProviders).build();
+    }
+
+    private List<String> fallbackProviders(WireEndpoint endpoint, int statusCode, String body) {
+        if (!endpoint.openRouter() || statusCode != 404 || body == null
+                || !body.contains("No allowed providers are available") || !body.contains("available_providers")) {
+            return List.of();
+        }
+        try {
+            JsonNode providersNode = objectMapper.readTree(body)
+                    .path("error")
+                    .path("metadata")
+                    .path("available_providers");
+            List<String> providers = new ArrayList<>();
+            for (JsonNode node : providersNode) {
+                String value = node.asText();
+                if (value != null && !value.isBlank()) {
+                    providers.add(value.trim().toLowerCase());
+                }
+            }
+            return providers;
+        } catch (Exception ignored) {
+            return List.of();
+        }
+    }
+
+    private static String truncate(String value, int maxLength) {
+        if (value == null) {
+            return "";
+        }
+        if (value.length() <= maxLength) {
+            return value;
+        }
+        return value.substring(0, maxLength) + "...(truncated)";
+    }
+}
@@ -0,0 +1,195 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.paicoding.paiswitch.service.ai.TokenUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Measures what an interactive client feels: connection setup, time to first byte and first
+ * token, and the generation rate of a streamed reply. The JDK client does not expose its
+ * connection phases, so DNS, TCP connect and TLS handshake are timed on a separate socket
+ * that is closed right after the handshake; the request itself goes through the shared
+ * client like every other provider call. Blocks the calling thread until the stream ends or
+ * the endpoint's timeout passes; a stalled stream is closed from a timer, since the request
+ * timeout only covers the wait for the response headers.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StreamingLatencyProbe {
+
+    private static final String FILLER =
+            "The build server compiles each module, runs the unit tests and publishes the artifacts to the repository. ";
+    private static final String INSTRUCTION =
+            "\n\nIgnore the text above. Count upwards from 1, separated by spaces, until you are stopped.";
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ProviderWireClient providerWireClient;
+
+    /**
+     * Prompt of roughly the given number of tokens that asks for a long, cheap reply.
+     */
+    public static String promptOfSize(int tokens) {
+        int repeats = Math.max(0, (tokens * CHARS_PER_TOKEN - INSTRUCTION.length()) / FILLER.length());
+        return FILLER.repeat(repeats) + INSTRUCTION.strip();
+    }
+
+    /**
+     * Request failures surface as a {@link java.util.concurrent.CompletionException}.
+     */
+    public Result measure(WireEndpoint endpoint, WireChatRequest request) {
+        ConnectionTimings setup = timeConnection(endpoint.uri(), providerWireClient.properties().getConnectTimeout());
+
+        long requestStart = System.nanoTime();
+        HttpResponse<Stream<String>> response = providerWireClient
+                .stream(endpoint, request.toBuilder().stream(true).includeUsage(true).build())
+                .join();
+        long ttfbMs = millisSince(requestStart);
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            return new Result(setup, response.statusCode(), providerWireClient.collectBody(response),
+                    ttfbMs, null, millisSince(requestStart), null, 0, null);
+        }
+
+        long deadline = requestStart + endpoint.timeout().toNanos();
+        long firstTokenNanos = 0;
+        long lastTokenNanos = 0;
+        long textChars = 0;
+        TokenUsage usage = null;
+        String streamError = null;
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CompletableFuture<Void> watchdog = new CompletableFuture<>();
+        try (Stream<String> lines = response.body()) {
+            watchdog.completeOnTimeout(null, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    .thenRun(() -> {
+                        timedOut.set(true);
+                        lines.close();
+                    });
+            Iterator<String> iterator = lines.iterator();
+            while (!timedOut.get() && iterator.hasNext()) {
+                WireDialect.StreamChunk chunk = endpoint.dialect().decodeStreamLine(iterator.next());
+                long now = System.nanoTime();
+                if (chunk != null) {
+                    if (chunk.error() != null) {
+                        streamError = chunk.error();
+                        break;
+                    }
+                    if (chunk.text() != null && !chunk.text().isEmpty()) {
+                        if (firstTokenNanos == 0) {
+                            firstTokenNanos = now;
+                        }
+                        lastTokenNanos = now;
+                        textChars += chunk.text().length();
+                    }
+                    usage = usage == null ? chunk.usage() : usage.merge(chunk.usage());
+                }
+                if (now > deadline) {
+                    timedOut.set(true);
+                    break;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            if (!timedOut.get()) {
+                throw e;
+            }
+        } finally {
+            watchdog.cancel(false);
+        }
+        if (timedOut.get() && streamError == null) {
+            streamError = "stream did not finish within " + endpoint.timeout().toSeconds() + "s";
+        }
+        long totalMs = millisSince(requestStart);
+
+        long outputTokens = usage != null && usage.completionTokens() > 0
+                ? usage.completionTokens()
+                : (textChars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+        Double tokensPerSecond = null;
+        if (outputTokens > 1 && lastTokenNanos > firstTokenNanos) {
+            tokensPerSecond = (outputTokens - 1) / ((lastTokenNanos - firstTokenNanos) / 1e9);
+        }
+        Long ttftMs = firstTokenNanos == 0 ? null : TimeUnit.NANOSECONDS.toMillis(firstTokenNanos - requestStart);
+        return new Result(setup, response.statusCode(), streamError, ttfbMs, ttftMs, totalMs,
+                usage != null && usage.promptTokens() > 0 ? usage.promptTokens() : null, outputTokens, tokensPerSecond);
+    }
+
+    /**
+     * Null timings when the side connection fails, e.g. behind a proxy that only the HTTP
+     * client is configured for; the request itself may still succeed.
+     */
+    private static ConnectionTimings timeConnection(URI uri, Duration timeout) {
+        try {
+            return connect(uri, timeout);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not time connection setup to {}: {}", uri.getHost(), e.getMessage());
+            return new ConnectionTimings(null, null, null);
+        }
+    }
+
+    private static ConnectionTimings connect(URI uri, Duration timeout) throws IOException {
+        boolean tls = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (tls ? 443 : 80);
+        int timeoutMillis = Math.toIntExact(timeout.toMillis());
+
+        long start = System.nanoTime();
+        InetAddress address = InetAddress.getByName(uri.getHost());
+        long dnsMs = millisSince(start);
+
+        try (Socket socket = new Socket()) {
+            long connectStart = System.nanoTime();
+            socket.connect(new InetSocketAddress(address, port), timeoutMillis);
+            long connectMs = millisSince(connectStart);
+            if (!tls) {
+                return new ConnectionTimings(dnsMs, connectMs, null);
+            }
+            socket.setSoTimeout(timeoutMillis);
+            long tlsStart = System.nanoTime();
+            try (SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                    .createSocket(socket, uri.getHost(), port, true)) {
+                sslSocket.startHandshake();
+                return new ConnectionTimings(dnsMs, connectMs, millisSince(tlsStart));
+            }
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * All null when the side connection failed.
+     *
+     * @param tlsMs null for plain HTTP
+     */
+    public record ConnectionTimings(Long dnsMs, Long connectMs, Long tlsMs) {}
+
+    /**
+     * @param error        upstream error body for a non-2xx status, or an error reported
+     *                     inside the stream; null on success
+     * @param ttftMs       null when no text arrived
+     * @param promptTokens as reported by the upstream, null when it did not report usage
+     * @param outputTokens as reported, otherwise estimated from the streamed text
+     */
+    public record Result(ConnectionTimings connection, int statusCode, String error, long ttfbMs, Long ttftMs,
+                         long totalMs, Long promptTokens, long outputTokens, Double tokensPerSecond) {
+
+        public boolean success() {
+            return statusCode >= 200 && statusCode < 300 && error == null;
+        }
+    }
+}
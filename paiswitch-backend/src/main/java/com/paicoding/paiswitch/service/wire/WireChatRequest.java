@@ -0,0 +1,34 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.fasterxml.jackson.core.SerializableString;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Dialect-neutral chat request. {@code system} is a {@link SerializableString} so a constant
+ * prompt is escaped and UTF-8 encoded once and then copied into every request as bytes.
+ *
+ * @param cacheHistory mark the last {@code history} message as an ephemeral prompt-cache
+ *                     breakpoint; upstreams ignore it unless the prefix up to it is long enough
+ * @param context      per-conversation system text (e.g. a summary of earlier turns), sent
+ *                     after the static system prompt
+ * @param history      earlier messages, oldest first, sent before {@code userPrompt}
+ * @param includeUsage ask OpenAI-style upstreams to report token usage (also when streaming)
+ * @param providerOrder OpenRouter provider routing order; empty lets OpenRouter choose
+ */
+@Builder(toBuilder = true)
+public record WireChatRequest(
+        String model,
+        SerializableString system,
+        boolean cacheHistory,
+        String context,
+        List<WireDialect.Message> history,
+        String userPrompt,
+        int maxTokens,
+        Double temperature,
+        boolean stream,
+        List<WireDialect.Tool> tools,
+        boolean includeUsage,
+        List<String> providerOrder) {
+}
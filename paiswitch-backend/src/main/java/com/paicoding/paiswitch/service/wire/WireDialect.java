@@ -0,0 +1,126 @@
+package com.paicoding.paiswitch.service.wire;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paicoding.paiswitch.service.ai.TokenUsage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.util.List;
+
+/**
+ * Request/response codec for one provider API flavour. Requests are streamed through a
+ * Jackson {@link JsonGenerator} straight into a byte array, so there is no intermediate
+ * String and every value is escaped by Jackson.
+ */
+public abstract class WireDialect {
+
+    protected final ObjectMapper objectMapper;
+
+    protected WireDialect(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /** Full request URL for a normalized base URL (scheme present, no trailing slash). */
+    public abstract String resolveUrl(String normalizedBaseUrl);
+
+    /** Model list URL for a normalized base URL; may be configured with the chat path. */
+    public abstract String modelsUrl(String normalizedBaseUrl);
+
+    public abstract void authorize(HttpRequest.Builder request, String apiKey);
+
+    public abstract String authDescription();
+
+    public byte[] encode(WireChatRequest request) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+            writeRequest(generator, request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    protected abstract void writeRequest(JsonGenerator generator, WireChatRequest request) throws IOException;
+
+    /**
+     * Writes {@code content} as a single text block carrying an ephemeral cache_control
+     * breakpoint. Both dialects accept this form; OpenRouter passes it on to Anthropic / Gemini.
+     */
+    protected static void writeCachedContent(JsonGenerator generator, String content) throws IOException {
+        generator.writeArrayFieldStart("content");
+        generator.writeStartObject();
+        generator.writeStringField("type", "text");
+        generator.writeStringField("text", content);
+        generator.writeObjectFieldStart("cache_control");
+        generator.writeStringField("type", "ephemeral");
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndArray();
+    }
+
+    /** Decodes a complete (non-streamed) response body. */
+    public Reply decodeReply(String body) {
+        try {
+            return decodeReply(objectMapper.readTree(body));
+        } catch (IOException e) {
+            return new Reply("", List.of(), null);
+        }
+    }
+
+    protected abstract Reply decodeReply(JsonNode root);
+
+    /**
+     * Decodes one line of a Server-Sent Events stream. Returns null for event names,
+     * comments (": OPENROUTER PROCESSING"), keep-alives, "[DONE]" and unparsable data.
+     */
+    public StreamChunk decodeStreamLine(String line) {
+        if (line == null || !line.startsWith("data:")) {
+            return null;
+        }
+        String payload = line.substring(5).trim();
+        if (payload.isEmpty() || "[DONE]".equals(payload)) {
+            return null;
+        }
+        try {
+            return decodeStreamChunk(objectMapper.readTree(payload));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    protected abstract StreamChunk decodeStreamChunk(JsonNode root);
+
+    protected static String text(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isTextual() && !value.asText().isBlank() ? value.asText() : null;
+    }
+
+    /**
+     * An earlier message of the conversation; role is {@code user} or {@code assistant}.
+     */
+    public record Message(String role, String content) {}
+
+    /**
+     * Tool offered to the model, with its JSON-schema parameters.
+     */
+    public record Tool(String name, String description, JsonNode parameters) {}
+
+    /**
+     * A tool call, or a fragment of one while streaming: fragments with the same index
+     * belong together and arguments arrive as partial JSON.
+     */
+    public record ToolCall(int index, String name, String arguments) {}
+
+    public record Reply(String text, List<ToolCall> toolCalls, TokenUsage usage) {}
+
+    /**
+     * @param finished the upstream reported a stop reason; pending tool calls are complete
+     * @param error    error message sent inside the stream, if any
+     */
+    public record StreamChunk(String text, List<ToolCall> toolCalls, boolean finished, TokenUsage usage, String error) {}
+}
@@ -0,0 +1,19 @@
+package com.paicoding.paiswitch.service.wire;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * A resolved provider endpoint: request URL, dialect, normalized API key and timeout.
+ * Created through {@link ProviderWireClient#endpoint}.
+ *
+ * @param openRouter the endpoint is OpenRouter, so provider routing order applies
+ */
+public record WireEndpoint(String providerCode, URI uri, WireDialect dialect, String apiKey, Duration timeout,
+                           boolean openRouter) {
+
+    @Override
+    public String toString() {
+        return "WireEndpoint[providerCode=" + providerCode + ", uri=" + uri + "]";
+    }
+}
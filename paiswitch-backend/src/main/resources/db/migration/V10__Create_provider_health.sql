@@ -0,0 +1,14 @@
+-- Rolling health summary per provider, written periodically from the in-memory prober state
+-- and read back at startup until fresh probes arrive
+CREATE TABLE provider_health (
+    provider_code VARCHAR(50) PRIMARY KEY,
+    sample_count BIGINT NOT NULL DEFAULT 0,
+    error_count BIGINT NOT NULL DEFAULT 0,
+    p50_ms BIGINT,
+    p95_ms BIGINT,
+    p99_ms BIGINT,
+    last_probe_at DATETIME,
+    last_success_at DATETIME,
+    last_error VARCHAR(500),
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,19 @@
+-- Opt-in latency failover per user: stay on the preferred provider, move down the fallback
+-- list while it breaches the thresholds, and come back once it has recovered
+CREATE TABLE auto_switch_policy (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    enabled BOOLEAN NOT NULL DEFAULT FALSE,
+    preferred_provider VARCHAR(50) NOT NULL,
+    fallback_providers VARCHAR(500),
+    max_p95_ms BIGINT NOT NULL DEFAULT 8000,
+    max_error_rate DOUBLE NOT NULL DEFAULT 0.2,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES user(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_user (user_id),
+    INDEX idx_enabled (enabled)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Health figures behind an automatic switch
+ALTER TABLE switch_history ADD COLUMN trigger_metrics JSON;
@@ -0,0 +1,27 @@
+-- Throughput benchmark results: one row per run and concurrency level
+CREATE TABLE provider_benchmark (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id VARCHAR(36) NOT NULL,
+    user_id BIGINT NOT NULL,
+    provider_code VARCHAR(50) NOT NULL,
+    model_name VARCHAR(100) NOT NULL,
+    concurrency INT NOT NULL,
+    request_count INT NOT NULL,
+    success_count INT NOT NULL,
+    rate_limited_count INT NOT NULL DEFAULT 0,
+    server_error_count INT NOT NULL DEFAULT 0,
+    other_error_count INT NOT NULL DEFAULT 0,
+    p50_ms BIGINT,
+    p90_ms BIGINT,
+    p99_ms BIGINT,
+    max_ms BIGINT,
+    output_tokens BIGINT NOT NULL DEFAULT 0,
+    duration_ms BIGINT NOT NULL,
+    tokens_per_second DOUBLE,
+    requests_per_second DOUBLE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES user(id) ON DELETE CASCADE,
+    INDEX idx_run (run_id),
+    INDEX idx_provider_model_created (provider_code, model_name, created_at),
+    INDEX idx_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
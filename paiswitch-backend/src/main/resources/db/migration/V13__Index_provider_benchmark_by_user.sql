@@ -0,0 +1,4 @@
+-- Benchmark runs are only ever read by the user who started them
+ALTER TABLE provider_benchmark
+    ADD INDEX idx_user_created (user_id, created_at),
+    DROP INDEX idx_created;
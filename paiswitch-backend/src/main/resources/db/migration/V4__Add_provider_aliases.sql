@@ -0,0 +1,7 @@
+-- User-defined aliases (comma separated) matched by the quick-switch alias index
+ALTER TABLE model_provider ADD COLUMN aliases VARCHAR(500) NULL AFTER icon_url;
+
+UPDATE model_provider SET aliases = 'anthropic,克劳德' WHERE code = 'claude';
+UPDATE model_provider SET aliases = '深度求索,ds' WHERE code = 'deepseek';
+UPDATE model_provider SET aliases = '智谱,智谱ai,智谱清言,glm,chatglm,bigmodel' WHERE code = 'zhipu';
+UPDATE model_provider SET aliases = 'open router' WHERE code = 'openrouter';
@@ -0,0 +1,4 @@
+-- Keyset pagination of a session's history: (user_id, session_id) equality plus a
+-- (created_at, id) range, read in index order without a filesort
+ALTER TABLE ai_conversation
+    ADD INDEX idx_user_session_created (user_id, session_id, created_at, id);
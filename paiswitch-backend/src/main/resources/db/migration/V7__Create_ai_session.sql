@@ -0,0 +1,25 @@
+-- Per-session read model kept in step with ai_conversation by the conversation journal
+CREATE TABLE ai_session (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    session_id VARCHAR(100) NOT NULL,
+    title VARCHAR(100),
+    last_message_at DATETIME NOT NULL,
+    message_count INT NOT NULL DEFAULT 0,
+    last_provider VARCHAR(50),
+    FOREIGN KEY (user_id) REFERENCES user(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_user_session (user_id, session_id),
+    INDEX idx_user_last_message (user_id, last_message_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Backfill from existing conversations; the title is the session's first user message
+INSERT INTO ai_session (user_id, session_id, title, last_message_at, message_count)
+SELECT c.user_id,
+       c.session_id,
+       (SELECT LEFT(f.content, 50) FROM ai_conversation f
+        WHERE f.user_id = c.user_id AND f.session_id = c.session_id AND f.role = 'user'
+        ORDER BY f.created_at, f.id LIMIT 1),
+       MAX(c.created_at),
+       COUNT(*)
+FROM ai_conversation c
+GROUP BY c.user_id, c.session_id;
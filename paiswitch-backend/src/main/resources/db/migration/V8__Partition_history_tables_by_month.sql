@@ -0,0 +1,23 @@
+-- Range-partition ai_conversation and switch_history by month of created_at, so retention can
+-- drop whole months instead of deleting rows. Monthly partitions are split off p_max and
+-- expired ones dropped by PartitionMaintenanceJob.
+--
+-- MySQL requires the partitioning column in every unique key and does not allow foreign keys
+-- on partitioned tables. Users and providers are never deleted by the application, so the
+-- foreign keys are dropped rather than emulated.
+
+ALTER TABLE ai_conversation DROP FOREIGN KEY ai_conversation_ibfk_1;
+ALTER TABLE ai_conversation DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at);
+ALTER TABLE ai_conversation PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+    PARTITION p_before VALUES LESS THAN (UNIX_TIMESTAMP('2026-11-01 00:00:00')),
+    PARTITION p_max VALUES LESS THAN MAXVALUE
+);
+
+ALTER TABLE switch_history DROP FOREIGN KEY switch_history_ibfk_1;
+ALTER TABLE switch_history DROP FOREIGN KEY switch_history_ibfk_2;
+ALTER TABLE switch_history DROP FOREIGN KEY switch_history_ibfk_3;
+ALTER TABLE switch_history DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at);
+ALTER TABLE switch_history PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+    PARTITION p_before VALUES LESS THAN (UNIX_TIMESTAMP('2026-11-01 00:00:00')),
+    PARTITION p_max VALUES LESS THAN MAXVALUE
+);
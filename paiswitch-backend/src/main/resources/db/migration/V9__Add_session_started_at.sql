@@ -0,0 +1,10 @@
+-- First message time of a session; lower created_at bound for session reads so only the
+-- partitions the session spans are scanned
+ALTER TABLE ai_session ADD COLUMN started_at DATETIME AFTER title;
+
+UPDATE ai_session s
+JOIN (SELECT user_id, session_id, MIN(created_at) AS started_at
+      FROM ai_conversation
+      GROUP BY user_id, session_id) c
+  ON c.user_id = s.user_id AND c.session_id = s.session_id
+SET s.started_at = c.started_at;
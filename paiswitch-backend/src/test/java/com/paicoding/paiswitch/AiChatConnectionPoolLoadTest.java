@@ -0,0 +1,195 @@
+package com.paicoding.paiswitch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paicoding.paiswitch.domain.dto.AuthDto;
+import com.paicoding.paiswitch.domain.dto.SwitchDto;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.entity.UserConfig;
+import com.paicoding.paiswitch.repository.ModelProviderRepository;
+import com.paicoding.paiswitch.repository.UserConfigRepository;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Many slow chats in flight against a deliberately small pool must not starve unrelated
+ * endpoints: the upstream model call runs with no JDBC connection held.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chatloaddb;DB_CLOSE_DELAY=-1;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=5000"
+})
+class AiChatConnectionPoolLoadTest {
+
+    private static final int CONCURRENT_CHATS = 8;
+    private static final long UPSTREAM_DELAY_MS = 2000;
+
+    private static HttpServer upstream;
+    private static CountDownLatch upstreamArrivals;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ModelProviderRepository providerRepository;
+
+    @Autowired
+    private UserConfigRepository configRepository;
+
+    @Autowired
+    private ProviderRegistry providerRegistry;
+
+    @BeforeAll
+    static void startUpstream() throws Exception {
+        upstreamArrivals = new CountDownLatch(CONCURRENT_CHATS);
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            upstreamArrivals.countDown();
+            try {
+                Thread.sleep(UPSTREAM_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = """
+                    {"choices":[{"message":{"role":"assistant","content":"你好，我是 PaiSwitch 助手。"}}]}
+                    """.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        upstream.start();
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void unrelatedEndpointsKeepLatencyWhileChatsAreInFlight() throws Exception {
+        String token = registerAndPointAtUpstream();
+
+        long baselineMs = maxLatencyOfMyProviders(token, 5);
+
+        ExecutorService chatExecutor = Executors.newFixedThreadPool(CONCURRENT_CHATS);
+        List<Future<MvcResult>> chats = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONCURRENT_CHATS; i++) {
+                SwitchDto.NaturalLanguageRequest request = SwitchDto.NaturalLanguageRequest.builder()
+                        .prompt("介绍一下你自己 #" + i)
+                        .build();
+                chats.add(chatExecutor.submit(() -> mockMvc.perform(post("/api/v1/ai/chat")
+                                .header("Authorization", "Bearer " + token)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                        .andReturn()));
+            }
+
+            assertThat(upstreamArrivals.await(10, TimeUnit.SECONDS))
+                    .as("all chats should reach the upstream model")
+                    .isTrue();
+
+            long underLoadMs = maxLatencyOfMyProviders(token, 5);
+
+            for (Future<MvcResult> chat : chats) {
+                MvcResult result = chat.get(30, TimeUnit.SECONDS);
+                JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+                assertThat(body.path("code").asInt()).isEqualTo(200);
+            }
+
+            assertThat(underLoadMs)
+                    .as("GET /providers/my under load (baseline %d ms)", baselineMs)
+                    .isLessThan(UPSTREAM_DELAY_MS / 2);
+        } finally {
+            chatExecutor.shutdownNow();
+        }
+    }
+
+    private String registerAndPointAtUpstream() throws Exception {
+        AuthDto.RegisterRequest register = AuthDto.RegisterRequest.builder()
+                .username("loadtester")
+                .email("loadtester@example.com")
+                .password("password123")
+                .build();
+        MvcResult result = mockMvc.perform(post("/api/v1/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(register)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andReturn();
+        JsonNode data = objectMapper.readTree(result.getResponse().getContentAsString()).path("data");
+        String token = data.path("token").asText();
+        Long userId = data.path("user").path("id").asLong();
+
+        ModelProvider openRouter = providerRepository.findByCode("openrouter").orElseThrow();
+        openRouter.setBaseUrl("http://127.0.0.1:" + upstream.getAddress().getPort());
+        openRouter.setModelName("test-model");
+        providerRepository.save(openRouter);
+        providerRegistry.reload();
+
+        UserConfig config = configRepository.findByUserId(userId).orElseThrow();
+        config.setCurrentProvider(openRouter);
+        configRepository.save(config);
+
+        mockMvc.perform(post("/api/v1/api-keys")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "providerCode", "openrouter",
+                                "apiKey", "sk-or-test-key"))))
+                .andExpect(jsonPath("$.code").value(200));
+        return token;
+    }
+
+    private long maxLatencyOfMyProviders(String token, int samples) throws Exception {
+        long max = 0;
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            mockMvc.perform(get("/api/v1/providers/my").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.code").value(200));
+            max = Math.max(max, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,63 @@
+package com.paicoding.paiswitch.domain.converter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-call cost of {@link TextCompression} against the storage it saves, for typical
+ * conversation content. Not part of the unit suite (surefire only picks up *Test classes);
+ * run it on demand with {@code mvn test -Dtest=TextCompressionBenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class TextCompressionBenchmark {
+
+    private static final int ITERATIONS = 2000;
+
+    static Map<String, String> samples() {
+        Map<String, String> samples = new LinkedHashMap<>();
+        samples.put("short prompt", "帮我换成智谱 AI");
+        samples.put("assistant reply 2KB", TextCompressionTest.REPLY_PARAGRAPH.repeat(8));
+        samples.put("assistant reply 8KB", TextCompressionTest.REPLY_PARAGRAPH.repeat(32));
+        samples.put("pasted code 16KB", TextCompressionTest.CODE_PASTE.repeat(60));
+        return samples;
+    }
+
+    @Test
+    void overheadAgainstStorageSaved() {
+        for (Map.Entry<String, String> sample : samples().entrySet()) {
+            String text = sample.getValue();
+            String stored = TextCompression.encode(text);
+            for (int i = 0; i < ITERATIONS / 10; i++) {
+                TextCompression.decode(TextCompression.encode(text));
+            }
+
+            long encodeStart = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                stored = TextCompression.encode(text);
+            }
+            long encodeNanos = (System.nanoTime() - encodeStart) / ITERATIONS;
+
+            String decoded = null;
+            long decodeStart = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                decoded = TextCompression.decode(stored);
+            }
+            long decodeNanos = (System.nanoTime() - decodeStart) / ITERATIONS;
+
+            int rawBytes = text.getBytes(StandardCharsets.UTF_8).length;
+            int storedBytes = stored.getBytes(StandardCharsets.UTF_8).length;
+            log.info(String.format("%-20s %7d -> %7d bytes (%5.1f%%)  encode %7d ns  decode %7d ns",
+                    sample.getKey(), rawBytes, storedBytes, 100.0 * storedBytes / rawBytes, encodeNanos, decodeNanos));
+
+            assertThat(decoded).isEqualTo(text);
+        }
+    }
+}
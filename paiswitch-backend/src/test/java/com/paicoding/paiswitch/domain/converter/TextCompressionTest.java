@@ -0,0 +1,67 @@
+package com.paicoding.paiswitch.domain.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextCompressionTest {
+
+    static final String REPLY_PARAGRAPH = """
+            DeepSeek V3 适合代码补全和中文长文本任务，价格较低；Claude 在复杂推理和长上下文上更稳定。
+            如果你主要写 Java 后端代码，可以先用 DeepSeek，遇到需要仔细推敲的设计问题再切换到 Claude。
+            """;
+
+    static final String CODE_PASTE = """
+            @Slf4j
+            @Service
+            @RequiredArgsConstructor
+            public class SwitchService {
+                private final UserConfigRepository configRepository;
+                public SwitchDto.SwitchResult switchToProvider(Long userId, String providerCode) {
+                    return null;
+                }
+            }
+            """;
+
+    @Test
+    void shortTextIsStoredAsIs() {
+        assertThat(TextCompression.encode("切换到 DeepSeek")).isEqualTo("切换到 DeepSeek");
+        assertThat(TextCompression.decode("切换到 DeepSeek")).isEqualTo("切换到 DeepSeek");
+        assertThat(TextCompression.encode(null)).isNull();
+        assertThat(TextCompression.encode("")).isEmpty();
+    }
+
+    @Test
+    void longTextRoundTripsAndShrinks() {
+        String reply = REPLY_PARAGRAPH.repeat(20);
+        String stored = TextCompression.encode(reply);
+
+        assertThat(TextCompression.isEncoded(stored)).isTrue();
+        assertThat(stored.length()).isLessThan(reply.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(TextCompression.decode(stored)).isEqualTo(reply);
+    }
+
+    @Test
+    void legacyRowsAndMarkerLookalikesReadUnchanged() {
+        String legacy = CODE_PASTE.repeat(10);
+        assertThat(TextCompression.decode(legacy)).isEqualTo(legacy);
+
+        String startsWithMarker = "\u0001D:not really compressed";
+        String stored = TextCompression.encode(startsWithMarker);
+        assertThat(stored).isNotEqualTo(startsWithMarker);
+        assertThat(TextCompression.decode(stored)).isEqualTo(startsWithMarker);
+    }
+
+    @Test
+    void typicalContentNeverGrows() {
+        for (String text : TextCompressionBenchmark.samples().values()) {
+            String stored = TextCompression.encode(text);
+
+            assertThat(TextCompression.decode(stored)).isEqualTo(text);
+            assertThat(stored.getBytes(StandardCharsets.UTF_8).length)
+                    .isLessThanOrEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+}
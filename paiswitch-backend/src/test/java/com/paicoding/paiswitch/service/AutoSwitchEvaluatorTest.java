@@ -0,0 +1,188 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.AutoSwitchProperties;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AutoSwitchEvaluatorTest {
+
+    private static final List<String> RANKED = List.of("deepseek", "zhipu", "openrouter");
+    private static final AutoSwitchEvaluator.Thresholds THRESHOLDS = new AutoSwitchEvaluator.Thresholds(8000, 0.2);
+    private static final long ROUND_MS = 30_000;
+
+    private final AutoSwitchProperties properties = properties();
+    private final AutoSwitchEvaluator evaluator = new AutoSwitchEvaluator(properties);
+    private final AutoSwitchEvaluator.State state = new AutoSwitchEvaluator.State();
+    private final Map<String, ProviderDto.HealthInfo> health = new HashMap<>();
+    private long now = 1_700_000_000_000L;
+
+    @Test
+    void failsOverOnlyAfterConsecutiveBreaches() {
+        health.put("deepseek", health(12000, 0));
+        health.put("zhipu", health(2000, 0));
+
+        assertThat(round("deepseek")).isEmpty();
+        assertThat(round("deepseek")).isEmpty();
+        Optional<AutoSwitchEvaluator.Decision> decision = round("deepseek");
+
+        assertThat(decision).isPresent();
+        assertThat(decision.get().target()).isEqualTo("zhipu");
+        assertThat(decision.get().reason()).isEqualTo(AutoSwitchEvaluator.FAILOVER);
+        assertThat(decision.get().rounds()).isEqualTo(3);
+    }
+
+    @Test
+    void singleHealthyRoundResetsTheBreachCount() {
+        health.put("zhipu", health(2000, 0));
+
+        health.put("deepseek", health(12000, 0));
+        round("deepseek");
+        round("deepseek");
+        health.put("deepseek", health(3000, 0));
+        round("deepseek");
+        health.put("deepseek", health(12000, 0));
+
+        assertThat(round("deepseek")).isEmpty();
+        assertThat(round("deepseek")).isEmpty();
+        assertThat(round("deepseek")).isPresent();
+    }
+
+    @Test
+    void errorRateBreachSkipsUnhealthyFallbacks() {
+        health.put("deepseek", health(1000, 0.5));
+        health.put("zhipu", health(7000, 0));
+        health.put("openrouter", health(1500, 0.05));
+
+        round("deepseek");
+        round("deepseek");
+        Optional<AutoSwitchEvaluator.Decision> decision = round("deepseek");
+
+        // zhipu is under the limit but not under 80% of it
+        assertThat(decision.map(AutoSwitchEvaluator.Decision::target)).contains("openrouter");
+    }
+
+    @Test
+    void switchesBackOnlyAfterRecoveryAndDwell() {
+        health.put("deepseek", health(12000, 0));
+        health.put("zhipu", health(2000, 0));
+        round("deepseek");
+        round("deepseek");
+        assertThat(round("deepseek")).isPresent();
+
+        // Just under the limit is not recovered.
+        health.put("deepseek", health(7500, 0));
+        for (int i = 0; i < 20; i++) {
+            assertThat(round("zhipu")).isEmpty();
+        }
+
+        health.put("deepseek", health(3000, 0));
+        for (int i = 0; i < properties.getRecoverRounds() - 1; i++) {
+            assertThat(round("zhipu")).isEmpty();
+        }
+        Optional<AutoSwitchEvaluator.Decision> decision = round("zhipu");
+        assertThat(decision.map(AutoSwitchEvaluator.Decision::target)).contains("deepseek");
+        assertThat(decision.map(AutoSwitchEvaluator.Decision::reason)).contains(AutoSwitchEvaluator.RECOVER);
+    }
+
+    @Test
+    void minimumDwellHoldsBackASecondSwitch() {
+        properties.setMinDwell(Duration.ofHours(1));
+        health.put("deepseek", health(12000, 0));
+        health.put("zhipu", health(2000, 0));
+        round("deepseek");
+        round("deepseek");
+        assertThat(round("deepseek")).isPresent();
+
+        health.put("deepseek", health(1000, 0));
+        for (int i = 0; i < 20; i++) {
+            assertThat(round("zhipu")).isEmpty();
+        }
+        now += Duration.ofHours(1).toMillis();
+        assertThat(round("zhipu").map(AutoSwitchEvaluator.Decision::target)).contains("deepseek");
+    }
+
+    @Test
+    void failedSwitchIsRetriedWithoutDwell() {
+        properties.setMinDwell(Duration.ofHours(1));
+        health.put("deepseek", health(12000, 0));
+        health.put("zhipu", health(2000, 0));
+        round("deepseek");
+        round("deepseek");
+
+        // The switch is not carried out, so the user is still on deepseek.
+        now += ROUND_MS;
+        assertThat(evaluator.evaluate(state, "deepseek", RANKED, code -> true, health, THRESHOLDS, now)).isPresent();
+
+        Optional<AutoSwitchEvaluator.Decision> retry = round("deepseek");
+        assertThat(retry.map(AutoSwitchEvaluator.Decision::target)).contains("zhipu");
+        assertThat(retry.map(AutoSwitchEvaluator.Decision::reason)).contains(AutoSwitchEvaluator.FAILOVER);
+    }
+
+    @Test
+    void leavesUsersAloneWithoutEnoughDataOrOffPolicy() {
+        health.put("deepseek", ProviderDto.HealthInfo.builder().providerCode("deepseek")
+                .p95Ms(20000L).sampleCount(2).build());
+        health.put("zhipu", health(2000, 0));
+        for (int i = 0; i < 5; i++) {
+            assertThat(round("deepseek")).isEmpty();
+        }
+
+        ProviderDto.HealthInfo stored = health(12000, 0);
+        stored.setStale(true);
+        health.put("deepseek", stored);
+        for (int i = 0; i < 5; i++) {
+            assertThat(round("deepseek")).isEmpty();
+        }
+
+        health.put("claude", health(30000, 1));
+        for (int i = 0; i < 5; i++) {
+            assertThat(round("claude")).isEmpty();
+        }
+    }
+
+    @Test
+    void neverPicksAProviderTheUserCannotUse() {
+        health.put("deepseek", health(12000, 0));
+        health.put("zhipu", health(2000, 0));
+        health.put("openrouter", health(2500, 0));
+
+        Optional<AutoSwitchEvaluator.Decision> decision = Optional.empty();
+        for (int i = 0; i < 3; i++) {
+            now += ROUND_MS;
+            decision = evaluator.evaluate(state, "deepseek", RANKED, code -> !code.equals("zhipu"), health, THRESHOLDS, now);
+        }
+        assertThat(decision.map(AutoSwitchEvaluator.Decision::target)).contains("openrouter");
+    }
+
+    /** One evaluation; a decision is carried out successfully. */
+    private Optional<AutoSwitchEvaluator.Decision> round(String current) {
+        now += ROUND_MS;
+        Optional<AutoSwitchEvaluator.Decision> decision =
+                evaluator.evaluate(state, current, RANKED, code -> true, health, THRESHOLDS, now);
+        decision.ifPresent(switched -> evaluator.switched(state, switched, now));
+        return decision;
+    }
+
+    private static ProviderDto.HealthInfo health(long p95Ms, double errorRate) {
+        return ProviderDto.HealthInfo.builder()
+                .p95Ms(p95Ms)
+                .sampleCount(20)
+                .errorCount(Math.round(20 * errorRate))
+                .errorRate(errorRate)
+                .build();
+    }
+
+    private static AutoSwitchProperties properties() {
+        AutoSwitchProperties properties = new AutoSwitchProperties();
+        properties.setMinDwell(Duration.ofMinutes(10));
+        return properties;
+    }
+}
@@ -0,0 +1,133 @@
+package com.paicoding.paiswitch.service;
+
+import com.paicoding.paiswitch.common.config.ProviderHealthProperties;
+import com.paicoding.paiswitch.common.config.ProviderWireProperties;
+import com.paicoding.paiswitch.domain.dto.ProviderDto;
+import com.paicoding.paiswitch.domain.entity.ApiKey;
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.domain.enums.HealthStatus;
+import com.paicoding.paiswitch.repository.ApiKeyRepository;
+import com.paicoding.paiswitch.service.health.ProviderHealthMonitor;
+import com.paicoding.paiswitch.service.wire.ProviderWireClient;
+import com.paicoding.paiswitch.service.wire.WireEndpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bulk connectivity tests feed the shared provider health window; only failures caused by the
+ * provider may count there, not ones caused by the testing user's key.
+ */
+class ProviderServiceTest {
+
+    private static final long USER_ID = 7L;
+
+    private final ModelProvider provider = ModelProvider.builder()
+            .id(1L)
+            .code("deepseek")
+            .name("DeepSeek")
+            .baseUrl("https://api.deepseek.com/anthropic")
+            .modelName("deepseek-chat")
+            .build();
+
+    private final ApiKeyRepository apiKeyRepository = mock(ApiKeyRepository.class);
+    private final EncryptionService encryptionService = mock(EncryptionService.class);
+    private final ProviderWireClient providerWireClient = mock(ProviderWireClient.class);
+    private final ProviderRegistry providerRegistry = mock(ProviderRegistry.class);
+    private ProviderHealthMonitor healthMonitor;
+    private ProviderService providerService;
+
+    @BeforeEach
+    void setUp() {
+        when(providerRegistry.findById(1L)).thenReturn(Optional.of(provider));
+        when(providerRegistry.findByCode("deepseek")).thenReturn(Optional.of(provider));
+        when(apiKeyRepository.findByUserId(USER_ID)).thenReturn(List.of(ApiKey.builder()
+                .provider(provider)
+                .encryptedKey("encrypted")
+                .build()));
+        when(encryptionService.decrypt("encrypted")).thenReturn("sk-revoked");
+        when(providerWireClient.properties()).thenReturn(new ProviderWireProperties());
+        when(providerWireClient.endpoint(anyString(), anyString(), anyString())).thenReturn(new WireEndpoint(
+                "deepseek", URI.create("https://api.deepseek.com/anthropic/v1/messages"), null, "sk-revoked",
+                Duration.ofSeconds(5), false));
+        when(providerWireClient.extractErrorMessage(any())).thenReturn("error");
+
+        healthMonitor = new ProviderHealthMonitor(new ProviderHealthProperties(), null, providerRegistry, null);
+        providerService = new ProviderService(null, apiKeyRepository, encryptionService, null, providerWireClient,
+                providerRegistry, null, healthMonitor, null);
+        healthMonitor.recordSuccess("deepseek", 800);
+    }
+
+    @Test
+    void rejectedKeyLeavesTheProviderUp() {
+        respondWith(401);
+
+        for (int i = 0; i < 5; i++) {
+            List<ProviderDto.BulkTestResult> results = providerService.testAllProviders(USER_ID, result -> {}).join();
+            assertThat(results).singleElement().satisfies(result -> assertThat(result.isSuccess()).isFalse());
+        }
+
+        ProviderDto.HealthInfo health = healthMonitor.health("deepseek").orElseThrow();
+        assertThat(health.getStatus()).isEqualTo(HealthStatus.UP);
+        assertThat(health.getErrorCount()).isZero();
+    }
+
+    @Test
+    void serverErrorsCountAgainstTheProvider() {
+        respondWith(503);
+
+        providerService.testAllProviders(USER_ID, result -> {}).join();
+
+        ProviderDto.HealthInfo health = healthMonitor.health("deepseek").orElseThrow();
+        assertThat(health.getStatus()).isEqualTo(HealthStatus.DOWN);
+        assertThat(health.getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    void connectionFailuresCountAgainstTheProvider() {
+        when(providerWireClient.send(any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+
+        providerService.testAllProviders(USER_ID, result -> {}).join();
+
+        assertThat(healthMonitor.health("deepseek").orElseThrow().getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deadlineCancelsTestsStillInFlight() {
+        ProviderWireProperties properties = new ProviderWireProperties();
+        properties.getTestAll().setDeadline(Duration.ofMillis(50));
+        when(providerWireClient.properties()).thenReturn(properties);
+        CompletableFuture<HttpResponse<String>> hanging = new CompletableFuture<>();
+        when(providerWireClient.send(any(), any())).thenReturn(hanging);
+
+        List<ProviderDto.BulkTestResult> results = providerService.testAllProviders(USER_ID, result -> {})
+                .orTimeout(5, TimeUnit.SECONDS)
+                .join();
+
+        assertThat(results).singleElement().satisfies(result -> assertThat(result.isSuccess()).isFalse());
+        assertThat(hanging).isCancelled();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respondWith(int statusCode) {
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(statusCode);
+        when(response.body()).thenReturn("{\"error\":{\"message\":\"error\"}}");
+        when(providerWireClient.send(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+    }
+}
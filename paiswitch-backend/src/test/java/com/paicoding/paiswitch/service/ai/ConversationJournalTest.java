@@ -0,0 +1,281 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.common.config.AiChatProperties;
+import com.paicoding.paiswitch.domain.converter.TextCompression;
+import com.paicoding.paiswitch.domain.entity.User;
+import com.paicoding.paiswitch.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs separate journals against H2 with their own capacity, batch size and flush interval,
+ * next to the application's own journal.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:journaldb;DB_CLOSE_DELAY=-1;MODE=MySQL;NON_KEYWORDS=USER"
+})
+class ConversationJournalTest {
+
+    private static final String FLUSHER_THREAD = "conversation-journal";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<ConversationJournal> journals = new ArrayList<>();
+    private Long userId;
+    private String sessionId;
+
+    @BeforeEach
+    void createUser() {
+        String name = "journal-" + UUID.randomUUID().toString().substring(0, 8);
+        userId = userRepository.save(User.builder()
+                .username(name)
+                .email(name + "@example.com")
+                .passwordHash("not-a-real-hash")
+                .build()).getId();
+        sessionId = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void stopJournals() throws InterruptedException {
+        for (ConversationJournal journal : journals) {
+            journal.stop();
+        }
+    }
+
+    @Test
+    void readersSeeEveryMessageExactlyOnceAcrossFlushes() throws Exception {
+        ConversationJournal journal = start(new JdbcTemplate(dataSource), 10_000, 7, Duration.ofMillis(5));
+        int writers = 4;
+        int messagesPerWriter = 150;
+        AtomicInteger appended = new AtomicInteger();
+        Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                writes.add(executor.submit(() -> {
+                    for (int i = 0; i < messagesPerWriter; i++) {
+                        String content = "message " + writer + "-" + i;
+                        journal.append(userId, sessionId, "user", content);
+                        acknowledged.add(content);
+                        appended.incrementAndGet();
+                    }
+                }));
+            }
+
+            int reads = 0;
+            while (appended.get() < writers * messagesPerWriter || reads < 50) {
+                Set<String> mustBeVisible = Set.copyOf(acknowledged);
+                View view = journal.read(() -> new View(stored(), pendingContents(journal)));
+                reads++;
+
+                Set<String> both = new HashSet<>(view.stored());
+                both.retainAll(view.pending());
+                assertThat(both).as("messages both committed and pending").isEmpty();
+                assertThat(view.stored()).as("committed rows").doesNotHaveDuplicates();
+                Set<String> visible = new HashSet<>(view.stored());
+                visible.addAll(view.pending());
+                assertThat(visible).containsAll(mustBeVisible);
+            }
+            for (Future<?> write : writes) {
+                write.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        awaitFlushed(journal);
+        assertThat(stored()).hasSize(writers * messagesPerWriter).doesNotHaveDuplicates();
+        assertThat(sessionMessageCount()).isEqualTo(writers * messagesPerWriter);
+    }
+
+    @Test
+    void appendWritesSynchronouslyWhenTheQueueIsFull() throws Exception {
+        BlockingJdbcTemplate jdbcTemplate = new BlockingJdbcTemplate(dataSource);
+        ConversationJournal journal = start(jdbcTemplate, 2, 1, Duration.ofMillis(5));
+
+        journal.append(userId, sessionId, "user", "first");
+        assertThat(jdbcTemplate.flusherBlocked.await(10, TimeUnit.SECONDS)).isTrue();
+        // The flusher holds "first"; these two fill the queue.
+        journal.append(userId, sessionId, "assistant", "second");
+        journal.append(userId, sessionId, "user", "third");
+
+        Thread[] chatThread = new Thread[1];
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> chatThread[0] = new Thread(runnable, "chat-request"));
+        try {
+            Future<?> overflow = executor.submit(() -> journal.append(userId, sessionId, "assistant", "fourth"));
+            // The synchronous write waits for the flusher's commit lock; let the flusher go once it does.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((chatThread[0] == null || chatThread[0].getState() != Thread.State.WAITING) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            jdbcTemplate.release.countDown();
+            overflow.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        awaitFlushed(journal);
+        assertThat(stored()).containsExactlyInAnyOrder("first", "second", "third", "fourth");
+        assertThat(jdbcTemplate.writerThreads).containsEntry("fourth", "chat-request");
+        assertThat(jdbcTemplate.writerThreads).containsEntry("first", FLUSHER_THREAD)
+                .containsEntry("second", FLUSHER_THREAD)
+                .containsEntry("third", FLUSHER_THREAD);
+    }
+
+    @Test
+    void reportsGeneratedIdsOfEachFlushedBatch() throws Exception {
+        ConversationJournal journal = start(new JdbcTemplate(dataSource), 10_000, 3, Duration.ofMillis(5));
+        Map<String, Long> reported = new ConcurrentHashMap<>();
+        journal.onFlushed((batch, ids) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                reported.put(batch.get(i).content(), ids.get(i));
+            }
+        });
+        for (int i = 0; i < 8; i++) {
+            journal.append(userId, sessionId, "user", "numbered " + i);
+        }
+
+        awaitFlushed(journal);
+        Map<String, Long> storedIds = new HashMap<>();
+        new JdbcTemplate(dataSource).query("SELECT id, content FROM ai_conversation WHERE user_id = ? AND session_id = ?",
+                row -> {
+                    storedIds.put(TextCompression.decode(row.getString("content")), row.getLong("id"));
+                }, userId, sessionId);
+        assertThat(reported).isEqualTo(storedIds).hasSize(8);
+    }
+
+    @Test
+    void stopDrainsQueuedMessages() throws Exception {
+        ConversationJournal journal = start(new JdbcTemplate(dataSource), 10_000, 100, Duration.ofHours(1));
+        for (int i = 0; i < 10; i++) {
+            journal.append(userId, sessionId, i % 2 == 0 ? "user" : "assistant", "queued " + i);
+        }
+        // The flusher is still waiting for its batch to fill.
+        assertThat(stored()).isEmpty();
+        assertThat(journal.pending(userId, sessionId)).hasSize(10);
+
+        journal.stop();
+        journals.remove(journal);
+
+        assertThat(stored()).hasSize(10);
+        assertThat(journal.pending(userId, sessionId)).isEmpty();
+        assertThat(sessionMessageCount()).isEqualTo(10);
+    }
+
+    private ConversationJournal start(JdbcTemplate jdbcTemplate, int capacity, int batchSize, Duration flushInterval) {
+        AiChatProperties properties = new AiChatProperties();
+        properties.getJournal().setCapacity(capacity);
+        properties.getJournal().setBatchSize(batchSize);
+        properties.getJournal().setFlushInterval(flushInterval);
+        ConversationJournal journal = new ConversationJournal(jdbcTemplate, properties, transactionManager);
+        journal.start();
+        journals.add(journal);
+        return journal;
+    }
+
+    private List<String> stored() {
+        return new JdbcTemplate(dataSource).queryForList(
+                        "SELECT content FROM ai_conversation WHERE user_id = ? AND session_id = ?",
+                        String.class, userId, sessionId)
+                .stream()
+                .map(TextCompression::decode)
+                .toList();
+    }
+
+    private Set<String> pendingContents(ConversationJournal journal) {
+        Set<String> contents = new HashSet<>();
+        journal.pending(userId, sessionId).forEach(message -> contents.add(message.content()));
+        return contents;
+    }
+
+    private Integer sessionMessageCount() {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "SELECT message_count FROM ai_session WHERE user_id = ? AND session_id = ?",
+                Integer.class, userId, sessionId);
+    }
+
+    private void awaitFlushed(ConversationJournal journal) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!journal.pending(userId, sessionId).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(journal.pending(userId, sessionId)).isEmpty();
+    }
+
+    private record View(List<String> stored, Set<String> pending) {}
+
+    /**
+     * Holds the flusher's first insert until released, and records which thread inserted
+     * each message.
+     */
+    private static final class BlockingJdbcTemplate extends JdbcTemplate {
+
+        private final CountDownLatch flusherBlocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final Map<String, String> writerThreads = new ConcurrentHashMap<>();
+
+        private BlockingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int update(PreparedStatementCreator creator, KeyHolder keyHolder) {
+            if (creator instanceof ConversationJournal.BatchInsert insert) {
+                Object[] args = insert.args();
+                String thread = Thread.currentThread().getName();
+                if (thread.equals(FLUSHER_THREAD) && flusherBlocked.getCount() > 0) {
+                    flusherBlocked.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                for (int i = 3; i < args.length; i += 7) {
+                    writerThreads.put(TextCompression.decode((String) args[i]), thread);
+                }
+            }
+            return super.update(creator, keyHolder);
+        }
+    }
+}
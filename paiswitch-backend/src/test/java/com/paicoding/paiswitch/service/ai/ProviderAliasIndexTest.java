@@ -0,0 +1,82 @@
+package com.paicoding.paiswitch.service.ai;
+
+import com.paicoding.paiswitch.domain.entity.ModelProvider;
+import com.paicoding.paiswitch.service.ProviderRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProviderAliasIndexTest {
+
+    private ProviderAliasIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ProviderRegistry registry = mock(ProviderRegistry.class);
+        when(registry.activeProviders()).thenReturn(List.of(
+                provider("claude", "Claude (Official)", "claude-sonnet-4-20250514", "anthropic,克劳德"),
+                provider("deepseek", "DeepSeek V3", "deepseek-chat", "深度求索,ds"),
+                provider("zhipu", "Zhipu AI", "glm-4.5", "智谱,glm"),
+                provider("openrouter", "OpenRouter", "anthropic/claude-sonnet-4", "open router"),
+                provider("kimi", "Moonshot Kimi", "kimi-k2", "月之暗面")
+        ));
+        index = new ProviderAliasIndex(registry);
+        index.rebuild();
+    }
+
+    @Test
+    void resolvesBuiltinAndCustomProvidersFromPrompt() {
+        assertThat(index.matchSwitchCommand("帮我切换到 DeepSeek")).isEqualTo("deepseek");
+        assertThat(index.matchSwitchCommand("换成智谱")).isEqualTo("zhipu");
+        assertThat(index.matchSwitchCommand("switch to Moonshot Kimi please")).isEqualTo("kimi");
+        assertThat(index.matchSwitchCommand("改用月之暗面")).isEqualTo("kimi");
+        assertThat(index.matchSwitchCommand("用 glm-4.5")).isEqualTo("zhipu");
+    }
+
+    @Test
+    void prefersTargetAfterIntentAndLongestAlias() {
+        assertThat(index.matchSwitchCommand("从 claude 切换到 deepseek")).isEqualTo("deepseek");
+        assertThat(index.matchSwitchCommand("切换到 anthropic/claude-sonnet-4")).isEqualTo("openrouter");
+        assertThat(index.matchSwitchCommand("切换模型到 kimi")).isEqualTo("kimi");
+    }
+
+    @Test
+    void takesTheProviderAfterTheToMarkerInFromToPhrases() {
+        assertThat(index.matchSwitchCommand("switch from claude to deepseek")).isEqualTo("deepseek");
+        assertThat(index.matchSwitchCommand("Switch from Claude to the Kimi model")).isEqualTo("kimi");
+        assertThat(index.matchSwitchCommand("从 claude 到 deepseek，帮我切换一下")).isEqualTo("deepseek");
+        assertThat(index.matchSwitchCommand("从 claude 到 deepseek 哪个更快？")).isNull();
+    }
+
+    @Test
+    void leavesPromptsWithoutClearIntentToTheModel() {
+        assertThat(index.matchSwitchCommand("claude 和 deepseek 哪个写代码更好？")).isNull();
+        assertThat(index.matchSwitchCommand("what does a switch statement do")).isNull();
+        assertThat(index.matchSwitchCommand("I need to switch to something faster")).isNull();
+        assertThat(index.matchSwitchCommand("请问怎么用 deepseek")).isNull();
+        assertThat(index.matchSwitchCommand("how do I switch themes in Claude?")).isNull();
+        assertThat(index.matchSwitchCommand("should I switch? claude feels slow")).isNull();
+        assertThat(index.matchSwitchCommand("how do I change to dark mode in deepseek")).isNull();
+    }
+
+    @Test
+    void resolvesToolArgumentsToProviderCodes() {
+        assertThat(index.resolveProviderCode("DeepSeek")).isEqualTo("deepseek");
+        assertThat(index.resolveProviderCode("智谱")).isEqualTo("zhipu");
+        assertThat(index.resolveProviderCode("unknown")).isEqualTo("unknown");
+    }
+
+    private ModelProvider provider(String code, String name, String modelName, String aliases) {
+        return ModelProvider.builder()
+                .code(code)
+                .name(name)
+                .modelName(modelName)
+                .aliases(aliases)
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.paicoding.paiswitch.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenUsageServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int TURNS_PER_THREAD = 20_000;
+
+    @Test
+    void concurrentFlushesLoseNoCounts() throws Exception {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+        TokenUsageService service = new TokenUsageService(null, jdbcTemplate);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        AtomicBoolean recording = new AtomicBoolean(true);
+        try {
+            List<Future<?>> recorders = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long userId = t % 2 + 1;
+                recorders.add(executor.submit(() -> {
+                    ready.countDown();
+                    for (int i = 0; i < TURNS_PER_THREAD; i++) {
+                        service.record(userId, "deepseek", new TokenUsage(3, 5, "deepseek-chat"));
+                    }
+                }));
+            }
+            Future<?> flusher = executor.submit(() -> {
+                while (recording.get()) {
+                    service.flush();
+                }
+            });
+
+            assertThat(ready.await(10, TimeUnit.SECONDS)).isTrue();
+            for (Future<?> recorder : recorders) {
+                recorder.get(60, TimeUnit.SECONDS);
+            }
+            recording.set(false);
+            flusher.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        service.flush();
+
+        long turns = (long) THREADS * TURNS_PER_THREAD;
+        assertThat(jdbcTemplate.requests.get()).isEqualTo(turns);
+        assertThat(jdbcTemplate.promptTokens.get()).isEqualTo(turns * 3);
+        assertThat(jdbcTemplate.completionTokens.get()).isEqualTo(turns * 5);
+        assertThat(jdbcTemplate.batches.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void failedFlushKeepsCountsForTheNextOne() {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+        TokenUsageService service = new TokenUsageService(null, jdbcTemplate);
+        service.record(1L, "zhipu", new TokenUsage(10, 20, "glm-4"));
+
+        jdbcTemplate.failing = true;
+        service.flush();
+        service.record(1L, "zhipu", new TokenUsage(1, 2, "glm-4"));
+        jdbcTemplate.failing = false;
+        service.flush();
+
+        assertThat(jdbcTemplate.requests.get()).isEqualTo(2);
+        assertThat(jdbcTemplate.promptTokens.get()).isEqualTo(11);
+        assertThat(jdbcTemplate.completionTokens.get()).isEqualTo(22);
+    }
+
+    /** Sums the upserted deltas instead of writing them. */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong promptTokens = new AtomicLong();
+        private final AtomicLong completionTokens = new AtomicLong();
+        private volatile boolean failing;
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (failing) {
+                throw new IllegalStateException("database unavailable");
+            }
+            batches.incrementAndGet();
+            for (Object[] row : batchArgs) {
+                requests.addAndGet((Long) row[4]);
+                promptTokens.addAndGet((Long) row[5]);
+                completionTokens.addAndGet((Long) row[6]);
+            }
+            return new int[batchArgs.size()];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.paicoding.paiswitch.service.health;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RollingLatencyWindowTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void percentilesStayWithinBucketWidth() {
+        RollingLatencyWindow window = new RollingLatencyWindow(15 * MINUTE, 15);
+        long now = 100 * MINUTE;
+        for (int latency = 1; latency <= 1000; latency++) {
+            window.recordSuccess(latency, now);
+        }
+
+        RollingLatencyWindow.Stats stats = window.stats(now);
+        assertThat(stats.samples()).isEqualTo(1000);
+        assertThat(stats.p50Ms()).isBetween(500L, 600L);
+        assertThat(stats.p95Ms()).isBetween(950L, 1140L);
+        assertThat(stats.p99Ms()).isBetween(990L, 1188L);
+    }
+
+    @Test
+    void oldSlicesDropOutOfTheWindow() {
+        RollingLatencyWindow window = new RollingLatencyWindow(15 * MINUTE, 15);
+        long start = 100 * MINUTE;
+        window.recordSuccess(5000, start);
+        window.recordError(start);
+        window.recordSuccess(200, start + 10 * MINUTE);
+
+        RollingLatencyWindow.Stats withinWindow = window.stats(start + 10 * MINUTE);
+        assertThat(withinWindow.samples()).isEqualTo(2);
+        assertThat(withinWindow.errors()).isEqualTo(1);
+        assertThat(withinWindow.errorRate()).isCloseTo(1.0 / 3, within(1e-9));
+
+        RollingLatencyWindow.Stats later = window.stats(start + 20 * MINUTE);
+        assertThat(later.samples()).isEqualTo(1);
+        assertThat(later.errors()).isZero();
+        assertThat(later.p99Ms()).isBetween(200L, 240L);
+    }
+
+    @Test
+    void emptyWindowHasNoPercentiles() {
+        RollingLatencyWindow.Stats stats = new RollingLatencyWindow(MINUTE, 6).stats(System.currentTimeMillis());
+        assertThat(stats.p50Ms()).isNull();
+        assertThat(stats.errorRate()).isZero();
+    }
+
+    @Test
+    void bucketsCoverTheirLatency() {
+        for (long latency = 1; latency <= 300_000; latency = latency * 3 / 2 + 1) {
+            int bucket = RollingLatencyWindow.bucketOf(latency);
+            assertThat(RollingLatencyWindow.upperBound(bucket)).isGreaterThanOrEqualTo(latency);
+            if (bucket > 0) {
+                assertThat(RollingLatencyWindow.upperBound(bucket - 1)).isLessThan(latency);
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Built-in providers for the H2 test schema (Flyway is disabled in tests)
+INSERT INTO model_provider (code, name, description, base_url, model_name, model_name_small, is_builtin, is_active, sort_order, aliases, created_at, updated_at) VALUES
+('claude', 'Claude (Official)', 'Anthropic Claude official API', 'https://api.anthropic.com', 'claude-sonnet-4-20250514', 'claude-3-5-haiku-latest', TRUE, TRUE, 1, 'anthropic,克劳德', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+('deepseek', 'DeepSeek V3', 'DeepSeek AI model with Anthropic compatible API', 'https://api.deepseek.com/anthropic', 'deepseek-chat', NULL, TRUE, TRUE, 2, '深度求索,ds', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+('zhipu', 'Zhipu AI', 'Zhipu GLM model with Anthropic compatible API', 'https://open.bigmodel.cn/api/anthropic', 'glm-4.5', 'glm-4.5-air', TRUE, TRUE, 3, '智谱,智谱ai,智谱清言,glm,chatglm,bigmodel', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+('openrouter', 'OpenRouter', 'OpenRouter multi-model gateway', 'https://openrouter.ai/api', 'anthropic/claude-sonnet-4', 'anthropic/claude-3-haiku', TRUE, TRUE, 4, 'open router', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
@@ -10,10 +10,17 @@ import type {
   SwitchResult,
   NaturalLanguageResponse,
   ConversationHistoryResponse,
+  SessionSummary,
   ProviderConfigUpdateRequest,
   CustomProviderCreateRequest,
   ProviderTestRequest,
-  ProviderTestResult
+  ProviderTestResult,
+  ProviderBulkTestResult,
+  ProviderHealthInfo,
+  ProviderBenchmarkRequest,
+  ProviderBenchmarkRun,
+  ProviderModelCatalog,
+  AutoSwitchPolicy
 } from '@/types'
 
 // Auth API
@@ -43,7 +50,24 @@ export const providerApi = {
     apiPut<ProviderInfo>(`/providers/${code}/config`, data),
 
   testConnection: (code: string, data?: ProviderTestRequest) =>
-    apiPost<ProviderTestResult>(`/providers/${code}/test`, data || {})
+    apiPost<ProviderTestResult>(`/providers/${code}/test`, data || {}),
+
+  testAll: () => apiPost<ProviderBulkTestResult[]>('/providers/test-all'),
+
+  getHealth: () => apiGet<ProviderHealthInfo[]>('/providers/health'),
+
+  getModels: (code: string) => apiGet<ProviderModelCatalog>(`/providers/${code}/models`),
+
+  startBenchmark: (code: string, data?: ProviderBenchmarkRequest) =>
+    apiPost<ProviderBenchmarkRun>(`/providers/${code}/benchmark`, data || {}),
+
+  getBenchmark: (runId: string) =>
+    apiGet<ProviderBenchmarkRun>(`/providers/benchmarks/${runId}`),
+
+  compareBenchmarks: (providers?: string[]) =>
+    apiGet<ProviderBenchmarkRun[]>(providers?.length
+      ? `/providers/benchmarks?providers=${providers.join(',')}`
+      : '/providers/benchmarks')
 }
 
 // API Key API
@@ -79,12 +103,21 @@ export const switchApi = {
   switchTo: (providerCode: string, clientInfo?: string) =>
     apiPost<SwitchResult>('/switch', { providerCode, clientInfo }),
 
+  getAutoPolicy: () =>
+    apiGet<AutoSwitchPolicy>('/switch/auto-policy'),
+
+  updateAutoPolicy: (data: Omit<AutoSwitchPolicy, 'updatedAt'>) =>
+    apiPut<AutoSwitchPolicy>('/switch/auto-policy', data),
+
   naturalLanguageSwitch: (prompt: string, sessionId?: string, clientInfo?: string) =>
     apiPost<NaturalLanguageResponse>('/ai/switch-by-nl', { prompt, sessionId, clientInfo }),
 
   chat: (prompt: string, sessionId?: string) =>
     apiPost<NaturalLanguageResponse>('/ai/chat', { prompt, sessionId }),
 
+  listSessions: (limit?: number) =>
+    apiGet<SessionSummary[]>(limit ? `/ai/sessions?limit=${limit}` : '/ai/sessions'),
+
   getLatestConversation: () =>
     apiGet<ConversationHistoryResponse>('/ai/conversations/latest'),
 
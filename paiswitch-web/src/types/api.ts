@@ -57,6 +57,9 @@ export interface ProviderTestRequest {
   baseUrl?: string
   modelName?: string
   apiKey?: string
+  stream?: boolean
+  promptTokens?: number
+  maxTokens?: number
 }
 
 export interface ProviderTestResult {
@@ -64,6 +67,87 @@ export interface ProviderTestResult {
   message: string
   modelName?: string
   responseTimeMs?: number
+  dnsMs?: number
+  connectMs?: number
+  tlsMs?: number
+  ttfbMs?: number
+  ttftMs?: number
+  promptTokens?: number
+  outputTokens?: number
+  tokensPerSecond?: number
+}
+
+export interface ProviderModelInfo {
+  id: string
+  displayName?: string
+  contextLength?: number
+}
+
+export interface ProviderModelCatalog {
+  providerCode: string
+  status: 'PENDING' | 'OK' | 'UNSUPPORTED' | 'NO_KEY' | 'ERROR'
+  models: ProviderModelInfo[]
+  modelNameListed?: boolean
+  modelNameSmallListed?: boolean
+  fetchedAt?: string
+  checkedAt?: string
+  stale: boolean
+  error?: string
+}
+
+export interface ProviderBenchmarkRequest {
+  levels?: number[]
+  requestsPerLevel?: number
+  modelName?: string
+  maxTokens?: number
+}
+
+export interface ProviderBenchmarkLevel {
+  concurrency: number
+  requestCount: number
+  successCount: number
+  rateLimitedCount: number
+  serverErrorCount: number
+  otherErrorCount: number
+  p50Ms?: number
+  p90Ms?: number
+  p99Ms?: number
+  maxMs?: number
+  outputTokens: number
+  durationMs: number
+  tokensPerSecond?: number
+  requestsPerSecond?: number
+}
+
+export interface ProviderBenchmarkRun {
+  runId: string
+  providerCode: string
+  providerName: string
+  modelName: string
+  running: boolean
+  startedAt?: string
+  levels: ProviderBenchmarkLevel[]
+}
+
+export interface ProviderHealthInfo {
+  providerCode: string
+  providerName: string
+  status: 'UP' | 'DEGRADED' | 'DOWN' | 'UNKNOWN'
+  p50Ms?: number
+  p95Ms?: number
+  p99Ms?: number
+  sampleCount: number
+  errorCount: number
+  errorRate: number
+  lastProbeAt?: string
+  lastSuccessAt?: string
+  lastError?: string
+  stale: boolean
+}
+
+export interface ProviderBulkTestResult extends ProviderTestResult {
+  providerCode: string
+  providerName: string
 }
 
 export interface ApiKeyInfo {
@@ -111,6 +195,15 @@ export interface SwitchResult {
   switchedAt: string
 }
 
+export interface AutoSwitchPolicy {
+  enabled: boolean
+  preferredProvider: string
+  fallbackProviders: string[]
+  maxP95Ms: number
+  maxErrorRate: number
+  updatedAt?: string
+}
+
 export interface NaturalLanguageResponse {
   aiResponse: string
   switchTriggered?: boolean
@@ -124,7 +217,17 @@ export interface ConversationMessage {
   createdAt: string
 }
 
+export interface SessionSummary {
+  sessionId: string
+  title?: string | null
+  lastMessageAt: string
+  messageCount: number
+  lastProvider?: string | null
+}
+
 export interface ConversationHistoryResponse {
   sessionId?: string | null
   messages: ConversationMessage[]
+  nextCursor?: string | null
+  hasMore?: boolean
 }